@@ -0,0 +1,111 @@
+package com.urcl.utils.cli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 极简的命令行参数解析：第一个参数是子命令，之后是 {@code --name value} 形式的选项和 {@code --flag} 形式的开关。
+ * 同一个选项可以出现多次。不依赖第三方库和反射，便于 native-image 编译。
+ */
+class CommandLine {
+
+    private final String command;
+    private final Map<String, List<String>> options = new HashMap<>();
+
+    private CommandLine(String command) {
+        this.command = command;
+    }
+
+    /**
+     * @param flags 不带值的开关名（不含 "--"）
+     */
+    static CommandLine parse(String[] args, Set<String> flags) {
+        if (args.length == 0) {
+            return new CommandLine(null);
+        }
+        CommandLine cmd = new CommandLine(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            String name = arg.substring(2);
+            String value;
+            int eq = name.indexOf('=');
+            if (eq >= 0) {
+                value = name.substring(eq + 1);
+                name = name.substring(0, eq);
+            } else if (flags.contains(name)) {
+                value = "true";
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                throw new IllegalArgumentException("选项缺少参数值: --" + name);
+            }
+            cmd.options.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+        return cmd;
+    }
+
+    String getCommand() {
+        return command;
+    }
+
+    boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    String get(String name) {
+        List<String> values = options.get(name);
+        return values == null ? null : values.get(values.size() - 1);
+    }
+
+    String get(String name, String defaultValue) {
+        String value = get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    String require(String name) {
+        String value = get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("缺少必需的选项: --" + name);
+        }
+        return value;
+    }
+
+    List<String> getAll(String name) {
+        List<String> values = options.get(name);
+        return values == null ? Collections.emptyList() : values;
+    }
+
+    boolean flag(String name) {
+        return Boolean.parseBoolean(get(name, "false"));
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("选项 --" + name + " 需要一个整数: " + value);
+        }
+    }
+
+    /**
+     * 检查是否有未知的选项，避免拼写错误被静默忽略
+     */
+    void checkKnown(Set<String> known) {
+        for (String name : options.keySet()) {
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("未知的选项: --" + name);
+            }
+        }
+    }
+}
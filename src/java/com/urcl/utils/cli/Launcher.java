@@ -0,0 +1,340 @@
+package com.urcl.utils.cli;
+
+import com.urcl.utils.events.EventLog;
+import com.urcl.utils.image.timechange.BatchModifyImageTime;
+import com.urcl.utils.image.timechange.MetadataMode;
+import com.urcl.utils.image.timechange.ModificationOptions;
+import com.urcl.utils.image.timechange.SortType;
+import com.urcl.utils.pipeline.TimeChangeUploadPipeline;
+import com.urcl.utils.uploader.BaiduPhotoUploader;
+import com.urcl.utils.uploader.UploadOptions;
+import com.urcl.utils.uploader.dedup.DedupPolicy;
+import com.urcl.utils.uploader.dedup.DedupScope;
+import com.urcl.utils.watch.FolderWatcher;
+import com.urcl.utils.watch.WatchOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * 命令行入口，供 cron 和脚本调用：
+ * <pre>
+ *   java -jar TechChallenger.jar timechange --root D:\photos --start 2025-09-09T01:00 [--sort REVERSE] [--remove-metadata] [--modify-md5]
+ *   java -jar TechChallenger.jar upload --root D:\photos [--credentials baidu.properties] [--reconcile]
+ *   java -jar TechChallenger.jar pipeline --root D:\photos --start 2025-09-09T01:00 [--folder-parallelism 4] [--credentials baidu.properties]
+ *   java -jar TechChallenger.jar watch --root D:\photos [--start 2025-09-09T01:00] [--settle-seconds 30] [--workers 2]
+ * </pre>
+ * 上传的凭据不通过命令行传递（会出现在进程列表中），按以下顺序查找：
+ * {@code --credentials} 指定的 properties 文件（键为 bdstoken 和 cookie），然后是环境变量
+ * {@value #ENV_BDSTOKEN} 和 {@value #ENV_COOKIE}（或 {@value #ENV_COOKIE_FILE} 指向的文件）。
+ * <p>
+ * 退出码：0 成功，1 执行失败（timechange 中有文件的时间设置失败或文件夹读取失败时也是1），2 参数错误。
+ */
+public class Launcher {
+
+    static final String ENV_BDSTOKEN = "BAIDU_BDSTOKEN";
+    static final String ENV_COOKIE = "BAIDU_COOKIE";
+    static final String ENV_COOKIE_FILE = "BAIDU_COOKIE_FILE";
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final Set<String> FLAGS = new HashSet<>(Arrays.asList(
+            "remove-metadata", "remove-other-segments", "modify-md5", "incremental", "streaming", "reconcile", "process-existing", "coordinate", "help"));
+
+    private static final Set<String> TIMECHANGE_OPTIONS = new HashSet<>(Arrays.asList(
+            "root", "start", "sort", "remove-metadata", "remove-other-segments", "metadata-mode", "modify-md5", "folder-parallelism",
+            "file-parallelism", "incremental", "streaming", "streaming-memory-mb"));
+
+    private static final Set<String> UPLOAD_OPTIONS = new HashSet<>(Arrays.asList(
+            "root", "credentials", "reconcile", "lookahead", "initial-concurrency", "min-concurrency",
+            "max-concurrency", "upload-host", "coordinate", "lease-ttl-seconds",
+            "event-log", "event-sample", "event-buffer", "event-policy", "dedup", "dedup-scope", "dedup-distance", "dedup-threads"));
+
+    private static final Set<String> PIPELINE_OPTIONS = new HashSet<>(Arrays.asList(
+            "root", "start", "sort", "remove-metadata", "remove-other-segments", "metadata-mode", "modify-md5", "folder-parallelism",
+            "file-parallelism", "credentials", "reconcile", "initial-concurrency", "min-concurrency", "max-concurrency", "upload-host",
+            "event-log", "event-sample", "event-buffer", "event-policy"));
+
+    private static final Set<String> WATCH_OPTIONS = new HashSet<>(Arrays.asList(
+            "root", "settle-seconds", "workers", "process-existing",
+            "start", "sort", "remove-metadata", "remove-other-segments", "metadata-mode", "modify-md5", "file-parallelism",
+            "credentials", "reconcile", "initial-concurrency", "min-concurrency", "max-concurrency", "upload-host",
+            "event-log", "event-sample", "event-buffer", "event-policy", "dedup", "dedup-scope", "dedup-distance", "dedup-threads"));
+
+    public static void main(String[] args) {
+        int code = run(args, System.out, System.err);
+        if (code != EXIT_OK) {
+            System.exit(code);
+        }
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        CommandLine cmd;
+        try {
+            cmd = CommandLine.parse(args, FLAGS);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            printUsage(err);
+            return EXIT_USAGE;
+        }
+        if (cmd.getCommand() == null || "help".equals(cmd.getCommand()) || cmd.flag("help")) {
+            printUsage(out);
+            return EXIT_OK;
+        }
+
+        try {
+            switch (cmd.getCommand()) {
+                case "timechange":
+                    cmd.checkKnown(TIMECHANGE_OPTIONS);
+                    return BatchModifyImageTime.modifyCreationTime(toModificationOptions(cmd)).hasFailures() ? EXIT_FAILURE : EXIT_OK;
+                case "upload":
+                    cmd.checkKnown(UPLOAD_OPTIONS);
+                    String root = cmd.require("root");
+                    String[] credentials = loadCredentials(cmd);
+                    try (BaiduPhotoUploader uploader = new BaiduPhotoUploader(toUploadOptions(cmd))) {
+                        uploader.batchUpload(root, credentials[0], credentials[1]);
+                    }
+                    return EXIT_OK;
+                case "pipeline":
+                    cmd.checkKnown(PIPELINE_OPTIONS);
+                    ModificationOptions modificationOptions = toModificationOptions(cmd);
+                    String[] pipelineCredentials = loadCredentials(cmd);
+                    try (TimeChangeUploadPipeline pipeline = new TimeChangeUploadPipeline(modificationOptions, toUploadOptions(cmd))) {
+                        pipeline.run(pipelineCredentials[0], pipelineCredentials[1]);
+                    }
+                    return EXIT_OK;
+                case "watch":
+                    cmd.checkKnown(WATCH_OPTIONS);
+                    watch(cmd);
+                    return EXIT_OK;
+                default:
+                    err.println("未知的子命令: " + cmd.getCommand());
+                    printUsage(err);
+                    return EXIT_USAGE;
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return EXIT_USAGE;
+        } catch (Exception e) {
+            err.println("执行失败: " + e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    static ModificationOptions toModificationOptions(CommandLine cmd) {
+        LocalDateTime startTime;
+        String start = cmd.require("start");
+        try {
+            startTime = LocalDateTime.parse(start.trim().replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("--start 的格式应为 yyyy-MM-ddTHH:mm[:ss]: " + start);
+        }
+        SortType sortType;
+        try {
+            sortType = SortType.valueOf(cmd.get("sort", SortType.SEQUENTIAL.name()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--sort 只能是 " + Arrays.toString(SortType.values()));
+        }
+        MetadataMode metadataMode;
+        try {
+            metadataMode = MetadataMode.valueOf(cmd.get("metadata-mode", MetadataMode.STRIP.name()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--metadata-mode 只能是 " + Arrays.toString(MetadataMode.values()));
+        }
+        return ModificationOptions.builder()
+                .folderPath(cmd.require("root"))
+                .startTime(startTime)
+                .sortType(sortType)
+                .removeMetadata(cmd.flag("remove-metadata"))
+                .removeOtherSegments(cmd.flag("remove-other-segments"))
+                .metadataMode(metadataMode)
+                .modifyMD5(cmd.flag("modify-md5"))
+                .folderParallelism(cmd.getInt("folder-parallelism", 1))
+                .fileParallelism(cmd.getInt("file-parallelism", 1))
+                .incremental(cmd.flag("incremental"))
+                .streaming(cmd.flag("streaming"))
+                .streamingMemoryMb(cmd.has("streaming-memory-mb") ? cmd.getInt("streaming-memory-mb", 0) : null)
+                .build();
+    }
+
+    static WatchOptions toWatchOptions(CommandLine cmd) {
+        WatchOptions defaults = WatchOptions.builder().build();
+        return WatchOptions.builder()
+                .rootPath(cmd.require("root"))
+                .settleMillis(cmd.has("settle-seconds") ? cmd.getInt("settle-seconds", 0) * 1000L : defaults.getSettleMillis())
+                .workers(cmd.getInt("workers", defaults.getWorkers()))
+                .processExisting(cmd.flag("process-existing"))
+                .build();
+    }
+
+    /**
+     * 监听根目录直到进程被终止（Ctrl+C 或 SIGTERM），终止时等待正在处理的文件夹完成。
+     * 指定了 --start 时每个文件夹先修改时间再上传，否则只上传
+     */
+    private static void watch(CommandLine cmd) throws Exception {
+        WatchOptions watchOptions = toWatchOptions(cmd);
+        ModificationOptions modificationOptions = cmd.has("start") ? toModificationOptions(cmd) : null;
+        String[] credentials = loadCredentials(cmd);
+        BaiduPhotoUploader uploader = new BaiduPhotoUploader(toUploadOptions(cmd));
+
+        FolderWatcher watcher = new FolderWatcher(watchOptions, FolderWatcher.timeChangeThenUpload(
+                new File(watchOptions.getRootPath()), modificationOptions, uploader, credentials[0], credentials[1]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watcher.close();
+                watcher.awaitTermination();
+                uploader.close();
+            } catch (IOException e) {
+                // 已经关闭
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "watch-shutdown"));
+        watcher.run();
+    }
+
+    static UploadOptions toUploadOptions(CommandLine cmd) {
+        UploadOptions defaults = UploadOptions.builder().build();
+        List<String> hosts = cmd.getAll("upload-host");
+        EventLog.DropPolicy eventPolicy;
+        try {
+            eventPolicy = EventLog.DropPolicy.valueOf(cmd.get("event-policy", defaults.getEventDropPolicy().name()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--event-policy 只能是 " + Arrays.toString(EventLog.DropPolicy.values()));
+        }
+        DedupPolicy dedupPolicy;
+        try {
+            dedupPolicy = DedupPolicy.valueOf(cmd.get("dedup", defaults.getDedupPolicy().name()).toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--dedup 只能是 " + Arrays.toString(DedupPolicy.values()));
+        }
+        DedupScope dedupScope;
+        try {
+            dedupScope = DedupScope.valueOf(cmd.get("dedup-scope", defaults.getDedupScope().name()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--dedup-scope 只能是 " + Arrays.toString(DedupScope.values()));
+        }
+        int dedupDistance = cmd.getInt("dedup-distance", defaults.getDedupMaxDistance());
+        if (dedupDistance < 0 || dedupDistance > 64) {
+            throw new IllegalArgumentException("--dedup-distance 必须在0到64之间: " + dedupDistance);
+        }
+        return UploadOptions.builder()
+                .albumLookahead(cmd.getInt("lookahead", defaults.getAlbumLookahead()))
+                .initialConcurrency(cmd.getInt("initial-concurrency", defaults.getInitialConcurrency()))
+                .minConcurrency(cmd.getInt("min-concurrency", defaults.getMinConcurrency()))
+                .maxConcurrency(cmd.getInt("max-concurrency", defaults.getMaxConcurrency()))
+                .uploadHosts(hosts.isEmpty() ? defaults.getUploadHosts() : hosts)
+                .reconcileExistingAlbums(cmd.flag("reconcile"))
+                .coordinateWorkers(cmd.flag("coordinate"))
+                .leaseTtlSeconds(cmd.getInt("lease-ttl-seconds", (int) defaults.getLeaseTtlSeconds()))
+                .eventLogPath(cmd.get("event-log"))
+                .eventSampleRate(cmd.getInt("event-sample", defaults.getEventSampleRate()))
+                .eventBufferSize(cmd.getInt("event-buffer", defaults.getEventBufferSize()))
+                .eventDropPolicy(eventPolicy)
+                .dedupPolicy(dedupPolicy)
+                .dedupScope(dedupScope)
+                .dedupMaxDistance(dedupDistance)
+                .dedupThreads(cmd.getInt("dedup-threads", defaults.getDedupThreads()))
+                .build();
+    }
+
+    /**
+     * @return {bdstoken, cookie}
+     */
+    static String[] loadCredentials(CommandLine cmd) throws IOException {
+        String bdstoken = null;
+        String cookie = null;
+        String credentialsFile = cmd.get("credentials");
+        if (credentialsFile != null) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(Paths.get(credentialsFile))) {
+                props.load(in);
+            }
+            bdstoken = props.getProperty("bdstoken");
+            cookie = props.getProperty("cookie");
+        }
+        if (bdstoken == null) {
+            bdstoken = System.getenv(ENV_BDSTOKEN);
+        }
+        if (cookie == null) {
+            cookie = System.getenv(ENV_COOKIE);
+        }
+        if (cookie == null && System.getenv(ENV_COOKIE_FILE) != null) {
+            Path cookieFile = Paths.get(System.getenv(ENV_COOKIE_FILE));
+            cookie = new String(Files.readAllBytes(cookieFile), StandardCharsets.UTF_8).trim();
+        }
+        if (bdstoken == null || bdstoken.isEmpty() || cookie == null || cookie.isEmpty()) {
+            throw new IllegalArgumentException("缺少上传凭据: 请使用 --credentials 指定文件，或设置环境变量 "
+                    + ENV_BDSTOKEN + " 和 " + ENV_COOKIE + "/" + ENV_COOKIE_FILE);
+        }
+        return new String[]{bdstoken, cookie};
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("用法: <命令> [选项]");
+        out.println();
+        out.println("timechange  按文件名顺序批量修改图片时间");
+        out.println("  --root <目录>            根目录，其下每个子文件夹单独处理（必需）");
+        out.println("  --start <时间>           第一张图片的时间，如 2025-09-09T01:00（必需）");
+        out.println("  --sort <SEQUENTIAL|REVERSE>  排序方式，默认 SEQUENTIAL");
+        out.println("  --remove-metadata        移除元数据");
+        out.println("  --remove-other-segments  移除元数据时同时移除JPEG的其他APPn段和注释");
+        out.println("  --metadata-mode <STRIP|NEUTRALIZE>  STRIP 重写文件删除元数据（默认），");
+        out.println("                           NEUTRALIZE 原地把JPEG元数据段填0，不改变文件长度");
+        out.println("  --modify-md5             修改文件MD5");
+        out.println("  --folder-parallelism <n> 同时处理的子文件夹数，默认 1");
+        out.println("  --file-parallelism <n>   每个子文件夹内同时处理的文件数，默认 1");
+        out.println("  --incremental            增量模式，跳过上次运行后没有变化的文件夹和文件");
+        out.println("  --streaming              流式模式，用于超大文件夹，排序时内存占用有上限");
+        out.println("  --streaming-memory-mb <n> 流式模式下排序记录的内存预算，默认 64");
+        out.println();
+        out.println("upload      将每个子文件夹上传为一个一刻相册");
+        out.println("  --root <目录>            根目录（必需）");
+        out.println("  --credentials <文件>     包含 bdstoken 和 cookie 的 properties 文件，");
+        out.println("                           未指定时读取环境变量 " + ENV_BDSTOKEN + "、" + ENV_COOKIE + " 或 " + ENV_COOKIE_FILE);
+        out.println("  --reconcile              复用同名相册并跳过已上传的文件");
+        out.println("  --lookahead <n>          相册创建最多领先上传的相册数");
+        out.println("  --initial-concurrency <n> / --min-concurrency <n> / --max-concurrency <n>");
+        out.println("  --upload-host <url>      可选的上传主机，可重复指定");
+        out.println("  --coordinate             多个上传进程（可在共享同一目录的多台机器上）处理同一个根目录，");
+        out.println("                           通过文件夹中的租约文件划分，建议同时使用 --reconcile");
+        out.println("  --lease-ttl-seconds <n>  租约有效期，进程失去响应这么久后其文件夹由其他进程接手，默认 60");
+        out.println("  --event-log <文件>       把每个文件的上传结果和耗时追加写入该文件（每行一个JSON），控制台只输出相册进度");
+        out.println("  --event-sample <n>       每 n 个成功的文件记录1个，失败总是记录，默认 1");
+        out.println("  --event-buffer <n>       事件缓冲区大小，默认 8192");
+        out.println("  --event-policy <DROP|BLOCK>  缓冲区满时丢弃事件（默认）或等待写出");
+        out.println("  --dedup <OFF|REPORT|KEEP_FIRST|KEEP_LARGEST>  上传前检测相似的图片（感知哈希）：只报告，");
+        out.println("                           或每组只上传最早的/最大的一张，默认 OFF");
+        out.println("  --dedup-scope <ALBUM|RUN> 在同一相册内（默认）还是所有相册之间查找相似的图片");
+        out.println("  --dedup-distance <n>     哈希相差不超过 n 位（0到64）视为相似，默认 4");
+        out.println("  --dedup-threads <n>      计算哈希的线程数，默认为CPU核数");
+        out.println();
+        out.println("pipeline    修改时间后直接上传，每个文件修改完成后立即进入上传，不再重新扫描和计算MD5");
+        out.println("  --root / --start / --sort / --remove-metadata / --remove-other-segments / --metadata-mode / --modify-md5");
+        out.println("  --folder-parallelism <n> / --file-parallelism <n>  同 timechange（不支持增量和流式模式）");
+        out.println("  --credentials / --reconcile / 并发、上传主机和事件日志选项同 upload");
+        out.println();
+        out.println("watch       监听根目录，新的子文件夹写入稳定后立即修改时间并上传");
+        out.println("  --root <目录>            根目录（必需）");
+        out.println("  --settle-seconds <n>     子文件夹多少秒内没有新的写入后开始处理，默认 30");
+        out.println("  --workers <n>            同时处理的文件夹数，默认 2");
+        out.println("  --process-existing       启动时同时处理已经存在的未完成文件夹");
+        out.println("  --start <时间>           指定时先修改时间再上传，其余 timechange 选项同上（不支持增量和流式模式）");
+        out.println("  --credentials / --reconcile / 并发、上传主机、事件日志和相似图片选项同 upload");
+    }
+}
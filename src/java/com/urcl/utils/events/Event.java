@@ -0,0 +1,39 @@
+package com.urcl.utils.events;
+
+/**
+ * 事件日志中的一条记录：类型和若干键值对，创建时记录时间和线程名。
+ * 序列化在写出线程中进行，产生事件的线程只分配这个对象和字段数组
+ */
+public final class Event {
+
+    final long timestamp;
+    final String type;
+    final String thread;
+    final boolean failure;
+    final Object[] fields;
+
+    private Event(String type, boolean failure, Object[] fields) {
+        if (fields.length % 2 != 0) {
+            throw new IllegalArgumentException("字段必须成对出现: " + fields.length);
+        }
+        this.timestamp = System.currentTimeMillis();
+        this.type = type;
+        this.thread = Thread.currentThread().getName();
+        this.failure = failure;
+        this.fields = fields;
+    }
+
+    /**
+     * @param fields 依次为键（String）和值（数字、布尔值、字符串或其他对象的 toString），值为null的字段不写出
+     */
+    public static Event of(String type, Object... fields) {
+        return new Event(type, false, fields);
+    }
+
+    /**
+     * 失败事件，不参与采样，总是写出（缓冲区满时仍可能按丢弃策略丢弃）
+     */
+    public static Event failure(String type, Object... fields) {
+        return new Event(type, true, fields);
+    }
+}
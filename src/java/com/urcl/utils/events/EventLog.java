@@ -0,0 +1,292 @@
+package com.urcl.utils.events;
+
+import com.urcl.utils.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按文件记录的结构化事件流，每个事件写为一行JSON，供运行结束后分析（例如用 jq 统计耗时分布和失败原因）。
+ * <p>
+ * 产生事件的线程只把事件放进有界的环形缓冲区，由单独的写出线程批量序列化和写入，缓冲区取空时才刷新，
+ * 不经过控制台日志的格式化和锁。缓冲区满时按丢弃策略处理：DROP 丢弃新事件并计数（默认，不拖慢上传），
+ * BLOCK 等待写出线程（不丢事件，用于需要完整记录的分析运行）。
+ * <p>
+ * 采样率为 n 时每 n 个成功事件只写出1个，写出的事件带有 "sample":n 字段，统计时乘以 n 即可还原；
+ * 失败事件总是写出。关闭时写出一条 event-log 类型的汇总记录，包含写出、丢弃和采样跳过的事件数。
+ */
+@Slf4j
+public class EventLog implements Closeable {
+
+    // [可配置] 写出线程每批最多处理的事件数
+    static final int BATCH_SIZE = 256;
+
+    public enum DropPolicy {
+        DROP, BLOCK
+    }
+
+    private static final EventLog DISABLED = new EventLog();
+    private static final Event END_OF_EVENTS = Event.of("end");
+
+    private final BlockingQueue<Event> queue;
+    private final DropPolicy dropPolicy;
+    private final int sampleRate;
+    private final Writer writer;
+    private final Thread writerThread;
+
+    private final AtomicLong sampleSequence = new AtomicLong();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder writtenMetric;
+    private final LongAdder droppedMetric;
+    private volatile boolean closed;
+
+    private EventLog() {
+        this.queue = null;
+        this.dropPolicy = DropPolicy.DROP;
+        this.sampleRate = 1;
+        this.writer = null;
+        this.writerThread = null;
+        this.writtenMetric = null;
+        this.droppedMetric = null;
+    }
+
+    EventLog(Writer writer, int capacity, int sampleRate, DropPolicy dropPolicy) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.dropPolicy = dropPolicy == null ? DropPolicy.DROP : dropPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.writer = writer;
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        this.writtenMetric = metrics.counter("events.written");
+        this.droppedMetric = metrics.counter("events.dropped");
+        metrics.gauge("events.queue", queue::size);
+        this.writerThread = new Thread(this::drain, "event-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 追加写入 path（不存在时创建）
+     *
+     * @param capacity   缓冲区能容纳的事件数
+     * @param sampleRate 每多少个成功事件写出1个，1表示全部写出
+     */
+    public static EventLog open(Path path, int capacity, int sampleRate, DropPolicy dropPolicy) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE), StandardCharsets.UTF_8), 64 * 1024);
+        log.info("事件日志写入 {}（缓冲 {} 条，采样 1/{}，缓冲区满时 {}）", path, capacity, Math.max(1, sampleRate), dropPolicy);
+        return new EventLog(writer, capacity, sampleRate, dropPolicy);
+    }
+
+    /**
+     * @return 不记录任何事件的实例
+     */
+    public static EventLog disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return queue != null;
+    }
+
+    public void record(Event event) {
+        if (queue == null || closed) {
+            return;
+        }
+        if (!event.failure && sampleRate > 1 && sampleSequence.getAndIncrement() % sampleRate != 0) {
+            sampledOut.increment();
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+        if (dropPolicy == DropPolicy.BLOCK) {
+            try {
+                queue.put(event);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drop();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * 写出缓冲区中剩余的事件和汇总记录后关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        if (queue == null || closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(END_OF_EVENTS);
+                writerThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            StringBuilder line = new StringBuilder(128);
+            append(line, Event.of("event-log", "written", getWritten(), "dropped", getDropped(), "sampledOut", getSampledOut()), false);
+            writer.write(line.toString());
+        } finally {
+            writer.close();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        boolean failed = false;
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            for (Event event : batch) {
+                if (event == END_OF_EVENTS) {
+                    flush(failed);
+                    return;
+                }
+                if (failed) {
+                    drop();
+                    continue;
+                }
+                line.setLength(0);
+                append(line, event, sampleRate > 1 && !event.failure);
+                try {
+                    writer.write(line.toString());
+                    written.increment();
+                    writtenMetric.increment();
+                } catch (IOException e) {
+                    // 之后的事件都计为丢弃，不影响上传
+                    log.error("!!! 写入事件日志失败，之后的事件将被丢弃: {}", e.getMessage());
+                    failed = true;
+                    drop();
+                }
+            }
+            batch.clear();
+            if (queue.isEmpty()) {
+                failed = !flush(failed);
+            }
+        }
+    }
+
+    private void drop() {
+        dropped.increment();
+        droppedMetric.increment();
+    }
+
+    /**
+     * @return 是否可以继续写入
+     */
+    private boolean flush(boolean failed) {
+        if (failed) {
+            return false;
+        }
+        try {
+            writer.flush();
+            return true;
+        } catch (IOException e) {
+            log.error("!!! 写入事件日志失败，之后的事件将被丢弃: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void append(StringBuilder line, Event event, boolean sampled) {
+        line.append("{\"ts\":").append(event.timestamp).append(",\"type\":");
+        appendString(line, event.type);
+        line.append(",\"thread\":");
+        appendString(line, event.thread);
+        if (sampled) {
+            line.append(",\"sample\":").append(sampleRate);
+        }
+        Object[] fields = event.fields;
+        for (int i = 0; i < fields.length; i += 2) {
+            Object value = fields[i + 1];
+            if (value == null) {
+                continue;
+            }
+            line.append(',');
+            appendString(line, String.valueOf(fields[i]));
+            line.append(':');
+            if (value instanceof Number || value instanceof Boolean) {
+                line.append(value);
+            } else {
+                appendString(line, value.toString());
+            }
+        }
+        line.append("}\n");
+    }
+
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,133 @@
+package com.urcl.utils.image.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式的GIF元数据过滤器：逐个读取块，丢弃注释扩展和应用扩展（XMP等），图形控制扩展、图像描述符和LZW数据原样复制。
+ * 控制动画循环次数的 NETSCAPE2.0/ANIMEXTS1.0 和ICC色彩配置 ICCRGBG1 应用扩展会影响显示，始终保留。
+ * 结束标记之后的字节原样保留。
+ */
+public class GifMetadataStripper implements MetadataStripper {
+
+    private static final int EXTENSION = 0x21;
+    private static final int IMAGE_DESCRIPTOR = 0x2C;
+    private static final int TRAILER = 0x3B;
+    private static final int COMMENT_LABEL = 0xFE;
+    private static final int APPLICATION_LABEL = 0xFF;
+
+    // 应用扩展第一个子块中的标识（8字节）和验证码（3字节）
+    private static final String[] RENDERING_APPLICATIONS = {"NETSCAPE2.0", "ANIMEXTS1.0", "ICCRGBG1012"};
+
+    @Override
+    public boolean accepts(byte[] header, int length) {
+        return length >= 6 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F'
+                && header[3] == '8' && (header[4] == '7' || header[4] == '9') && header[5] == 'a';
+    }
+
+    @Override
+    public void filter(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[MetadataStrippers.BUFFER_SIZE];
+        // 文件头和逻辑屏幕描述符
+        if (Streams.readUpTo(in, buffer, 13) < 13 || !accepts(buffer, 6)) {
+            throw new IOException("不是GIF文件");
+        }
+        out.write(buffer, 0, 13);
+        copyColorTable(in, out, buffer, buffer[10]);
+
+        while (true) {
+            int block = in.read();
+            if (block < 0) {
+                return;
+            }
+            if (block == TRAILER) {
+                out.write(block);
+                Streams.copy(in, out, buffer, Long.MAX_VALUE);
+                return;
+            }
+            if (block == IMAGE_DESCRIPTOR) {
+                Streams.readFully(in, buffer, 9);
+                out.write(block);
+                out.write(buffer, 0, 9);
+                copyColorTable(in, out, buffer, buffer[8]);
+                // LZW最小码长，之后是图像数据子块
+                out.write(Streams.readByte(in));
+                copySubBlocks(in, out, buffer);
+                continue;
+            }
+            if (block != EXTENSION) {
+                throw new IOException("GIF块结构损坏: 未知的块 0x" + Integer.toHexString(block));
+            }
+
+            int label = Streams.readByte(in);
+            if (label == COMMENT_LABEL) {
+                skipSubBlocks(in);
+            } else if (label == APPLICATION_LABEL) {
+                filterApplicationExtension(in, out, buffer);
+            } else {
+                out.write(block);
+                out.write(label);
+                copySubBlocks(in, out, buffer);
+            }
+        }
+    }
+
+    /**
+     * 根据第一个子块中的应用标识决定保留还是丢弃
+     */
+    private void filterApplicationExtension(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int size = Streams.readByte(in);
+        Streams.readFully(in, buffer, size);
+        String application = new String(buffer, 0, Math.min(size, 11), StandardCharsets.ISO_8859_1);
+        for (String kept : RENDERING_APPLICATIONS) {
+            if (kept.equals(application)) {
+                out.write(EXTENSION);
+                out.write(APPLICATION_LABEL);
+                out.write(size);
+                out.write(buffer, 0, size);
+                if (size > 0) {
+                    copySubBlocks(in, out, buffer);
+                }
+                return;
+            }
+        }
+        if (size > 0) {
+            skipSubBlocks(in);
+        }
+    }
+
+    /**
+     * packed 的最高位表示有颜色表，低3位 n 表示颜色表有 2^(n+1) 个颜色
+     */
+    private static void copyColorTable(InputStream in, OutputStream out, byte[] buffer, byte packed) throws IOException {
+        if ((packed & 0x80) != 0) {
+            Streams.copy(in, out, buffer, 3L << ((packed & 0x07) + 1));
+        }
+    }
+
+    /**
+     * 复制子块直到长度为0的结束块（包括结束块）
+     */
+    private static void copySubBlocks(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        while (true) {
+            int size = Streams.readByte(in);
+            out.write(size);
+            if (size == 0) {
+                return;
+            }
+            Streams.copy(in, out, buffer, size);
+        }
+    }
+
+    private static void skipSubBlocks(InputStream in) throws IOException {
+        while (true) {
+            int size = Streams.readByte(in);
+            if (size == 0) {
+                return;
+            }
+            Streams.skipFully(in, size);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.urcl.utils.image.metadata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * 流式的JPEG元数据过滤器：逐个读取标记段，丢弃 APP1 中的 EXIF/XMP（可选丢弃其他 APPn 和 COM 段），
+ * 其余的段和扫描后的熵编码数据原样经过固定大小的缓冲区复制。
+ * <p>
+ * 每个文件只读一遍、写一遍，内存占用与文件大小无关。
+ * <p>
+ * 只需要让元数据不可读时，可以用 {@link #neutralize(Path)} 原地把这些段改为填满0的注释段，
+ * 文件长度和图像数据都不变，读写的字节数只与元数据的大小有关。
+ */
+public class JpegMetadataStripper implements MetadataStripper {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int TEM = 0x01;
+    private static final int RST0 = 0xD0;
+    private static final int RST7 = 0xD7;
+    private static final int APP0 = 0xE0;
+    private static final int APP1 = 0xE1;
+    private static final int APP2 = 0xE2;
+    private static final int APP14 = 0xEE;
+    private static final int APP15 = 0xEF;
+    private static final int COM = 0xFE;
+
+    private static final byte[] EXIF_ID = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] XMP_ID = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] XMP_EXTENSION_ID = "http://ns.adobe.com/xmp/extension/\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] JFIF_ID = "JFIF\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ICC_ID = "ICC_PROFILE\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ADOBE_ID = "Adobe".getBytes(StandardCharsets.ISO_8859_1);
+
+    // 判断段类型只需要看载荷开头的标识
+    private static final int ID_PEEK_SIZE = XMP_EXTENSION_ID.length;
+
+    private final boolean removeOtherSegments;
+
+    /**
+     * @param removeOtherSegments 是否同时丢弃其他 APPn 段和 COM 注释段。
+     *                            解码需要的 JFIF(APP0)、ICC色彩配置(APP2) 和 Adobe(APP14) 段始终保留
+     */
+    public JpegMetadataStripper(boolean removeOtherSegments) {
+        this.removeOtherSegments = removeOtherSegments;
+    }
+
+    /**
+     * 过滤文件：写入同目录下的临时文件，完成后原子地替换原文件
+     *
+     * @return 文件不是JPEG时不做任何修改并返回false
+     */
+    public boolean strip(Path file) throws IOException {
+        return strip(file, new byte[0]);
+    }
+
+    /**
+     * 过滤文件，并在过滤后的内容末尾追加 suffix（例如用于修改MD5的随机字节），整个文件只写一次
+     *
+     * @return 文件不是JPEG时不做任何修改并返回false
+     */
+    public boolean strip(Path file, byte[] suffix) throws IOException {
+        return strip(file, suffix, null);
+    }
+
+    /**
+     * 过滤文件并追加 suffix，写出的每个字节同时更新 digest（为null时不计算），
+     * 返回true后 digest 中即为新文件内容的摘要，不需要再读一遍文件
+     *
+     * @return 文件不是JPEG时不做任何修改并返回false
+     */
+    public boolean strip(Path file, byte[] suffix, MessageDigest digest) throws IOException {
+        return MetadataStrippers.rewrite(file, suffix, digest, this);
+    }
+
+    @Override
+    public boolean accepts(byte[] header, int length) {
+        return length >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == SOI;
+    }
+
+    /**
+     * 将 in 中的JPEG过滤后写入 out，两个流都不会被关闭
+     *
+     * @throws IOException 输入不是JPEG或者段结构损坏
+     */
+    @Override
+    public void filter(InputStream in, OutputStream out) throws IOException {
+        if (!isJpeg(in)) {
+            throw new IOException("不是JPEG文件");
+        }
+        filterAfterSoi(in, out);
+    }
+
+    /**
+     * 原地中和文件中的元数据：把要丢弃的段的标记改为 COM，并把段内容全部写为0。
+     * 只按段头跳着读取标记，直到扫描数据开始，之后的图像数据既不读取也不写入
+     *
+     * @return 写入的字节数（没有要中和的段时为0）；文件不是JPEG时不做任何修改并返回-1
+     * @throws IOException 段结构损坏。此时已经中和的段不会恢复，文件仍然是结构完整的JPEG
+     */
+    public long neutralize(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(4 + ID_PEEK_SIZE);
+            if (readAt(channel, header, 0, 2) < 2 || (header.get(0) & 0xFF) != 0xFF || (header.get(1) & 0xFF) != SOI) {
+                return -1;
+            }
+            byte[] id = new byte[ID_PEEK_SIZE];
+            ByteBuffer zeros = null;
+            long written = 0;
+            long pos = 2;
+            while (pos + 2 <= size) {
+                readAt(channel, header, pos, 2);
+                if ((header.get(0) & 0xFF) != 0xFF) {
+                    throw new IOException("JPEG段结构损坏: 期望标记，读到 0x" + Integer.toHexString(header.get(0) & 0xFF));
+                }
+                int marker = header.get(1) & 0xFF;
+                if (marker == 0xFF) {
+                    // 填充字节
+                    pos++;
+                    continue;
+                }
+                if (marker == SOS || marker == EOI) {
+                    return written;
+                }
+                if (marker == TEM || (marker >= RST0 && marker <= RST7)) {
+                    pos += 2;
+                    continue;
+                }
+
+                if (readAt(channel, header, pos + 2, 2) < 2) {
+                    throw new EOFException("JPEG段意外结束");
+                }
+                int length = ((header.get(0) & 0xFF) << 8) | (header.get(1) & 0xFF);
+                if (length < 2 || pos + 2 + length > size) {
+                    throw new IOException("JPEG段长度无效: " + length);
+                }
+                int peekLength = Math.min(length - 2, ID_PEEK_SIZE);
+                readAt(channel, header, pos + 4, peekLength);
+                header.get(id, 0, peekLength);
+
+                if (shouldDrop(marker, id, peekLength)) {
+                    if (zeros == null) {
+                        zeros = ByteBuffer.allocate(0xFFFF);
+                    }
+                    zeros.clear().limit(length - 2);
+                    writeAt(channel, zeros, pos + 4);
+                    written += length - 2;
+                    if (marker != COM) {
+                        writeAt(channel, ByteBuffer.wrap(new byte[]{(byte) COM}), pos + 1);
+                        written++;
+                    }
+                }
+                pos += 2 + length;
+            }
+            return written;
+        }
+    }
+
+    /**
+     * 从 position 开始读取 length 个字节到 buffer 的开头，读完后 buffer 的 position 为0
+     *
+     * @return 实际读到的字节数，文件结束时可能小于 length
+     */
+    private static int readAt(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.limit();
+    }
+
+    private static void writeAt(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * 读取并检查文件开头的 SOI 标记
+     */
+    private static boolean isJpeg(InputStream in) throws IOException {
+        return in.read() == 0xFF && in.read() == SOI;
+    }
+
+    private void filterAfterSoi(InputStream in, OutputStream out) throws IOException {
+        out.write(0xFF);
+        out.write(SOI);
+        byte[] buffer = new byte[MetadataStrippers.BUFFER_SIZE];
+
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                return;
+            }
+            if (b != 0xFF) {
+                throw new IOException("JPEG段结构损坏: 期望标记，读到 0x" + Integer.toHexString(b));
+            }
+            int marker = in.read();
+            // 标记前可以有任意个 0xFF 填充字节
+            while (marker == 0xFF) {
+                marker = in.read();
+            }
+            if (marker < 0) {
+                throw new EOFException("JPEG在标记处意外结束");
+            }
+
+            if (marker == SOS || marker == EOI) {
+                // 之后是熵编码数据（渐进式JPEG中还会穿插 DHT/SOS 段），元数据不会出现在这里，直接原样复制
+                out.write(0xFF);
+                out.write(marker);
+                Streams.copy(in, out, buffer, Long.MAX_VALUE);
+                return;
+            }
+            if (marker == TEM || (marker >= RST0 && marker <= RST7)) {
+                out.write(0xFF);
+                out.write(marker);
+                continue;
+            }
+
+            int length = (Streams.readByte(in) << 8) | Streams.readByte(in);
+            if (length < 2) {
+                throw new IOException("JPEG段长度无效: " + length);
+            }
+            int payloadLength = length - 2;
+            int peekLength = Math.min(payloadLength, ID_PEEK_SIZE);
+            Streams.readFully(in, buffer, peekLength);
+
+            if (shouldDrop(marker, buffer, peekLength)) {
+                Streams.skipFully(in, payloadLength - peekLength);
+            } else {
+                out.write(0xFF);
+                out.write(marker);
+                out.write(length >> 8);
+                out.write(length & 0xFF);
+                out.write(buffer, 0, peekLength);
+                Streams.copy(in, out, buffer, payloadLength - peekLength);
+            }
+        }
+    }
+
+    private boolean shouldDrop(int marker, byte[] id, int idLength) {
+        if (marker == APP1) {
+            if (startsWith(id, idLength, EXIF_ID) || startsWith(id, idLength, XMP_ID) || startsWith(id, idLength, XMP_EXTENSION_ID)) {
+                return true;
+            }
+            return removeOtherSegments;
+        }
+        if (!removeOtherSegments) {
+            return false;
+        }
+        if (marker == COM) {
+            return true;
+        }
+        if (marker < APP0 || marker > APP15) {
+            return false;
+        }
+        return !((marker == APP0 && startsWith(id, idLength, JFIF_ID))
+                || (marker == APP2 && startsWith(id, idLength, ICC_ID))
+                || (marker == APP14 && startsWith(id, idLength, ADOBE_ID)));
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
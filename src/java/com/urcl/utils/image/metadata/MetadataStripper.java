@@ -0,0 +1,26 @@
+package com.urcl.utils.image.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 一种图片格式的流式元数据过滤器：按格式的块结构逐块读取，丢弃元数据块，其余的块原样经过固定大小的缓冲区复制，
+ * 内存占用与文件大小无关。按文件头选择过滤器并重写文件见 {@link MetadataStrippers}
+ */
+public interface MetadataStripper {
+
+    /**
+     * @param header 文件开头的 length 个字节，最多 {@link MetadataStrippers#SNIFF_LENGTH} 个
+     * @return 是否是这个过滤器处理的格式
+     */
+    boolean accepts(byte[] header, int length);
+
+    /**
+     * 将 in 中的完整文件（从文件头开始）过滤后写入 out，两个流都不会被关闭。
+     * 文件结束标记之后的字节（例如用于修改MD5的随机字节）原样保留
+     *
+     * @throws IOException 输入不是这种格式或者块结构损坏
+     */
+    void filter(InputStream in, OutputStream out) throws IOException;
+}
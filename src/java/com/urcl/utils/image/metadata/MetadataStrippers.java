@@ -0,0 +1,121 @@
+package com.urcl.utils.image.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * 按文件头（而不是扩展名）选择 JPEG、PNG 或 GIF 的流式过滤器，混合格式的文件夹中每个文件都只读一遍、写一遍
+ */
+public class MetadataStrippers {
+
+    // [可配置] 读写缓冲区大小
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // 识别格式需要的文件头长度（PNG签名为8个字节）
+    public static final int SNIFF_LENGTH = 8;
+
+    private final JpegMetadataStripper jpeg;
+    private final MetadataStripper[] strippers;
+
+    /**
+     * @param removeOtherSegments 是否同时丢弃各格式中不影响显示的其他元数据，见各过滤器的说明
+     */
+    public MetadataStrippers(boolean removeOtherSegments) {
+        this.jpeg = new JpegMetadataStripper(removeOtherSegments);
+        this.strippers = new MetadataStripper[]{jpeg, new PngMetadataStripper(removeOtherSegments), new GifMetadataStripper()};
+    }
+
+    public JpegMetadataStripper getJpeg() {
+        return jpeg;
+    }
+
+    /**
+     * @return 处理这个文件格式的过滤器，不支持的格式返回null
+     */
+    public MetadataStripper detect(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), SNIFF_LENGTH)) {
+            return sniff(in, strippers);
+        }
+    }
+
+    /**
+     * 过滤文件并追加 suffix，写出的每个字节同时更新 digest（为null时不计算）。
+     * 写入同目录下的临时文件，完成后原子地替换原文件
+     *
+     * @return 不支持的格式不做任何修改并返回false
+     */
+    public boolean strip(Path file, byte[] suffix, MessageDigest digest) throws IOException {
+        return rewrite(file, suffix, digest, strippers);
+    }
+
+    /**
+     * 用 candidates 中第一个接受文件头的过滤器重写文件
+     *
+     * @return 没有过滤器接受时不做任何修改并返回false
+     */
+    static boolean rewrite(Path file, byte[] suffix, MessageDigest digest, MetadataStripper... candidates) throws IOException {
+        Path tmp = null;
+        try {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+                MetadataStripper stripper = sniff(in, candidates);
+                if (stripper == null) {
+                    return false;
+                }
+                tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "." + file.getFileName(), ".tmp");
+                OutputStream raw = Files.newOutputStream(tmp);
+                try (OutputStream out = new BufferedOutputStream(digest == null ? raw : new DigestOutputStream(raw, digest), BUFFER_SIZE)) {
+                    stripper.filter(in, out);
+                    out.write(suffix);
+                }
+            }
+            // 原文件的输入流关闭之后再替换，Windows 上无法替换仍被打开的文件
+            replace(tmp, file);
+        } finally {
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取文件头后回到流的开头，in 必须支持 mark
+     */
+    private static MetadataStripper sniff(InputStream in, MetadataStripper[] candidates) throws IOException {
+        byte[] header = new byte[SNIFF_LENGTH];
+        in.mark(SNIFF_LENGTH);
+        int length = Streams.readUpTo(in, header, SNIFF_LENGTH);
+        in.reset();
+        for (MetadataStripper candidate : candidates) {
+            if (candidate.accepts(header, length)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 用临时文件替换原文件，保留原文件的POSIX权限（临时文件默认只有所有者可读写）
+     */
+    static void replace(Path tmp, Path target) throws IOException {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (targetView != null) {
+            Files.setPosixFilePermissions(tmp, targetView.readAttributes().permissions());
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.urcl.utils.image.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 流式的PNG元数据过滤器：逐个读取块（长度、类型、数据、CRC），丢弃文本块 tEXt/iTXt/zTXt（其中包括XMP）和 eXIf，
+ * 其余的块（包括图像数据 IDAT）连同原来的CRC原样复制。IEND 之后的字节原样保留。
+ */
+public class PngMetadataStripper implements MetadataStripper {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final Set<String> METADATA_CHUNKS = new HashSet<>(Arrays.asList("tEXt", "iTXt", "zTXt", "eXIf"));
+
+    // 显示需要的辅助块（颜色、透明度、像素比例和APNG动画），丢弃其他辅助块时也保留
+    private static final Set<String> RENDERING_CHUNKS = new HashSet<>(Arrays.asList(
+            "tRNS", "gAMA", "cHRM", "sRGB", "iCCP", "cICP", "sBIT", "bKGD", "hIST", "pHYs", "sPLT", "acTL", "fcTL", "fdAT"));
+
+    private static final String IEND = "IEND";
+
+    private final boolean removeOtherSegments;
+
+    /**
+     * @param removeOtherSegments 是否同时丢弃 tIME 和其他不影响显示的辅助块（类型首字母小写的块）
+     */
+    public PngMetadataStripper(boolean removeOtherSegments) {
+        this.removeOtherSegments = removeOtherSegments;
+    }
+
+    @Override
+    public boolean accepts(byte[] header, int length) {
+        if (length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (header[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void filter(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[MetadataStrippers.BUFFER_SIZE];
+        if (Streams.readUpTo(in, buffer, SIGNATURE.length) < SIGNATURE.length || !accepts(buffer, SIGNATURE.length)) {
+            throw new IOException("不是PNG文件");
+        }
+        out.write(SIGNATURE);
+
+        while (true) {
+            // 块头：4字节长度和4字节类型
+            int read = Streams.readUpTo(in, buffer, 8);
+            if (read == 0) {
+                return;
+            }
+            if (read < 8) {
+                throw new IOException("PNG块头不完整");
+            }
+            long length = ((buffer[0] & 0xFFL) << 24) | ((buffer[1] & 0xFF) << 16) | ((buffer[2] & 0xFF) << 8) | (buffer[3] & 0xFF);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("PNG块长度无效: " + length);
+            }
+            String type = new String(buffer, 4, 4, StandardCharsets.ISO_8859_1);
+
+            if (shouldDrop(type)) {
+                Streams.skipFully(in, length + 4);
+                continue;
+            }
+            out.write(buffer, 0, 8);
+            Streams.copy(in, out, buffer, length + 4);
+            if (IEND.equals(type)) {
+                Streams.copy(in, out, buffer, Long.MAX_VALUE);
+                return;
+            }
+        }
+    }
+
+    private boolean shouldDrop(String type) {
+        if (METADATA_CHUNKS.contains(type)) {
+            return true;
+        }
+        // 首字母大写的是解码必需的关键块
+        return removeOtherSegments && Character.isLowerCase(type.charAt(0)) && !RENDERING_CHUNKS.contains(type);
+    }
+}
@@ -0,0 +1,80 @@
+package com.urcl.utils.image.metadata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 各格式的过滤器共用的流操作，数据不足时抛出 EOFException
+ */
+final class Streams {
+
+    private Streams() {
+    }
+
+    static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("文件意外结束");
+        }
+        return b;
+    }
+
+    static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) {
+                throw new EOFException("文件意外结束");
+            }
+            read += n;
+        }
+    }
+
+    /**
+     * @return 实际读到的字节数，流结束时可能小于 length
+     */
+    static int readUpTo(InputStream in, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    static void skipFully(InputStream in, long length) throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("文件意外结束");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * 复制最多 length 个字节，length 为 Long.MAX_VALUE 时复制到流结束
+     */
+    static void copy(InputStream in, OutputStream out, byte[] buffer, long length) throws IOException {
+        boolean toEnd = length == Long.MAX_VALUE;
+        while (length > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (n < 0) {
+                if (toEnd) {
+                    return;
+                }
+                throw new EOFException("文件意外结束");
+            }
+            out.write(buffer, 0, n);
+            length -= n;
+        }
+    }
+}
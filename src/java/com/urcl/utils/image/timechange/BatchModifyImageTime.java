@@ -1,5 +1,6 @@
 package com.urcl.utils.image.timechange;
 
+import com.urcl.utils.metrics.MetricsRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.imaging.common.bytesource.ByteSource;
 import org.apache.commons.imaging.common.bytesource.ByteSourceFile;
@@ -10,17 +11,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.attribute.FileTime;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  * 批量修改图片的时间
@@ -28,120 +27,347 @@ import java.util.regex.Pattern;
 @Slf4j
 public class BatchModifyImageTime {
 
-    // ... modifyCreationTime 方法 和 detectNameType 方法保持不变 ...
-    public static void modifyCreationTime(ModificationOptions options) {
+    // [可配置] 流式模式下排序记录的默认内存预算（MB）
+    static final int DEFAULT_STREAMING_MEMORY_MB = 64;
+
+    /**
+     * 处理根目录下的每个子文件夹。结束时输出汇总并发布到默认的指标注册表
+     *
+     * @return 每个文件夹的结果和各阶段的耗时；根路径不是文件夹或者没有子文件夹时不包含任何文件夹
+     */
+    public static ModificationReport modifyCreationTime(ModificationOptions options) {
+        ModificationReport report = new ModificationReport();
+        long start = System.nanoTime();
         String root_folder_path = options.getFolderPath();
         File rootFolder = new File(root_folder_path);
         if (!rootFolder.isDirectory()) {
             log.error("错误: 提供的根路径不是一个文件夹! {}", root_folder_path);
-            return;
+            return report;
         }
 
         File[] subFolders = rootFolder.listFiles(File::isDirectory);
         if (subFolders == null || subFolders.length == 0) {
             log.info("在根目录中没有找到任何子文件夹。");
-            return;
+            return report;
         }
 
-        log.info("发现 {} 个子文件夹，将为每一个文件夹进行分别进行排序。", subFolders.length);
-
-        for (File folder : subFolders) {
-            log.info("\n=======================================================");
-            log.info("====== 开始处理文件夹: {} ======", folder.getName());
-            log.info("=======================================================");
+        int folderParallelism = parallelism(options.getFolderParallelism());
+        int fileParallelism = parallelism(options.getFileParallelism());
+        log.info("发现 {} 个子文件夹，将为每一个文件夹进行分别进行排序。（文件夹并行度 {}，文件并行度 {}）",
+                subFolders.length, folderParallelism, fileParallelism);
 
-            try {
-                // 步骤 1: 自动检测 NameType
-                NameType detectedType = detectNameType(folder);
-                log.info("已自动检测到命名类型: {}", detectedType);
+        ModificationManifest manifest = Boolean.TRUE.equals(options.getIncremental())
+                ? ModificationManifest.load(rootFolder, options) : null;
 
-                // 步骤 2: 基于检测到的类型获取并排序文件
-                List<File> imageFiles = getImageFiles(folder, detectedType, options.getSortType());
-                if (imageFiles.isEmpty()) {
-                    log.warn("文件夹 {} 中没有找到符合条件的图片文件。", folder.getName());
-                    continue; // 跳到下一个文件夹
+        // 文件夹和文件使用两个独立的线程池，文件夹任务等待自己的文件任务时不会占满同一个池而死锁
+        ExecutorService folderExecutor = folderParallelism > 1 ? Executors.newFixedThreadPool(folderParallelism) : null;
+        ExecutorService fileExecutor = fileParallelism > 1 ? Executors.newFixedThreadPool(fileParallelism) : null;
+        try {
+            if (folderExecutor == null) {
+                for (File folder : subFolders) {
+                    processFolder(folder, options, fileExecutor, manifest, null, report);
                 }
+            } else {
+                List<CompletableFuture<Void>> futures = new ArrayList<>(subFolders.length);
+                for (File folder : subFolders) {
+                    futures.add(CompletableFuture.runAsync(() -> processFolder(folder, options, fileExecutor, manifest, null, report), folderExecutor));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            }
+        } finally {
+            if (folderExecutor != null) {
+                folderExecutor.shutdown();
+            }
+            if (fileExecutor != null) {
+                fileExecutor.shutdown();
+            }
+            if (manifest != null) {
+                try {
+                    manifest.save(rootFolder);
+                } catch (IOException e) {
+                    log.error("保存增量清单失败，下次运行将重新处理所有文件夹: {}", e.getMessage());
+                }
+            }
+        }
+        return finish(report, start);
+    }
+
+    /**
+     * 只处理一个子文件夹，例如监听模式中刚到达的文件夹。
+     * options 中的 folderPath、folderParallelism 和 incremental 在这里不起作用
+     */
+    public static ModificationReport modifyFolder(File folder, ModificationOptions options) {
+        return modifyFolder(folder, options, null);
+    }
+
+    /**
+     * 处理一个子文件夹，并按排序后的顺序把修改完成的文件交给 sink。
+     * 重写文件内容时同时计算新内容的MD5一并交出，之后使用这些文件时不需要再读一遍计算MD5。
+     * 为了按顺序交出文件，这里总是在内存中排序，options 中的 streaming 不起作用。sink 为null时与 {@link #modifyFolder(File, ModificationOptions)} 相同
+     */
+    public static ModificationReport modifyFolder(File folder, ModificationOptions options, ModifiedFileSink sink) {
+        ModificationReport report = new ModificationReport();
+        long start = System.nanoTime();
+        if (!folder.isDirectory()) {
+            log.error("错误: 提供的路径不是一个文件夹! {}", folder);
+            report.folder(folder.getName()).setStatus(ModificationReport.FolderStatus.FAILED);
+            return report;
+        }
+        int fileParallelism = parallelism(options.getFileParallelism());
+        ExecutorService fileExecutor = fileParallelism > 1 ? Executors.newFixedThreadPool(fileParallelism) : null;
+        try {
+            processFolder(folder, options, fileExecutor, null, sink, report);
+        } finally {
+            if (fileExecutor != null) {
+                fileExecutor.shutdown();
+            }
+        }
+        return finish(report, start);
+    }
 
-                log.info("找到 {} 个图片文件，准备处理...", imageFiles.size());
+    private static ModificationReport finish(ModificationReport report, long start) {
+        report.finish(System.nanoTime() - start);
+        report.logSummary();
+        report.publish(MetricsRegistry.getDefault());
+        return report;
+    }
 
-                // 步骤 3: 循环处理每张图片
+    private static int parallelism(Integer configured) {
+        return configured == null ? 1 : Math.max(1, configured);
+    }
+
+    /**
+     * 处理一个子文件夹。fileExecutor 为 null 时在当前线程中逐个处理文件。
+     * sink 不为 null 时按排序后的顺序把处理完的文件交给它。结果记录到 report 中
+     */
+    private static void processFolder(File folder, ModificationOptions options, ExecutorService fileExecutor,
+                                      ModificationManifest manifest, ModifiedFileSink sink, ModificationReport report) {
+        log.info("\n=======================================================");
+        log.info("====== 开始处理文件夹: {} ======", folder.getName());
+        log.info("=======================================================");
+        ModificationReport.FolderReport folderReport = report.folder(folder.getName());
+
+        if (sink == null && Boolean.TRUE.equals(options.getStreaming())) {
+            processFolderStreaming(folder, options, fileExecutor, manifest, report, folderReport);
+            return;
+        }
+
+        try {
+            // 步骤 1: 列出图片并对每个文件分别识别命名类型、排序
+            long scanStart = System.nanoTime();
+            File[] files = listImageFiles(folder);
+            if (files.length == 0) {
+                folderReport.setStatus(ModificationReport.FolderStatus.EMPTY);
+                throw new IllegalStateException("文件夹为空，无法确定命名约定。");
+            }
+            boolean unchanged = manifest != null && manifest.isUnchanged(folder.getName(), files);
+            report.recordPhase(ModificationReport.Phase.SCAN, System.nanoTime() - scanStart);
+            if (unchanged) {
+                log.info("文件夹 {} 自上次运行后没有变化，跳过。", folder.getName());
+                folderReport.setStatus(ModificationReport.FolderStatus.UNCHANGED);
+                folderReport.record(ModificationReport.FileOutcome.UNCHANGED, files.length);
+                return;
+            }
+            String[] names = new String[files.length];
+            for (int i = 0; i < files.length; i++) {
+                names[i] = files[i].getName();
+            }
+            FileNameClassifier.Classification classification = FileNameClassifier.classifyAndSort(names, options.getSortType());
+            report.recordPhase(ModificationReport.Phase.CLASSIFY, classification.getClassifyNanos());
+            report.recordPhase(ModificationReport.Phase.SORT, classification.getSortNanos());
+            if (classification.getDominantType() == null) {
+                folderReport.setStatus(ModificationReport.FolderStatus.UNRECOGNIZED);
+                throw new IllegalStateException("无法识别文件名格式。已检查的第一个文件: '" + names[0] + "'");
+            }
+            if (classification.isMixed()) {
+                log.info("已自动检测到命名类型: {}（混合命名: {}，无法识别 {} 个，按文件名排在最后）",
+                        classification.getDominantType(), classification.getCounts(), classification.getUnclassified());
+            } else {
+                log.info("已自动检测到命名类型: {}", classification.getDominantType());
+            }
+
+            // 步骤 2: 按排序结果得到文件列表
+            List<File> imageFiles = new ArrayList<>(files.length);
+            for (int index : classification.getOrder()) {
+                imageFiles.add(files[index]);
+            }
+
+            log.info("找到 {} 个图片文件，准备处理...", imageFiles.size());
+            if (sink != null) {
+                sink.start(imageFiles);
+            }
+
+            // 步骤 3: 处理每张图片。时间只由排序后的序号决定，并行处理的结果与串行处理完全相同
+            ModificationManifest.FolderState previous = manifest == null ? null : manifest.getFolder(folder.getName());
+            ModificationManifest.FileState[] states = new ModificationManifest.FileState[imageFiles.size()];
+            FileMutationPlan[] plans = new FileMutationPlan[imageFiles.size()];
+            for (int i = 0; i < plans.length; i++) {
+                plans[i] = sink == null ? FileMutationPlan.of(options, i) : FileMutationPlan.of(options, i).withContentDigest();
+            }
+            if (fileExecutor == null) {
                 for (int i = 0; i < imageFiles.size(); i++) {
-                    File imageFile = imageFiles.get(i);
-                    LocalDateTime currentTime = options.getStartTime().plusMinutes(i);
-                    Instant instant = currentTime.toInstant(ZoneOffset.UTC);
-                    FileTime fileTime = FileTime.from(instant);
-
-                    // 移除EXIF元数据
-                    if (options.getRemoveMetadata()) {
-                        try {
-                            removeAllMetadata(imageFile);
-                            log.debug("已移除EXIF元数据: {}", imageFile.getName());
-                        } catch (Exception e) {
-                            log.error("处理文件 {} 时移除元数据出错: {}", imageFile.getName(), e.getMessage());
-                        }
+                    states[i] = processFile(imageFiles.get(i), plans[i], previous, report, folderReport);
+                    if (sink != null) {
+                        sink.accept(imageFiles.get(i), plans[i].getContentMd5());
                     }
-
-                    // 修改MD5
-                    if (options.getModifyMD5()) {
-                        try (FileOutputStream fos = new FileOutputStream(imageFile, true)) {
-                            byte[] randomByte = new byte[1];
-                            ThreadLocalRandom.current().nextBytes(randomByte);
-                            fos.write(randomByte);
-                            log.debug("已向文件追加随机字节以修改MD5: {}", imageFile.getName());
-                        } catch (IOException e) {
-                            log.error("修改文件 {} 内容时出错: {}", imageFile.getName(), e.getMessage());
-                            continue;
-                        }
+                }
+            } else {
+                List<CompletableFuture<Void>> futures = new ArrayList<>(imageFiles.size());
+                for (int i = 0; i < imageFiles.size(); i++) {
+                    File imageFile = imageFiles.get(i);
+                    int index = i;
+                    futures.add(CompletableFuture.runAsync(() -> states[index] = processFile(imageFile, plans[index], previous, report, folderReport), fileExecutor));
+                }
+                if (sink != null) {
+                    // 按顺序等待每个文件完成后交出，后面的文件在此期间继续并行处理
+                    for (int i = 0; i < futures.size(); i++) {
+                        futures.get(i).join();
+                        sink.accept(imageFiles.get(i), plans[i].getContentMd5());
                     }
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            }
 
-                    // 修改文件时间戳
-                    try {
-                        Files.setAttribute(imageFile.toPath(), "creationTime", fileTime);
-                        Files.setLastModifiedTime(imageFile.toPath(), fileTime);
-                        log.info("成功修改 '{}' 的时间为 {}", imageFile.getName(), currentTime);
-                    } catch (IOException e) {
-                        log.error("修改文件 {} 的创建时间时出错：{}", imageFile.getName(), e.getMessage());
+            if (manifest != null) {
+                // 处理失败的文件不记录，下次运行时重新处理
+                ModificationManifest.FolderState current = new ModificationManifest.FolderState();
+                for (int i = 0; i < states.length; i++) {
+                    if (states[i] != null) {
+                        current.getFiles().put(imageFiles.get(i).getName(), states[i]);
                     }
                 }
-            } catch (IllegalStateException e) {
-                // 如果 detectNameType 抛出异常，则捕获它
-                log.error("!!! 跳过文件夹 '{}': {}", folder.getName(), e.getMessage());
+                manifest.putFolder(folder.getName(), current);
             }
+        } catch (IllegalStateException e) {
+            // 文件夹为空或文件名都无法识别
+            log.error("!!! 跳过文件夹 '{}': {}", folder.getName(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            folderReport.setStatus(ModificationReport.FolderStatus.FAILED);
+            log.error("!!! 处理文件夹 '{}' 的过程被中断。", folder.getName());
         }
     }
 
-    private static NameType detectNameType(File folder) throws IllegalStateException {
-        File[] imageFiles = folder.listFiles((dir, name) ->
-                name.toLowerCase().endsWith(".jpg") ||
-                        name.toLowerCase().endsWith(".jpeg") ||
-                        name.toLowerCase().endsWith(".png"));
-
-        if (imageFiles == null || imageFiles.length == 0) {
-            throw new IllegalStateException("文件夹为空，无法确定命名约定。");
+    /**
+     * 流式处理超大文件夹：只遍历一次目录，排序记录超过内存预算时溢出到临时文件，
+     * 然后按顺序逐个处理文件。并行处理时在途的文件数有上限，不为整个文件夹创建任务列表。
+     * 增量模式下只按文件跳过，不做整个文件夹的快速检查。
+     * 遍历目录时同时完成分类和排序（溢出的有序段在逐个处理文件时才合并），耗时全部计入 SCAN。
+     */
+    private static void processFolderStreaming(File folder, ModificationOptions options, ExecutorService fileExecutor,
+                                               ModificationManifest manifest, ModificationReport report,
+                                               ModificationReport.FolderReport folderReport) {
+        long budgetBytes = (options.getStreamingMemoryMb() == null ? DEFAULT_STREAMING_MEMORY_MB : options.getStreamingMemoryMb()) * 1024L * 1024L;
+        try (StreamingFolderSorter sorter = new StreamingFolderSorter(budgetBytes, options.getSortType())) {
+            long scanStart = System.nanoTime();
+            sorter.addFolder(folder.toPath());
+            report.recordPhase(ModificationReport.Phase.SCAN, System.nanoTime() - scanStart);
+            if (sorter.size() == 0) {
+                folderReport.setStatus(ModificationReport.FolderStatus.EMPTY);
+                log.error("!!! 跳过文件夹 '{}': {}", folder.getName(), "文件夹为空，无法确定命名约定。");
+                return;
+            }
+            if (sorter.getDominantType() == null) {
+                folderReport.setStatus(ModificationReport.FolderStatus.UNRECOGNIZED);
+                log.error("!!! 跳过文件夹 '{}': {}", folder.getName(), "无法识别文件名格式。");
+                return;
+            }
+            log.info("已自动检测到命名类型: {}（{}，无法识别 {} 个）", sorter.getDominantType(), sorter.getCounts(), sorter.getUnclassified());
+            log.info("找到 {} 个图片文件，准备处理...（排序时写出了 {} 个临时有序段）", sorter.size(), sorter.getSpilledRuns());
+
+            ModificationManifest.FolderState previous = manifest == null ? null : manifest.getFolder(folder.getName());
+            // 只有增量模式需要记录每个文件的状态，否则内存占用与文件数无关
+            Map<String, ModificationManifest.FileState> states = manifest == null ? null : new ConcurrentHashMap<>();
+            int maxInFlight = fileExecutor == null ? 0 : parallelism(options.getFileParallelism()) * 2;
+            Semaphore inFlight = new Semaphore(maxInFlight);
+            sorter.forEachInOrder((index, name) -> {
+                File imageFile = new File(folder, name);
+                if (fileExecutor == null) {
+                    recordState(states, name, processFile(imageFile, FileMutationPlan.of(options, index), previous, report, folderReport));
+                    return;
+                }
+                inFlight.acquireUninterruptibly();
+                CompletableFuture.runAsync(() -> recordState(states, name,
+                                processFile(imageFile, FileMutationPlan.of(options, index), previous, report, folderReport)), fileExecutor)
+                        .whenComplete((ignored, e) -> {
+                            inFlight.release();
+                            if (e != null) {
+                                folderReport.record(ModificationReport.FileOutcome.FAILED, 1);
+                                folderReport.addError(name, String.valueOf(e.getMessage()));
+                                log.error("处理文件 {} 时出错: {}", name, e.getMessage());
+                            }
+                        });
+            });
+            inFlight.acquireUninterruptibly(maxInFlight);
+
+            if (manifest != null) {
+                ModificationManifest.FolderState current = new ModificationManifest.FolderState();
+                current.getFiles().putAll(states);
+                manifest.putFolder(folder.getName(), current);
+            }
+        } catch (IOException e) {
+            folderReport.setStatus(ModificationReport.FolderStatus.FAILED);
+            log.error("!!! 跳过文件夹 '{}': {}", folder.getName(), e.getMessage());
         }
+    }
 
-        File firstFile = imageFiles[0];
-        String nameWithoutExt = firstFile.getName().substring(0, firstFile.getName().lastIndexOf('.'));
-
-        // 匹配顺序很重要，从最具体的开始
-        if (nameWithoutExt.matches("^[a-zA-Z]+20\\d{4}_\\d+$")) return NameType.PREFIX_YYYYMM_SEQ;
-        if (nameWithoutExt.matches("^20\\d{12}$")) return NameType.TIMESTAMP_14;
-        if (nameWithoutExt.matches("^\\d{8}_.+")) return NameType.DATE_STRING_SEQ;
-        if (nameWithoutExt.matches(".+\\s\\(\\d+\\)$")) return NameType.PREFIX_IN_PARENTHESES;
-        if (nameWithoutExt.matches(".+\\(\\d+\\)$")) return NameType.POST_PARENTHESES;
-        if (nameWithoutExt.matches("^\\d+_.+")) return NameType.RRE_UNDERLINE;
-        if (nameWithoutExt.matches("^\\d+$")) return NameType.NUMBER;
+    /**
+     * states 为null（非增量模式）时不记录
+     */
+    private static void recordState(Map<String, ModificationManifest.FileState> states, String name,
+                                    ModificationManifest.FileState state) {
+        if (states != null && state != null) {
+            states.put(name, state);
+        }
+    }
 
-        throw new IllegalStateException("无法识别文件名格式。已检查的第一个文件: '" + firstFile.getName() + "'");
+    /**
+     * 按计划处理一个文件，结果和各步骤的耗时记录到 report 中。
+     * previous 不为空时（增量模式），处理后没有被改动过的文件不再修改内容，时间也相同时直接跳过
+     *
+     * @return 处理后的文件状态，处理失败时返回null
+     */
+    private static ModificationManifest.FileState processFile(File imageFile, FileMutationPlan plan,
+                                                              ModificationManifest.FolderState previous,
+                                                              ModificationReport report, ModificationReport.FolderReport folderReport) {
+        ModificationReport.FileOutcome outcome = ModificationReport.FileOutcome.MODIFIED;
+        if (previous != null) {
+            ModificationManifest.FileState state = previous.unchanged(imageFile.getName(), imageFile.length(), imageFile.lastModified());
+            if (state != null) {
+                if (state.getTime() == plan.getTimeMillis()) {
+                    log.debug("文件 '{}' 未变化，跳过", imageFile.getName());
+                    folderReport.record(ModificationReport.FileOutcome.UNCHANGED, 1);
+                    return state;
+                }
+                plan = plan.timesOnly();
+                outcome = ModificationReport.FileOutcome.TIMES_ONLY;
+            }
+        }
+        boolean applied = plan.apply(imageFile);
+        recordPhase(report, ModificationReport.Phase.STRIP_METADATA, plan.getStripNanos());
+        recordPhase(report, ModificationReport.Phase.MODIFY_MD5, plan.getMd5Nanos());
+        recordPhase(report, ModificationReport.Phase.SET_TIMES, plan.getSetTimesNanos());
+        folderReport.addBytes(plan.getBytesRead(), plan.getBytesWritten());
+        if (plan.getError() != null) {
+            folderReport.addError(imageFile.getName(), plan.getError());
+        }
+        folderReport.record(applied ? outcome : ModificationReport.FileOutcome.FAILED, 1);
+        if (!applied) {
+            return null;
+        }
+        return new ModificationManifest.FileState(plan.getTimeMillis(), imageFile.length(), imageFile.lastModified());
     }
 
-    // ... removeAllMetadata, removeExifMetadata, rewriteFileContent 方法保持不变 ...
-    private static void removeAllMetadata(File imageFile) throws Exception {
-        removeExifMetadata(imageFile);
-        rewriteFileContent(imageFile);
+    /**
+     * nanos 小于0表示这个步骤没有执行
+     */
+    private static void recordPhase(ModificationReport report, ModificationReport.Phase phase, long nanos) {
+        if (nanos >= 0) {
+            report.recordPhase(phase, nanos);
+        }
     }
 
-    private static void removeExifMetadata(File imageFile) throws Exception {
+    static void removeExifMetadata(File imageFile) throws Exception {
         try {
             ByteSource byteSource = new ByteSourceFile(imageFile);
             try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
@@ -151,11 +377,22 @@ public class BatchModifyImageTime {
                 }
             }
         } catch (Exception e) {
-            System.out.println("使用Commons Imaging移除EXIF失败: " + e.getMessage());
+            // 不是JPEG或者没有EXIF时也会走到这里，随后仍会抹掉XMP并重写内容
+            log.debug("使用Commons Imaging移除EXIF失败: {}", e.getMessage());
         }
     }
 
-    private static void rewriteFileContent(File imageFile) throws IOException {
+    /**
+     * 抹掉文件中的XMP数据包，suffix 会追加在内容之后一起写出
+     */
+    static void rewriteFileContent(File imageFile, byte[] suffix) throws IOException {
+        rewriteFileContent(imageFile, suffix, null);
+    }
+
+    /**
+     * 同上，写出的内容同时更新 digest（为null时不计算）
+     */
+    static void rewriteFileContent(File imageFile, byte[] suffix, MessageDigest digest) throws IOException {
         byte[] content = Files.readAllBytes(imageFile.toPath());
         String contentStr = new String(content);
         int xmpStart = contentStr.indexOf("<x:xmpmeta");
@@ -170,116 +407,38 @@ public class BatchModifyImageTime {
         }
         try (FileOutputStream fos = new FileOutputStream(imageFile)) {
             fos.write(content);
+            fos.write(suffix);
+        }
+        if (digest != null) {
+            digest.update(content);
+            digest.update(suffix);
         }
     }
 
 
+    /**
+     * 按指定的命名类型和排序类型获取文件夹中的图片，所有文件都按该类型提取排序键
+     */
     public static List<File> getImageFiles(File folder, NameType nameType, SortType sortType) {
-        File[] files = folder.listFiles((dir, name) -> {
-            String lowerName = name.toLowerCase();
-            return lowerName.endsWith(".png") || lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg") || lowerName.endsWith(".gif");
-        });
-
-        if (files == null || files.length == 0) {
-            return new ArrayList<>();
+        File[] files = listImageFiles(folder);
+        String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = files[i].getName();
         }
-
-        fileSort(files, nameType, sortType);
-        return new ArrayList<>(Arrays.asList(files));
+        List<File> result = new ArrayList<>(files.length);
+        for (int index : FileNameClassifier.sort(names, nameType, sortType)) {
+            result.add(files[index]);
+        }
+        return result;
     }
 
-    /**
-     * 根据指定的命名类型和排序类型对文件数组进行排序。
-     */
-    private static void fileSort(File[] files, NameType nameType, SortType sortType) {
-        // 使用 switch 结构，更清晰且易于扩展
-        switch (nameType) {
-            case POST_PARENTHESES:
-                Arrays.sort(files, Comparator.comparing(file -> {
-                    String fileName = file.getName();
-                    int startIndex = fileName.lastIndexOf('(') + 1;
-                    int endIndex = fileName.lastIndexOf(')');
-                    return Integer.parseInt(fileName.substring(startIndex, endIndex));
-                }));
-                break;
-
-            case NUMBER:
-                Arrays.sort(files, Comparator.comparing(file -> {
-                    String fileName = file.getName();
-                    int endIndex = fileName.lastIndexOf('.');
-                    return Integer.parseInt(fileName.substring(0, endIndex));
-                }));
-                break;
-
-            case RRE_UNDERLINE:
-                Arrays.sort(files, Comparator.comparing(file -> {
-                    String fileName = file.getName();
-                    int endIndex = fileName.indexOf('_');
-                    return Integer.parseInt(fileName.substring(0, endIndex));
-                }));
-                break;
-
-            case TIMESTAMP_14:
-                Arrays.sort(files, Comparator.comparing(file -> {
-                    Matcher matcher = Pattern.compile("\\d{14}").matcher(file.getName());
-                    return matcher.find() ? Long.parseLong(matcher.group()) : 0L;
-                }));
-                break;
-
-            // ======================== [核心修改] ========================
-            // 让 PREFIX_YYYYMM_SEQ 和 DATE_STRING_SEQ 使用完全相同的排序逻辑
-            // 即：只按最后一个下划线后面的数字排序
-            case PREFIX_YYYYMM_SEQ:
-            case DATE_STRING_SEQ:
-                Arrays.sort(files, Comparator.comparingInt(file -> {
-                    String fileName = file.getName();
-                    int lastUnderscore = fileName.lastIndexOf('_');
-                    int dotIndex = fileName.lastIndexOf('.');
-
-                    if (lastUnderscore == -1 || dotIndex <= lastUnderscore) {
-                        log.warn("无法从 '{}' 中解析出序号，将按0处理。", fileName);
-                        return 0; // 返回一个默认值
-                    }
-
-                    try {
-                        String seqPart = fileName.substring(lastUnderscore + 1, dotIndex);
-                        return Integer.parseInt(seqPart);
-                    } catch (NumberFormatException e) {
-                        log.warn("文件名 '{}' 的序号部分不是有效数字，将按0处理。", fileName);
-                        return 0; // 解析失败时返回默认值
-                    }
-                }));
-                break;
-            // ==========================================================
-
-            case PREFIX_IN_PARENTHESES:
-                Arrays.sort(files, (file1, file2) -> {
-                    String name1 = file1.getName();
-                    String name2 = file2.getName();
-                    int p1Start = name1.lastIndexOf('(');
-                    String prefix1 = name1.substring(0, p1Start).trim();
-                    int num1 = Integer.parseInt(name1.substring(p1Start + 1, name1.lastIndexOf(')')));
-                    int p2Start = name2.lastIndexOf('(');
-                    String prefix2 = name2.substring(0, p2Start).trim();
-                    int num2 = Integer.parseInt(name2.substring(p2Start + 1, name2.lastIndexOf(')')));
-                    int prefixCompare = prefix1.compareTo(prefix2);
-                    return (prefixCompare != 0) ? prefixCompare : Integer.compare(num1, num2);
-                });
-                break;
-
-            default:
-                // 对于未知或不符合任何规则的类型，按文件名自然排序
-                Arrays.sort(files, Comparator.comparing(File::getName));
-                break;
-        }
+    private static File[] listImageFiles(File folder) {
+        File[] files = folder.listFiles((dir, name) -> isImageFileName(name));
+        return files == null ? new File[0] : files;
+    }
 
-        // 所有排序完成后，统一处理逆序逻辑
-        if (SortType.REVERSE.equals(sortType)) {
-            for (int i = 0; i < files.length / 2; i++) {
-                File temp = files[i];
-                files[i] = files[files.length - 1 - i];
-                files[files.length - 1 - i] = temp;
-            }
-        }
+    static boolean isImageFileName(String name) {
+        String lowerName = name.toLowerCase();
+        return lowerName.endsWith(".png") || lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg") || lowerName.endsWith(".gif");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,219 @@
+package com.urcl.utils.image.timechange;
+
+import com.urcl.utils.image.metadata.MetadataStrippers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 单个文件要做的全部修改：移除元数据、追加随机字节修改MD5、设置时间。
+ * <p>
+ * 文件内容的修改在一次打开/写入/关闭中完成（随机字节作为重写后内容的一部分写出），
+ * 创建时间和修改时间通过一次 {@link BasicFileAttributeView#setTimes} 设置。
+ * 需要时可以在重写内容的同时计算新内容的MD5，供随后的上传直接使用。
+ * <p>
+ * apply 之后可以取得各步骤的耗时和读写的字节数。修改MD5的随机字节随元数据一起写出时，其耗时计入移除元数据；
+ * 原地中和只统计写入的字节。
+ */
+@Slf4j
+class FileMutationPlan {
+
+    private static final MetadataStrippers STRIPPERS = new MetadataStrippers(false);
+    private static final MetadataStrippers STRIPPERS_ALL = new MetadataStrippers(true);
+
+    private final boolean removeMetadata;
+    private final boolean removeOtherSegments;
+    private final boolean neutralize;
+    private final boolean modifyMd5;
+    private final LocalDateTime time;
+    private final boolean digestContent;
+
+    // 重写内容时顺带计算出的MD5
+    private String contentMd5;
+
+    // apply 的统计，没有执行的步骤耗时为-1
+    private long stripNanos = -1;
+    private long md5Nanos = -1;
+    private long setTimesNanos = -1;
+    private long bytesRead;
+    private long bytesWritten;
+    private String error;
+
+    private FileMutationPlan(boolean removeMetadata, boolean removeOtherSegments, boolean neutralize, boolean modifyMd5,
+                             LocalDateTime time, boolean digestContent) {
+        this.removeMetadata = removeMetadata;
+        this.removeOtherSegments = removeOtherSegments;
+        this.neutralize = neutralize;
+        this.modifyMd5 = modifyMd5;
+        this.time = time;
+        this.digestContent = digestContent;
+    }
+
+    /**
+     * 排序后第 index 个文件的修改计划，其时间为 startTime + index 分钟
+     */
+    static FileMutationPlan of(ModificationOptions options, int index) {
+        return new FileMutationPlan(
+                Boolean.TRUE.equals(options.getRemoveMetadata()),
+                Boolean.TRUE.equals(options.getRemoveOtherSegments()),
+                options.getMetadataMode() == MetadataMode.NEUTRALIZE,
+                Boolean.TRUE.equals(options.getModifyMD5()),
+                options.getStartTime().plusMinutes(index),
+                false);
+    }
+
+    LocalDateTime getTime() {
+        return time;
+    }
+
+    long getTimeMillis() {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * 只设置时间、不修改文件内容的计划，用于增量模式下已经处理过的文件
+     */
+    FileMutationPlan timesOnly() {
+        return new FileMutationPlan(false, false, false, false, time, false);
+    }
+
+    /**
+     * 同一个计划，但在重写文件内容时同时计算新内容的MD5
+     */
+    FileMutationPlan withContentDigest() {
+        return new FileMutationPlan(removeMetadata, removeOtherSegments, neutralize, modifyMd5, time, true);
+    }
+
+    /**
+     * @return 32位的MD5字符串；只有要求计算、并且 apply 成功重写了文件内容时才有值，否则为null
+     */
+    String getContentMd5() {
+        return contentMd5;
+    }
+
+    long getStripNanos() {
+        return stripNanos;
+    }
+
+    long getMd5Nanos() {
+        return md5Nanos;
+    }
+
+    long getSetTimesNanos() {
+        return setTimesNanos;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return 最后一个出错步骤的错误信息，没有出错时为null。移除元数据出错时时间仍然会设置
+     */
+    String getError() {
+        return error;
+    }
+
+    /**
+     * @return 时间是否设置成功
+     */
+    boolean apply(File imageFile) {
+        byte[] suffix = modifyMd5 ? randomByte() : new byte[0];
+        boolean suffixWritten = false;
+
+        // 移除元数据，同时写出修改MD5的随机字节
+        if (removeMetadata) {
+            long start = System.nanoTime();
+            try {
+                suffixWritten = removeAllMetadata(imageFile, suffix);
+                log.debug("已移除EXIF元数据: {}", imageFile.getName());
+            } catch (Exception e) {
+                error = "移除元数据出错: " + e.getMessage();
+                log.error("处理文件 {} 时移除元数据出错: {}", imageFile.getName(), e.getMessage());
+            }
+            stripNanos = System.nanoTime() - start;
+        }
+
+        // 没有重写文件（或重写失败）时单独追加随机字节
+        if (modifyMd5 && !suffixWritten) {
+            long start = System.nanoTime();
+            try (FileOutputStream fos = new FileOutputStream(imageFile, true)) {
+                fos.write(suffix);
+                bytesWritten += suffix.length;
+            } catch (IOException e) {
+                error = "修改内容出错: " + e.getMessage();
+                log.error("修改文件 {} 内容时出错: {}", imageFile.getName(), e.getMessage());
+                return false;
+            } finally {
+                md5Nanos = System.nanoTime() - start;
+            }
+        }
+        if (modifyMd5) {
+            log.debug("已向文件追加随机字节以修改MD5: {}", imageFile.getName());
+        }
+
+        // 修改文件时间戳：修改时间和创建时间一次设置，访问时间不变
+        long start = System.nanoTime();
+        try {
+            FileTime fileTime = FileTime.from(time.toInstant(ZoneOffset.UTC));
+            Files.getFileAttributeView(imageFile.toPath(), BasicFileAttributeView.class).setTimes(fileTime, null, fileTime);
+            log.debug("成功修改 '{}' 的时间为 {}", imageFile.getName(), time);
+            return true;
+        } catch (IOException e) {
+            error = "修改时间出错: " + e.getMessage();
+            log.error("修改文件 {} 的创建时间时出错：{}", imageFile.getName(), e.getMessage());
+            return false;
+        } finally {
+            setTimesNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * JPEG、PNG和GIF文件按文件头选择流式过滤一次性移除元数据（JPEG可以原地中和），
+     * 无法识别的格式仍使用 removeExifMetadata 和 rewriteFileContent
+     *
+     * @return suffix 是否已经一起写出；原地中和时不重写文件，suffix 需要另外追加
+     */
+    private boolean removeAllMetadata(File imageFile, byte[] suffix) throws Exception {
+        MetadataStrippers strippers = removeOtherSegments ? STRIPPERS_ALL : STRIPPERS;
+        if (neutralize) {
+            long neutralized = strippers.getJpeg().neutralize(imageFile.toPath());
+            if (neutralized >= 0) {
+                bytesWritten += neutralized;
+                return false;
+            }
+        }
+        long originalLength = imageFile.length();
+        MessageDigest digest = digestContent ? MessageDigest.getInstance("MD5") : null;
+        if (!strippers.strip(imageFile.toPath(), suffix, digest)) {
+            BatchModifyImageTime.removeExifMetadata(imageFile);
+            BatchModifyImageTime.rewriteFileContent(imageFile, suffix, digest);
+        }
+        bytesRead += originalLength;
+        bytesWritten += imageFile.length();
+        if (digest != null) {
+            contentMd5 = String.format("%032x", new BigInteger(1, digest.digest()));
+        }
+        return true;
+    }
+
+    private static byte[] randomByte() {
+        byte[] randomByte = new byte[1];
+        ThreadLocalRandom.current().nextBytes(randomByte);
+        return randomByte;
+    }
+}
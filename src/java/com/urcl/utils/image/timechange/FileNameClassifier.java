@@ -0,0 +1,379 @@
+package com.urcl.utils.image.timechange;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 文件名分类与排序：用预编译的正则对每个文件分类一次，再为每个文件提取一次 long 类型的排序键，
+ * 最后对下标数组按主键排序，比较过程中不再解析文件名、也不产生装箱对象。
+ * <p>
+ * 同一个文件夹中允许混合多种命名方式：文件最多的类型排在最前，其余类型按文件数依次排在后面，
+ * 无法识别的文件按文件名排在最后。同一类型内按排序键排序，键相同时按文件名排序。
+ */
+@Slf4j
+class FileNameClassifier {
+
+    // 匹配顺序很重要，从最具体的开始
+    private static final NameType[] MATCH_ORDER = {
+            NameType.PREFIX_YYYYMM_SEQ,
+            NameType.TIMESTAMP_14,
+            NameType.DATE_STRING_SEQ,
+            NameType.PREFIX_IN_PARENTHESES,
+            NameType.POST_PARENTHESES,
+            NameType.RRE_UNDERLINE,
+            NameType.NUMBER,
+    };
+    private static final Pattern[] PATTERNS = {
+            Pattern.compile("^[a-zA-Z]+20\\d{4}_\\d+$"),
+            Pattern.compile("^20\\d{12}$"),
+            Pattern.compile("^\\d{8}_.+"),
+            Pattern.compile(".+\\s\\(\\d+\\)$"),
+            Pattern.compile(".+\\(\\d+\\)$"),
+            Pattern.compile("^\\d+_.+"),
+            Pattern.compile("^\\d+$"),
+    };
+
+    private static final int UNCLASSIFIED = -1;
+
+    private FileNameClassifier() {
+    }
+
+    /**
+     * 一个文件夹的分类结果
+     */
+    static class Classification {
+        private final NameType dominantType;
+        private final Map<NameType, Integer> counts;
+        private final int unclassified;
+        private final int[] order;
+        private final long classifyNanos;
+        private final long sortNanos;
+
+        Classification(NameType dominantType, Map<NameType, Integer> counts, int unclassified, int[] order,
+                       long classifyNanos, long sortNanos) {
+            this.dominantType = dominantType;
+            this.counts = counts;
+            this.unclassified = unclassified;
+            this.order = order;
+            this.classifyNanos = classifyNanos;
+            this.sortNanos = sortNanos;
+        }
+
+        /**
+         * @return 文件最多的命名类型，没有任何文件能被识别时返回null
+         */
+        NameType getDominantType() {
+            return dominantType;
+        }
+
+        Map<NameType, Integer> getCounts() {
+            return counts;
+        }
+
+        int getUnclassified() {
+            return unclassified;
+        }
+
+        /**
+         * @return 排序后的下标：第 i 个文件是 names[order[i]]
+         */
+        int[] getOrder() {
+            return order;
+        }
+
+        boolean isMixed() {
+            return counts.size() > 1 || (unclassified > 0 && !counts.isEmpty());
+        }
+
+        /**
+         * @return 分类和确定分组顺序的耗时
+         */
+        long getClassifyNanos() {
+            return classifyNanos;
+        }
+
+        /**
+         * @return 提取排序键和排序的耗时
+         */
+        long getSortNanos() {
+            return sortNanos;
+        }
+    }
+
+    /**
+     * 识别文件名（含扩展名）的命名类型
+     *
+     * @return 无法识别时返回null
+     */
+    static NameType classify(String fileName) {
+        String nameWithoutExt = stripExtension(fileName);
+        for (int i = 0; i < PATTERNS.length; i++) {
+            if (PATTERNS[i].matcher(nameWithoutExt).matches()) {
+                return MATCH_ORDER[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 对每个文件分别分类并排序
+     */
+    static Classification classifyAndSort(String[] names, SortType sortType) {
+        long start = System.nanoTime();
+        int n = names.length;
+        int[] types = new int[n];
+        int[] typeCounts = new int[NameType.values().length];
+        int unclassified = 0;
+        for (int i = 0; i < n; i++) {
+            NameType type = classify(names[i]);
+            if (type == null) {
+                types[i] = UNCLASSIFIED;
+                unclassified++;
+            } else {
+                types[i] = type.ordinal();
+                typeCounts[type.ordinal()]++;
+            }
+        }
+
+        int[] typeOrder = groupOrder(typeCounts);
+        int[] groupOfType = new int[typeCounts.length];
+        for (int rank = 0; rank < typeOrder.length; rank++) {
+            groupOfType[typeOrder[rank]] = rank;
+        }
+
+        Map<NameType, Integer> counts = new EnumMap<>(NameType.class);
+        for (int t = 0; t < typeCounts.length; t++) {
+            if (typeCounts[t] > 0) {
+                counts.put(NameType.values()[t], typeCounts[t]);
+            }
+        }
+        NameType dominantType = counts.isEmpty() ? null : NameType.values()[typeOrder[0]];
+
+        int[] groups = new int[n];
+        for (int i = 0; i < n; i++) {
+            groups[i] = types[i] == UNCLASSIFIED ? typeCounts.length : groupOfType[types[i]];
+        }
+        long classified = System.nanoTime();
+        long[] keys = extractKeys(names, types);
+        int[] order = sortIndices(names, groups, keys);
+        if (SortType.REVERSE.equals(sortType)) {
+            reverse(order);
+        }
+        return new Classification(dominantType, counts, unclassified, order, classified - start, System.nanoTime() - classified);
+    }
+
+    /**
+     * 类型的分组顺序：文件数多的在前，数量相同时按枚举顺序；无法识别的文件总在最后
+     *
+     * @param typeCounts 按 NameType 序号统计的文件数
+     * @return 按分组顺序排列的 NameType 序号
+     */
+    static int[] groupOrder(int[] typeCounts) {
+        Integer[] typeOrder = new Integer[typeCounts.length];
+        for (int t = 0; t < typeOrder.length; t++) {
+            typeOrder[t] = t;
+        }
+        Arrays.sort(typeOrder, (a, b) -> typeCounts[a] != typeCounts[b] ? Integer.compare(typeCounts[b], typeCounts[a]) : Integer.compare(a, b));
+        int[] result = new int[typeOrder.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = typeOrder[i];
+        }
+        return result;
+    }
+
+    /**
+     * 所有文件都按指定的命名类型提取排序键并排序
+     */
+    static int[] sort(String[] names, NameType nameType, SortType sortType) {
+        int[] types = new int[names.length];
+        Arrays.fill(types, nameType == null ? UNCLASSIFIED : nameType.ordinal());
+        int[] order = sortIndices(names, new int[names.length], extractKeys(names, types));
+        if (SortType.REVERSE.equals(sortType)) {
+            reverse(order);
+        }
+        return order;
+    }
+
+    private static long[] extractKeys(String[] names, int[] types) {
+        long[] keys = new long[names.length];
+        Map<String, Integer> prefixRanks = prefixRanks(names, types);
+        for (int i = 0; i < names.length; i++) {
+            if (types[i] == UNCLASSIFIED) {
+                // 无法识别的文件只按文件名排序
+                continue;
+            }
+            keys[i] = key(NameType.values()[types[i]], names[i], prefixRanks);
+        }
+        return keys;
+    }
+
+    /**
+     * PREFIX_IN_PARENTHESES 先按前缀再按括号中的数字排序：把不同的前缀排序一次得到名次，
+     * 键的高32位是前缀名次，低32位是数字
+     */
+    private static Map<String, Integer> prefixRanks(String[] names, int[] types) {
+        Map<String, Integer> ranks = new HashMap<>();
+        int parentheses = NameType.PREFIX_IN_PARENTHESES.ordinal();
+        for (int i = 0; i < names.length; i++) {
+            if (types[i] == parentheses) {
+                ranks.put(parenthesesPrefix(names[i]), 0);
+            }
+        }
+        String[] prefixes = ranks.keySet().toArray(new String[0]);
+        Arrays.sort(prefixes);
+        for (int rank = 0; rank < prefixes.length; rank++) {
+            ranks.put(prefixes[rank], rank);
+        }
+        return ranks;
+    }
+
+    private static long key(NameType type, String fileName, Map<String, Integer> prefixRanks) {
+        long key = numericKey(type, fileName);
+        if (type == NameType.PREFIX_IN_PARENTHESES) {
+            long rank = prefixRanks.get(parenthesesPrefix(fileName));
+            return (rank << 32) | Math.min(Math.max(key, 0), 0xFFFFFFFFL);
+        }
+        return key;
+    }
+
+    /**
+     * 提取文件名中用于排序的数字。PREFIX_IN_PARENTHESES 只返回括号中的数字，前缀需要另外比较
+     */
+    static long numericKey(NameType type, String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        int end = dot < 0 ? fileName.length() : dot;
+        switch (type) {
+            case POST_PARENTHESES:
+            case PREFIX_IN_PARENTHESES:
+                return parseDigits(fileName, fileName.lastIndexOf('(') + 1, fileName.lastIndexOf(')'));
+            case NUMBER:
+                return parseDigits(fileName, 0, end);
+            case RRE_UNDERLINE:
+                return parseDigits(fileName, 0, fileName.indexOf('_'));
+            case TIMESTAMP_14:
+                return firstDigitRun(fileName, 14);
+            case PREFIX_YYYYMM_SEQ:
+            case DATE_STRING_SEQ: {
+                // 只按最后一个下划线后面的数字排序
+                int lastUnderscore = fileName.lastIndexOf('_');
+                long seq = lastUnderscore < 0 || end <= lastUnderscore ? -1 : parseDigits(fileName, lastUnderscore + 1, end);
+                if (seq < 0) {
+                    log.warn("无法从 '{}' 中解析出序号，将按0处理。", fileName);
+                    return 0;
+                }
+                return seq;
+            }
+            default:
+                return 0;
+        }
+    }
+
+    static String parenthesesPrefix(String fileName) {
+        int start = fileName.lastIndexOf('(');
+        return (start < 0 ? fileName : fileName.substring(0, start)).trim();
+    }
+
+    /**
+     * 解析 [from, to) 之间的十进制数字，超出 long 范围时取最大值
+     *
+     * @return 区间为空或含有非数字字符时返回-1
+     */
+    static long parseDigits(String s, int from, int to) {
+        if (from < 0 || to > s.length() || from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value > (Long.MAX_VALUE - digit) / 10 ? Long.MAX_VALUE : value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return 第一个连续 length 位数字的值，没有时返回0
+     */
+    private static long firstDigitRun(String s, int length) {
+        int run = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++run == length) {
+                    return parseDigits(s, i + 1 - length, i + 1);
+                }
+            } else {
+                run = 0;
+            }
+        }
+        return 0;
+    }
+
+    private static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? fileName : fileName.substring(0, dot);
+    }
+
+    /**
+     * 按 (分组, 排序键, 文件名) 对下标做稳定的归并排序，比较时只访问基本类型数组，键相同时才比较文件名
+     */
+    private static int[] sortIndices(String[] names, int[] groups, long[] keys) {
+        int n = names.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n - width; lo += width << 1) {
+                merge(order, buffer, lo, lo + width, Math.min(lo + (width << 1), n), names, groups, keys);
+            }
+        }
+        return order;
+    }
+
+    private static void merge(int[] order, int[] buffer, int lo, int mid, int hi, String[] names, int[] groups, long[] keys) {
+        if (compare(order[mid - 1], order[mid], names, groups, keys) <= 0) {
+            return;
+        }
+        System.arraycopy(order, lo, buffer, lo, hi - lo);
+        int i = lo;
+        int j = mid;
+        for (int k = lo; k < hi; k++) {
+            if (i >= mid) {
+                order[k] = buffer[j++];
+            } else if (j >= hi) {
+                order[k] = buffer[i++];
+            } else if (compare(buffer[j], buffer[i], names, groups, keys) < 0) {
+                order[k] = buffer[j++];
+            } else {
+                order[k] = buffer[i++];
+            }
+        }
+    }
+
+    private static int compare(int a, int b, String[] names, int[] groups, long[] keys) {
+        if (groups[a] != groups[b]) {
+            return Integer.compare(groups[a], groups[b]);
+        }
+        if (keys[a] != keys[b]) {
+            return Long.compare(keys[a], keys[b]);
+        }
+        return names[a].compareTo(names[b]);
+    }
+
+    private static void reverse(int[] order) {
+        for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+}
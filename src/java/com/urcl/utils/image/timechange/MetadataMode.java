@@ -0,0 +1,18 @@
+package com.urcl.utils.image.timechange;
+
+/**
+ * 移除元数据的方式
+ */
+public enum MetadataMode {
+
+    /**
+     * 重写整个文件，删除元数据段
+     */
+    STRIP,
+
+    /**
+     * 只适用于JPEG：原地把元数据段改为填满0的注释段，文件长度不变，只读写元数据所在的字节，
+     * 适合网络存储上的大文件。其他格式仍按 STRIP 处理
+     */
+    NEUTRALIZE
+}
@@ -0,0 +1,196 @@
+package com.urcl.utils.image.timechange;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 增量模式下每个根目录的清单，记录上次运行使用的选项，以及每个子文件夹中每个文件分配到的时间、处理后的大小和修改时间。
+ * <p>
+ * 再次运行时，文件列表和大小、修改时间都没有变化的文件夹直接跳过；变化的文件夹中，
+ * 处理后没有被改动过的文件不会再次重写内容（避免重复追加修改MD5的字节），只在分配到的时间变化时重新设置时间。
+ * 只有起始时间变化时清单仍然有效，但每个文件夹都要重新分配时间（内容不变的文件只重新设置时间）；
+ * 其他选项变化时清单作废，所有文件重新处理。
+ */
+@Slf4j
+class ModificationManifest {
+
+    // [可配置] 清单文件名，保存在根目录下
+    static final String MANIFEST_FILE_NAME = ".timechange-manifest.json";
+
+    private static final int VERSION = 1;
+    private static final Gson GSON = new Gson();
+
+    private int version = VERSION;
+    private OptionsState options;
+    private Map<String, FolderState> folders = new HashMap<>();
+    // 本次运行的起始时间与清单中记录的不同，不能按文件夹整体跳过（不写入清单）
+    private transient boolean startTimeChanged;
+
+    /**
+     * 影响处理结果的选项。起始时间只影响分配的时间、不影响文件内容，不参与比较
+     */
+    static class OptionsState {
+        private String startTime;
+        private String sortType;
+        private boolean removeMetadata;
+        private boolean removeOtherSegments;
+        // 只有非默认的方式才记录，旧的清单仍然有效
+        private String metadataMode;
+        private boolean modifyMD5;
+
+        static OptionsState of(ModificationOptions options) {
+            OptionsState state = new OptionsState();
+            state.startTime = String.valueOf(options.getStartTime());
+            state.sortType = String.valueOf(options.getSortType());
+            state.removeMetadata = Boolean.TRUE.equals(options.getRemoveMetadata());
+            state.removeOtherSegments = Boolean.TRUE.equals(options.getRemoveOtherSegments());
+            state.metadataMode = options.getMetadataMode() == null || options.getMetadataMode() == MetadataMode.STRIP
+                    ? null : options.getMetadataMode().name();
+            state.modifyMD5 = Boolean.TRUE.equals(options.getModifyMD5());
+            return state;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof OptionsState)) {
+                return false;
+            }
+            OptionsState that = (OptionsState) o;
+            return removeMetadata == that.removeMetadata && removeOtherSegments == that.removeOtherSegments
+                    && modifyMD5 == that.modifyMD5
+                    && Objects.equals(sortType, that.sortType) && Objects.equals(metadataMode, that.metadataMode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sortType, removeMetadata, removeOtherSegments, metadataMode, modifyMD5);
+        }
+    }
+
+    static class FolderState {
+        private Map<String, FileState> files = new HashMap<>();
+
+        Map<String, FileState> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return 文件处理后没有被改动过时返回上次的记录，否则返回null
+         */
+        FileState unchanged(String name, long size, long lastModified) {
+            FileState state = files.get(name);
+            return state != null && state.size == size && state.lastModified == lastModified ? state : null;
+        }
+    }
+
+    static class FileState {
+        // 分配到的时间（毫秒时间戳）
+        private long time;
+        private long size;
+        private long lastModified;
+
+        FileState(long time, long size, long lastModified) {
+            this.time = time;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        long getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * 读取根目录下的清单。清单不存在、无法解析或者选项与本次不同时返回一个空清单
+     */
+    static ModificationManifest load(File rootFolder, ModificationOptions options) {
+        OptionsState current = OptionsState.of(options);
+        Path path = rootFolder.toPath().resolve(MANIFEST_FILE_NAME);
+        if (Files.isRegularFile(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                ModificationManifest manifest = GSON.fromJson(reader, ModificationManifest.class);
+                if (manifest != null && manifest.version == VERSION && current.equals(manifest.options)) {
+                    if (manifest.folders == null) {
+                        manifest.folders = new HashMap<>();
+                    }
+                    log.info("增量模式: 已读取清单，记录了 {} 个文件夹", manifest.folders.size());
+                    if (!Objects.equals(current.startTime, manifest.options.startTime)) {
+                        log.info("增量模式: 起始时间与上次运行不同，未改动的文件只重新设置时间");
+                        manifest.startTimeChanged = true;
+                        manifest.options = current;
+                    }
+                    return manifest;
+                }
+                log.info("增量模式: 选项与上次运行不同，所有文件夹将重新处理");
+            } catch (IOException | JsonParseException e) {
+                log.warn("增量模式: 无法读取清单 {}，所有文件夹将重新处理: {}", path, e.getMessage());
+            }
+        }
+        ModificationManifest manifest = new ModificationManifest();
+        manifest.options = current;
+        return manifest;
+    }
+
+    /**
+     * 写入临时文件后原子地替换旧清单。只保留仍然存在的文件夹的记录
+     */
+    synchronized void save(File rootFolder) throws IOException {
+        folders.keySet().removeIf(name -> !new File(rootFolder, name).isDirectory());
+        Path path = rootFolder.toPath().resolve(MANIFEST_FILE_NAME);
+        Path tmp = Files.createTempFile(rootFolder.toPath(), MANIFEST_FILE_NAME, ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(this, writer);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return 上次的记录，没有时返回一个空记录
+     */
+    synchronized FolderState getFolder(String folderName) {
+        FolderState state = folders.get(folderName);
+        return state == null ? new FolderState() : state;
+    }
+
+    synchronized void putFolder(String folderName, FolderState state) {
+        folders.put(folderName, state);
+    }
+
+    /**
+     * 起始时间没有变化，文件夹中的文件列表与记录完全相同，并且每个文件处理后都没有被改动过
+     */
+    synchronized boolean isUnchanged(String folderName, File[] files) {
+        FolderState state = folders.get(folderName);
+        if (startTimeChanged || state == null || state.files.size() != files.length) {
+            return false;
+        }
+        for (File file : files) {
+            if (state.unchanged(file.getName(), file.length(), file.lastModified()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -21,6 +21,41 @@ public class ModificationOptions {
 
     private Boolean removeMetadata;
 
+    /**
+     * 移除元数据时，是否同时移除JPEG中的其他 APPn 段和注释段（解码需要的 JFIF、ICC、Adobe 段会保留）
+     */
+    private Boolean removeOtherSegments;
+
+    /**
+     * 移除元数据的方式，为空时使用 {@link MetadataMode#STRIP}
+     */
+    private MetadataMode metadataMode;
+
     private Boolean modifyMD5;
 
+    /**
+     * 同时处理的子文件夹数，为空或小于等于1时逐个处理
+     */
+    private Integer folderParallelism;
+
+    /**
+     * 每个子文件夹内同时处理的文件数（所有文件夹共用），为空或小于等于1时逐个处理
+     */
+    private Integer fileParallelism;
+
+    /**
+     * 增量模式：在根目录下保存清单，再次运行时跳过没有变化的文件夹和文件，已处理过的文件不会再次修改内容
+     */
+    private Boolean incremental;
+
+    /**
+     * 流式模式：用于超大文件夹，只遍历一次目录，只保存紧凑的排序记录，超过内存预算时在磁盘上做外部归并排序
+     */
+    private Boolean streaming;
+
+    /**
+     * 流式模式下排序记录的内存预算（MB），为空时使用默认值
+     */
+    private Integer streamingMemoryMb;
+
 }
@@ -0,0 +1,262 @@
+package com.urcl.utils.image.timechange;
+
+import com.urcl.utils.metrics.LatencyHistogram;
+import com.urcl.utils.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次修改的结果：每个文件夹的状态、各结果的文件数、读写的字节数和出错的文件，以及每个阶段的耗时分布（纳秒）。
+ * <p>
+ * 文件夹级的阶段（扫描、分类、排序）每个文件夹记录一次，文件级的阶段每个文件记录一次。
+ * 流式模式下扫描、分类和排序在同一次遍历中完成，全部计入 SCAN。
+ */
+@Slf4j
+public class ModificationReport {
+
+    // [可配置] 发布到指标注册表时使用的名称前缀
+    static final String METRICS_PREFIX = "timechange";
+
+    public enum Phase {
+        SCAN, CLASSIFY, SORT, STRIP_METADATA, MODIFY_MD5, SET_TIMES
+    }
+
+    public enum FileOutcome {
+        /**
+         * 按选项修改了内容（如果有）并设置了时间
+         */
+        MODIFIED,
+        /**
+         * 增量模式：内容已经处理过，只重新设置了时间
+         */
+        TIMES_ONLY,
+        /**
+         * 增量模式：没有变化，跳过
+         */
+        UNCHANGED,
+        /**
+         * 时间设置失败
+         */
+        FAILED
+    }
+
+    public enum FolderStatus {
+        PROCESSED,
+        /**
+         * 增量模式：整个文件夹没有变化，跳过
+         */
+        UNCHANGED,
+        EMPTY,
+        /**
+         * 文件名无法识别，跳过
+         */
+        UNRECOGNIZED,
+        /**
+         * 读取文件夹失败或处理被中断
+         */
+        FAILED
+    }
+
+    /**
+     * 一个文件夹的结果，可以被处理这个文件夹中文件的多个线程同时更新
+     */
+    public static class FolderReport {
+        private final String name;
+        private volatile FolderStatus status = FolderStatus.PROCESSED;
+        private final AtomicLongArray counts = new AtomicLongArray(FileOutcome.values().length);
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        FolderReport(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public FolderStatus getStatus() {
+            return status;
+        }
+
+        public long getCount(FileOutcome outcome) {
+            return counts.get(outcome.ordinal());
+        }
+
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+
+        /**
+         * @return 形如 "文件名: 错误信息" 的列表，包括只是移除元数据失败、时间仍然设置成功的文件
+         */
+        public List<String> getErrors() {
+            synchronized (errors) {
+                return new ArrayList<>(errors);
+            }
+        }
+
+        void setStatus(FolderStatus status) {
+            this.status = status;
+        }
+
+        void record(FileOutcome outcome, long count) {
+            counts.addAndGet(outcome.ordinal(), count);
+        }
+
+        void addBytes(long read, long written) {
+            bytesRead.add(read);
+            bytesWritten.add(written);
+        }
+
+        void addError(String fileName, String message) {
+            errors.add(fileName + ": " + message);
+        }
+    }
+
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final Map<String, FolderReport> folders = new ConcurrentSkipListMap<>();
+    private volatile long elapsedNanos;
+
+    ModificationReport() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @return 按文件夹名排序
+     */
+    public Collection<FolderReport> getFolders() {
+        return Collections.unmodifiableCollection(folders.values());
+    }
+
+    /**
+     * @return 没有这个文件夹时返回null
+     */
+    public FolderReport getFolder(String name) {
+        return folders.get(name);
+    }
+
+    public long getCount(FileOutcome outcome) {
+        long total = 0;
+        for (FolderReport folder : folders.values()) {
+            total += folder.getCount(outcome);
+        }
+        return total;
+    }
+
+    public long getFolderCount(FolderStatus status) {
+        return folders.values().stream().filter(folder -> folder.getStatus() == status).count();
+    }
+
+    public long getBytesRead() {
+        return folders.values().stream().mapToLong(FolderReport::getBytesRead).sum();
+    }
+
+    public long getBytesWritten() {
+        return folders.values().stream().mapToLong(FolderReport::getBytesWritten).sum();
+    }
+
+    public LatencyHistogram getPhase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return 是否有文件的时间设置失败，或者有文件夹读取失败
+     */
+    public boolean hasFailures() {
+        return getCount(FileOutcome.FAILED) > 0 || getFolderCount(FolderStatus.FAILED) > 0;
+    }
+
+    FolderReport folder(String name) {
+        return folders.computeIfAbsent(name, FolderReport::new);
+    }
+
+    void recordPhase(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * 把计数、字节数和各阶段的总耗时累加到计数器，把本次各阶段的 p50/p90/p99/max 记录到历史中
+     */
+    public void publish(MetricsRegistry registry) {
+        for (FileOutcome outcome : FileOutcome.values()) {
+            registry.counter(METRICS_PREFIX + ".files." + key(outcome)).add(getCount(outcome));
+        }
+        for (FolderStatus status : FolderStatus.values()) {
+            registry.counter(METRICS_PREFIX + ".folders." + key(status)).add(getFolderCount(status));
+        }
+        registry.counter(METRICS_PREFIX + ".bytes.read").add(getBytesRead());
+        registry.counter(METRICS_PREFIX + ".bytes.written").add(getBytesWritten());
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = phases.get(phase);
+            String name = METRICS_PREFIX + ".phase." + key(phase);
+            registry.counter(name + ".count").add(histogram.getCount());
+            registry.counter(name + ".nanos").add(histogram.getTotal());
+            if (histogram.getCount() > 0) {
+                registry.history(name + ".p50").record(histogram.percentile(50));
+                registry.history(name + ".p90").record(histogram.percentile(90));
+                registry.history(name + ".p99").record(histogram.percentile(99));
+                registry.history(name + ".max").record(histogram.getMax());
+            }
+        }
+        registry.history(METRICS_PREFIX + ".elapsed.nanos").record(elapsedNanos);
+    }
+
+    void logSummary() {
+        log.info("=======================================================");
+        log.info("==========   T I M E C H A N G E   S U M M A R Y   ==========");
+        log.info("=======================================================");
+        log.info("[总体统计] 耗时 {} 秒", String.format("%.2f", elapsedNanos / 1e9));
+        log.info("  - 文件夹: 处理 {}, 未变化 {}, 空 {}, 无法识别 {}, 失败 {}",
+                getFolderCount(FolderStatus.PROCESSED), getFolderCount(FolderStatus.UNCHANGED), getFolderCount(FolderStatus.EMPTY),
+                getFolderCount(FolderStatus.UNRECOGNIZED), getFolderCount(FolderStatus.FAILED));
+        log.info("  - 文件: 修改 {}, 只设置时间 {}, 未变化 {}, 失败 {}", getCount(FileOutcome.MODIFIED),
+                getCount(FileOutcome.TIMES_ONLY), getCount(FileOutcome.UNCHANGED), getCount(FileOutcome.FAILED));
+        log.info("  - 读取 {} MB, 写入 {} MB", String.format("%.1f", getBytesRead() / 1048576.0),
+                String.format("%.1f", getBytesWritten() / 1048576.0));
+        log.info("[阶段耗时] 次数 / 总计ms / p50 / p90 / p99 / max (µs)");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = phases.get(phase);
+            if (histogram.getCount() > 0) {
+                log.info("  - {}: {} / {} / {} / {} / {} / {}", String.format("%-14s", phase), histogram.getCount(),
+                        histogram.getTotal() / 1_000_000, histogram.percentile(50) / 1000, histogram.percentile(90) / 1000,
+                        histogram.percentile(99) / 1000, histogram.getMax() / 1000);
+            }
+        }
+        for (FolderReport folder : folders.values()) {
+            for (String error : folder.getErrors()) {
+                log.warn("  ! {}/{}", folder.getName(), error);
+            }
+        }
+        log.info("=======================================================");
+    }
+
+    private static String key(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,24 @@
+package com.urcl.utils.image.timechange;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * 接收一个文件夹中修改完成的文件，例如交给上传器直接上传，不需要再扫描和排序一次文件夹
+ */
+public interface ModifiedFileSink {
+
+    /**
+     * 排序完成后、开始修改文件之前调用一次。文件夹为空或文件名无法识别时不会被调用
+     *
+     * @param files 排序后的文件列表
+     */
+    void start(List<File> files) throws InterruptedException;
+
+    /**
+     * 按排序后的顺序，每个文件修改完成后调用一次（修改失败的文件也会调用）
+     *
+     * @param md5 重写文件内容时顺带计算出的MD5，没有重写内容时为null
+     */
+    void accept(File file, String md5) throws InterruptedException;
+}
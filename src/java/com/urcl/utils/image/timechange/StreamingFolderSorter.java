@@ -0,0 +1,419 @@
+package com.urcl.utils.image.timechange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 超大文件夹的流式排序：用 {@link DirectoryStream} 只遍历一次文件夹，每个文件只保存紧凑的记录
+ * （排序键 + 文件名在字符数组中的偏移），不创建 File 对象。
+ * <p>
+ * 缓冲的记录超过内存预算时，按类型分别排序后写入临时文件（有序段），最后对每个类型的有序段做多路归并，
+ * 按与 {@link FileNameClassifier} 相同的顺序逐个输出文件名。
+ */
+class StreamingFolderSorter implements Closeable {
+
+    // 每条记录除文件名字符外的估算开销：排序键、偏移、长度、前缀范围、排序时的下标
+    private static final int RECORD_OVERHEAD_BYTES = 8 + 4 + 4 + 8 + 8;
+
+    private static final int TYPE_COUNT = NameType.values().length;
+    // 无法识别的文件放在最后一个桶中
+    private static final int UNCLASSIFIED_BUCKET = TYPE_COUNT;
+
+    /**
+     * 按顺序接收文件名
+     */
+    interface Visitor {
+        void visit(int index, String name) throws IOException;
+    }
+
+    private final long memoryBudgetBytes;
+    private final boolean reverse;
+    private final Bucket[] buckets = new Bucket[TYPE_COUNT + 1];
+    private long bufferedBytes;
+    private int count;
+    private int spilledRuns;
+    private Path spillDir;
+
+    /**
+     * @param memoryBudgetBytes 内存中缓冲的记录的估算大小上限，超过后写出有序段
+     * @param sortType          排序方式，有序段直接按最终顺序写出
+     */
+    StreamingFolderSorter(long memoryBudgetBytes, SortType sortType) {
+        this.memoryBudgetBytes = Math.max(1, memoryBudgetBytes);
+        this.reverse = SortType.REVERSE.equals(sortType);
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = new Bucket(b == NameType.PREFIX_IN_PARENTHESES.ordinal());
+        }
+    }
+
+    /**
+     * 遍历文件夹一次，加入所有图片文件
+     */
+    void addFolder(Path folder) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (BatchModifyImageTime.isImageFileName(name)) {
+                    add(name);
+                }
+            }
+        }
+    }
+
+    void add(String name) throws IOException {
+        NameType type = FileNameClassifier.classify(name);
+        int bucket = type == null ? UNCLASSIFIED_BUCKET : type.ordinal();
+        long key = type == null ? 0 : FileNameClassifier.numericKey(type, name);
+        buckets[bucket].add(name, key);
+        bufferedBytes += RECORD_OVERHEAD_BYTES + 2L * name.length();
+        count++;
+        if (bufferedBytes > memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return 写出到磁盘的有序段数量
+     */
+    int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    Map<NameType, Integer> getCounts() {
+        Map<NameType, Integer> counts = new EnumMap<>(NameType.class);
+        for (NameType type : NameType.values()) {
+            if (buckets[type.ordinal()].total > 0) {
+                counts.put(type, buckets[type.ordinal()].total);
+            }
+        }
+        return counts;
+    }
+
+    int getUnclassified() {
+        return buckets[UNCLASSIFIED_BUCKET].total;
+    }
+
+    /**
+     * @return 文件最多的命名类型，没有任何文件能被识别时返回null
+     */
+    NameType getDominantType() {
+        int[] order = FileNameClassifier.groupOrder(typeCounts());
+        return buckets[order[0]].total == 0 ? null : NameType.values()[order[0]];
+    }
+
+    /**
+     * 按排序结果依次访问所有文件名，只能调用一次
+     */
+    void forEachInOrder(Visitor visitor) throws IOException {
+        int[] typeOrder = FileNameClassifier.groupOrder(typeCounts());
+        int[] bucketOrder = Arrays.copyOf(typeOrder, typeOrder.length + 1);
+        bucketOrder[typeOrder.length] = UNCLASSIFIED_BUCKET;
+        if (reverse) {
+            for (int i = 0, j = bucketOrder.length - 1; i < j; i++, j--) {
+                int tmp = bucketOrder[i];
+                bucketOrder[i] = bucketOrder[j];
+                bucketOrder[j] = tmp;
+            }
+        }
+
+        int index = 0;
+        for (int b : bucketOrder) {
+            Bucket bucket = buckets[b];
+            if (bucket.runs.isEmpty()) {
+                for (int i : bucket.sortedOrder(reverse)) {
+                    visitor.visit(index++, bucket.name(i));
+                }
+            } else {
+                if (bucket.size > 0) {
+                    bucket.spill(reverse, this);
+                }
+                index = merge(bucket, visitor, index);
+            }
+        }
+    }
+
+    private int[] typeCounts() {
+        int[] counts = new int[TYPE_COUNT];
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            counts[t] = buckets[t].total;
+        }
+        return counts;
+    }
+
+    /**
+     * 写出所有桶中缓冲的记录，每个段内已按最终顺序排列
+     */
+    private void spill() throws IOException {
+        for (Bucket bucket : buckets) {
+            if (bucket.size > 0) {
+                bucket.spill(reverse, this);
+            }
+        }
+        bufferedBytes = 0;
+    }
+
+    private Path newRunFile() throws IOException {
+        if (spillDir == null) {
+            spillDir = Files.createTempDirectory("timechange-sort");
+        }
+        spilledRuns++;
+        return Files.createTempFile(spillDir, "run", ".bin");
+    }
+
+    /**
+     * 多路归并一个桶的所有有序段，同时打开的只有每个段的当前记录
+     */
+    private int merge(Bucket bucket, Visitor visitor, int index) throws IOException {
+        List<RunReader> readers = new ArrayList<>(bucket.runs.size());
+        try {
+            for (Path run : bucket.runs) {
+                readers.add(new RunReader(run, bucket.parentheses));
+            }
+            int sign = reverse ? -1 : 1;
+            PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, readers.size()),
+                    (a, b) -> sign * compareRecords(a.key, a.name, a.prefix, b.key, b.name, b.prefix));
+            for (RunReader reader : readers) {
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunReader head = heads.poll();
+                visitor.visit(index++, head.name);
+                if (head.next()) {
+                    heads.add(head);
+                }
+            }
+            return index;
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * 与 {@link FileNameClassifier} 相同的顺序：PREFIX_IN_PARENTHESES 先比较前缀，然后比较排序键，最后比较文件名
+     */
+    private static int compareRecords(long keyA, String nameA, String prefixA, long keyB, String nameB, String prefixB) {
+        if (prefixA != null) {
+            int c = prefixA.compareTo(prefixB);
+            if (c != 0) {
+                return c;
+            }
+        }
+        if (keyA != keyB) {
+            return Long.compare(keyA, keyB);
+        }
+        return nameA.compareTo(nameB);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillDir == null) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spillDir)) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        }
+        Files.deleteIfExists(spillDir);
+        spillDir = null;
+    }
+
+    /**
+     * 一种命名类型的记录：文件名连续存放在一个字符数组中，只保存偏移和长度
+     */
+    private static class Bucket {
+        private final boolean parentheses;
+        private final List<Path> runs = new ArrayList<>();
+        private long[] keys = new long[16];
+        private int[] offsets = new int[16];
+        private int[] lengths = new int[16];
+        // PREFIX_IN_PARENTHESES 的前缀（去掉首尾空白）在文件名中的范围
+        private int[] prefixStarts;
+        private int[] prefixEnds;
+        private char[] chars = new char[256];
+        private int charCount;
+        private int size;
+        private int total;
+
+        Bucket(boolean parentheses) {
+            this.parentheses = parentheses;
+            if (parentheses) {
+                prefixStarts = new int[16];
+                prefixEnds = new int[16];
+            }
+        }
+
+        void add(String name, long key) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                if (parentheses) {
+                    prefixStarts = Arrays.copyOf(prefixStarts, capacity);
+                    prefixEnds = Arrays.copyOf(prefixEnds, capacity);
+                }
+            }
+            if (charCount + name.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + name.length()));
+            }
+            name.getChars(0, name.length(), chars, charCount);
+            keys[size] = key;
+            offsets[size] = charCount;
+            lengths[size] = name.length();
+            if (parentheses) {
+                int end = name.lastIndexOf('(');
+                int start = 0;
+                end = end < 0 ? name.length() : end;
+                while (start < end && chars[charCount + start] <= ' ') {
+                    start++;
+                }
+                while (end > start && chars[charCount + end - 1] <= ' ') {
+                    end--;
+                }
+                prefixStarts[size] = charCount + start;
+                prefixEnds[size] = charCount + end;
+            }
+            charCount += name.length();
+            size++;
+            total++;
+        }
+
+        String name(int i) {
+            return new String(chars, offsets[i], lengths[i]);
+        }
+
+        int[] sortedOrder(boolean reverse) {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            mergeSort(order, new int[size], 0, size);
+            if (reverse) {
+                for (int i = 0, j = size - 1; i < j; i++, j--) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                }
+            }
+            return order;
+        }
+
+        private void mergeSort(int[] order, int[] buffer, int lo, int hi) {
+            if (hi - lo < 2) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            mergeSort(order, buffer, lo, mid);
+            mergeSort(order, buffer, mid, hi);
+            if (compare(order[mid - 1], order[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, lo, buffer, lo, hi - lo);
+            int i = lo;
+            int j = mid;
+            for (int k = lo; k < hi; k++) {
+                if (i >= mid) {
+                    order[k] = buffer[j++];
+                } else if (j >= hi || compare(buffer[i], buffer[j]) <= 0) {
+                    order[k] = buffer[i++];
+                } else {
+                    order[k] = buffer[j++];
+                }
+            }
+        }
+
+        private int compare(int a, int b) {
+            if (parentheses) {
+                int c = compareChars(prefixStarts[a], prefixEnds[a] - prefixStarts[a], prefixStarts[b], prefixEnds[b] - prefixStarts[b]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            if (keys[a] != keys[b]) {
+                return Long.compare(keys[a], keys[b]);
+            }
+            return compareChars(offsets[a], lengths[a], offsets[b], lengths[b]);
+        }
+
+        /**
+         * 与 String.compareTo 相同的比较规则
+         */
+        private int compareChars(int offsetA, int lengthA, int offsetB, int lengthB) {
+            int n = Math.min(lengthA, lengthB);
+            for (int i = 0; i < n; i++) {
+                char a = chars[offsetA + i];
+                char b = chars[offsetB + i];
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return lengthA - lengthB;
+        }
+
+        void spill(boolean reverse, StreamingFolderSorter sorter) throws IOException {
+            int[] order = sortedOrder(reverse);
+            Path path = sorter.newRunFile();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                for (int i : order) {
+                    out.writeLong(keys[i]);
+                    out.writeUTF(name(i));
+                }
+            }
+            runs.add(path);
+            size = 0;
+            charCount = 0;
+        }
+    }
+
+    private static class RunReader implements Closeable {
+        private final DataInputStream in;
+        private final boolean parentheses;
+        private long key;
+        private String name;
+        private String prefix;
+
+        RunReader(Path path, boolean parentheses) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            this.parentheses = parentheses;
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            name = in.readUTF();
+            prefix = parentheses ? FileNameClassifier.parenthesesPrefix(name) : null;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
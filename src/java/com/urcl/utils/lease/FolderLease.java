@@ -0,0 +1,116 @@
+package com.urcl.utils.lease;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * 一个进程对一个文件夹的租约，由 {@link FolderLeaseManager#tryClaim(File)} 取得。
+ * <p>
+ * 持有期间由管理器定期续约。租约可能在持有者停顿（例如长时间GC或挂起）超过有效期后被其他进程回收，
+ * 此后 {@link #isValid()} 返回false，持有者应当停止处理这个文件夹，也不要再把它标记为完成。
+ * 租约中可以记录少量属性（例如已经创建的相册ID），回收租约的进程可以读到这些属性并从中断处继续。
+ */
+public class FolderLease implements Closeable {
+
+    private final FolderLeaseManager manager;
+    private final Properties attributes;
+    private final boolean reclaimed;
+    private volatile File folder;
+    private volatile boolean lost;
+    private volatile boolean released;
+
+    FolderLease(FolderLeaseManager manager, File folder, Properties attributes, boolean reclaimed) {
+        this.manager = manager;
+        this.folder = folder;
+        this.attributes = attributes;
+        this.reclaimed = reclaimed;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return 是否是从失去响应的其他进程那里回收的租约，此时该进程可能已经处理了这个文件夹的一部分
+     */
+    public boolean isReclaimed() {
+        return reclaimed;
+    }
+
+    /**
+     * @return 没有这个属性时返回null
+     */
+    public String get(String key) {
+        synchronized (attributes) {
+            return attributes.getProperty(key);
+        }
+    }
+
+    /**
+     * 记录一个属性并立即写入租约文件
+     *
+     * @throws IOException 写入失败，或者租约已经失效
+     */
+    public void put(String key, String value) throws IOException {
+        if (!isValid()) {
+            throw new IOException("租约已失效: " + folder);
+        }
+        synchronized (attributes) {
+            attributes.setProperty(key, value);
+            manager.write(this, attributes);
+        }
+    }
+
+    /**
+     * @return 租约是否仍由本进程持有
+     */
+    public boolean isValid() {
+        return !lost && !released;
+    }
+
+    /**
+     * 持有者把文件夹重命名后调用，租约文件随文件夹一起移动
+     */
+    public void moveTo(File newFolder) {
+        this.folder = newFolder;
+    }
+
+    /**
+     * 删除租约文件，其他进程可以立即认领这个文件夹（如果它还没有被重命名为完成）。可以重复调用
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        manager.release(this);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    Path path() {
+        return manager.leasePath(folder);
+    }
+
+    Properties snapshot() {
+        synchronized (attributes) {
+            Properties copy = new Properties();
+            copy.putAll(attributes);
+            return copy;
+        }
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    void markLost() {
+        lost = true;
+    }
+}
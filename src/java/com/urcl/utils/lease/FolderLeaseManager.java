@@ -0,0 +1,319 @@
+package com.urcl.utils.lease;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个进程（同一台机器上，或者共享同一个NFS目录的多台机器上）处理同一个根目录时，用租约文件划分文件夹，
+ * 每个文件夹同一时间只由一个进程处理。
+ * <p>
+ * 租约文件是文件夹中的 {@value #LEASE_FILE_NAME}：以 CREATE_NEW 原子创建即取得租约，内容是持有者的标识和属性。
+ * 持有者每隔有效期的三分之一更新一次文件的修改时间作为心跳，处理完后删除。文件夹被重命名（例如标记为完成）时
+ * 租约文件随之移动，其他进程不会再在原来的路径上取得租约。
+ * <p>
+ * 一个租约的修改时间在本进程观察到的整个有效期内都没有变化时视为过期，可以被回收。判断只依赖本进程的单调时钟，
+ * 与各台机器之间的时钟偏差无关，代价是新启动的进程至少要观察一个有效期才能回收遗留的租约。
+ * 回收时先以 CREATE_NEW 取得文件夹中的回收锁，再确认租约仍未变化后改写为本进程的租约，
+ * 同一时间只有一个进程能回收同一个租约。
+ */
+@Slf4j
+public class FolderLeaseManager implements Closeable {
+
+    public static final String LEASE_FILE_NAME = ".upload-lease";
+
+    private static final String RECLAIM_LOCK_SUFFIX = ".reclaim";
+    private static final String OWNER_KEY = "lease.owner";
+
+    private final String ownerId;
+    private final long ttlMillis;
+    private final Set<FolderLease> held = ConcurrentHashMap.newKeySet();
+    // 其他进程的租约文件 -> 本进程最近一次看到的修改时间及其开始的时刻
+    private final Map<Path, Observation> observations = new ConcurrentHashMap<>();
+    // 持有的租约 -> 上一次心跳时没有找到的租约文件路径，只在心跳线程中访问
+    private final Map<FolderLease, Path> missing = new HashMap<>();
+    private final ScheduledExecutorService heartbeats;
+
+    private static class Observation {
+        private final long modifiedMillis;
+        private final long sinceNanos;
+
+        Observation(long modifiedMillis, long sinceNanos) {
+            this.modifiedMillis = modifiedMillis;
+            this.sinceNanos = sinceNanos;
+        }
+    }
+
+    /**
+     * 认领到一个文件夹后的处理
+     */
+    public interface ClaimHandler {
+        void claimed(FolderLease lease) throws InterruptedException;
+    }
+
+    /**
+     * @param ttlMillis 租约的有效期，持有者超过这个时间没有续约时可以被回收。
+     *                  需要明显大于文件系统修改时间的精度（部分NFS和FAT为1到2秒）
+     */
+    public FolderLeaseManager(long ttlMillis) {
+        this(ManagementFactory.getRuntimeMXBean().getName() + "#" + UUID.randomUUID().toString().substring(0, 8), ttlMillis);
+    }
+
+    FolderLeaseManager(String ownerId, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("租约有效期必须大于0: " + ttlMillis);
+        }
+        this.ownerId = ownerId;
+        this.ttlMillis = ttlMillis;
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = heartbeatIntervalMillis();
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * 尝试取得文件夹的租约：没有租约时直接创建，租约已经过期时回收
+     *
+     * @return 文件夹已不存在（例如已经被其他进程处理完并重命名），或者租约由其他进程持有且未过期时返回null
+     */
+    public FolderLease tryClaim(File folder) throws IOException {
+        Path lease = leasePath(folder);
+        try {
+            FolderLease created = new FolderLease(this, folder, new Properties(), false);
+            Files.write(lease, serialize(new Properties()), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            held.add(created);
+            return created;
+        } catch (FileAlreadyExistsException e) {
+            return tryReclaim(folder, lease);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 认领并处理 folders 中的每个文件夹：先认领所有空闲的文件夹，其余的每隔一个心跳间隔重试一次，
+     * 直到每个文件夹都被本进程认领过一次，或者已经不存在（被持有它的进程处理完并重命名）。
+     * 租约由 handler 负责释放；handler 在当前线程中调用，阻塞时不会认领新的文件夹
+     */
+    public void claimEach(List<File> folders, ClaimHandler handler) throws InterruptedException {
+        List<File> pending = new ArrayList<>(folders);
+        while (true) {
+            for (Iterator<File> it = pending.iterator(); it.hasNext(); ) {
+                File folder = it.next();
+                FolderLease lease;
+                try {
+                    lease = folder.isDirectory() ? tryClaim(folder) : null;
+                } catch (IOException e) {
+                    log.warn("认领文件夹 {} 失败，稍后重试: {}", folder.getName(), e.getMessage());
+                    continue;
+                }
+                if (lease != null) {
+                    it.remove();
+                    handler.claimed(lease);
+                } else if (!folder.isDirectory()) {
+                    it.remove();
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            log.debug("{} 个文件夹正由其他进程处理，{} 毫秒后重新检查。", pending.size(), heartbeatIntervalMillis());
+            Thread.sleep(heartbeatIntervalMillis());
+        }
+    }
+
+    /**
+     * 停止续约并释放仍然持有的租约
+     */
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        for (FolderLease lease : held) {
+            lease.release();
+        }
+    }
+
+    long heartbeatIntervalMillis() {
+        return Math.max(1, ttlMillis / 3);
+    }
+
+    Path leasePath(File folder) {
+        return folder.toPath().resolve(LEASE_FILE_NAME);
+    }
+
+    private FolderLease tryReclaim(File folder, Path lease) throws IOException {
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(lease).toMillis();
+        } catch (NoSuchFileException e) {
+            // 刚刚被释放，下一轮再认领
+            return null;
+        }
+        if (!expired(lease, modified)) {
+            return null;
+        }
+
+        Path lock = lease.resolveSibling(LEASE_FILE_NAME + RECLAIM_LOCK_SUFFIX);
+        try {
+            Files.write(lock, ownerId.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            // 另一个进程正在回收；回收锁本身遗留超过一个有效期时删除，下一轮再试
+            removeIfExpired(lock);
+            return null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            // 持有锁后确认租约在此期间没有续约，也没有被释放
+            if (Files.getLastModifiedTime(lease).toMillis() != modified) {
+                return null;
+            }
+            Properties previous = deserialize(Files.readAllBytes(lease));
+            String previousOwner = previous.getProperty(OWNER_KEY);
+            previous.remove(OWNER_KEY);
+            FolderLease reclaimed = new FolderLease(this, folder, previous, true);
+            Files.write(lease, serialize(previous), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis()));
+            held.add(reclaimed);
+            observations.remove(lease);
+            log.warn("回收了文件夹 {} 的过期租约（原持有者 {} 已超过 {} 毫秒没有续约）", folder.getName(), previousOwner, ttlMillis);
+            return reclaimed;
+        } catch (NoSuchFileException e) {
+            return null;
+        } finally {
+            Files.deleteIfExists(lock);
+        }
+    }
+
+    /**
+     * @return 从本进程第一次看到这个修改时间起是否已经超过有效期
+     */
+    private boolean expired(Path path, long modifiedMillis) {
+        long now = System.nanoTime();
+        Observation observation = observations.get(path);
+        if (observation == null || observation.modifiedMillis != modifiedMillis) {
+            observations.put(path, new Observation(modifiedMillis, now));
+            return false;
+        }
+        return now - observation.sinceNanos >= TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    private void removeIfExpired(Path lock) {
+        try {
+            if (expired(lock, Files.getLastModifiedTime(lock).toMillis())) {
+                Files.deleteIfExists(lock);
+                observations.remove(lock);
+            }
+        } catch (IOException e) {
+            // 已被删除
+        }
+    }
+
+    void write(FolderLease lease, Properties attributes) throws IOException {
+        Path path = lease.path();
+        if (!ownerId.equals(readOwner(path))) {
+            lease.markLost();
+            throw new IOException("租约已被其他进程回收: " + lease.getFolder());
+        }
+        Files.write(path, serialize(attributes), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void release(FolderLease lease) {
+        held.remove(lease);
+        Path path = lease.path();
+        try {
+            if (ownerId.equals(readOwner(path))) {
+                Files.deleteIfExists(path);
+            }
+        } catch (NoSuchFileException e) {
+            // 文件夹已被删除
+        } catch (IOException e) {
+            log.warn("删除租约文件 {} 失败，其他进程将在它过期后回收: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 为持有的每个租约续约。租约文件已经属于其他进程，或者连续两次心跳都在同一路径上找不到时，该租约失效
+     */
+    private void heartbeat() {
+        missing.keySet().retainAll(held);
+        for (FolderLease lease : held) {
+            Path path = lease.path();
+            try {
+                if (!ownerId.equals(readOwner(path))) {
+                    lost(lease, "已被其他进程回收");
+                    continue;
+                }
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                missing.remove(lease);
+            } catch (NoSuchFileException e) {
+                // 持有者重命名文件夹之后、调用 moveTo 之前路径会暂时失效，下一次心跳时重新解析路径再确认
+                if (lease.isReleased()) {
+                    continue;
+                }
+                if (path.equals(missing.put(lease, path))) {
+                    missing.remove(lease);
+                    lost(lease, "租约文件不存在");
+                }
+            } catch (IOException e) {
+                log.warn("续约 {} 失败，稍后重试: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private void lost(FolderLease lease, String reason) {
+        held.remove(lease);
+        lease.markLost();
+        log.error("!!! 失去了文件夹 {} 的租约: {}", lease.getFolder().getName(), reason);
+    }
+
+    private String readOwner(Path path) throws IOException {
+        return deserialize(Files.readAllBytes(path)).getProperty(OWNER_KEY);
+    }
+
+    private byte[] serialize(Properties attributes) throws IOException {
+        Properties content = new Properties();
+        content.putAll(attributes);
+        content.setProperty(OWNER_KEY, ownerId);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.store(out, null);
+        return out.toByteArray();
+    }
+
+    private static Properties deserialize(byte[] content) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(content));
+        return properties;
+    }
+}
@@ -0,0 +1,54 @@
+package com.urcl.utils.metrics;
+
+/**
+ * 固定容量的指标历史记录，写满后覆盖最旧的记录
+ */
+public class MetricHistory {
+
+    private final long[] timestamps;
+    private final long[] values;
+    private int next;
+    private int size;
+
+    public MetricHistory(int capacity) {
+        this.timestamps = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    public synchronized void record(long value) {
+        timestamps[next] = System.currentTimeMillis();
+        values[next] = value;
+        next = (next + 1) % values.length;
+        size = Math.min(size + 1, values.length);
+    }
+
+    /**
+     * @return 最近一次记录的值，没有记录时返回0
+     */
+    public synchronized long last() {
+        return size == 0 ? 0 : values[(next - 1 + values.length) % values.length];
+    }
+
+    /**
+     * @return 按时间先后排列的历史值
+     */
+    public synchronized long[] values() {
+        return copy(values);
+    }
+
+    /**
+     * @return 与 {@link #values()} 一一对应的记录时间（毫秒）
+     */
+    public synchronized long[] timestamps() {
+        return copy(timestamps);
+    }
+
+    private long[] copy(long[] source) {
+        long[] result = new long[size];
+        int start = (next - size + source.length) % source.length;
+        for (int i = 0; i < size; i++) {
+            result[i] = source[(start + i) % source.length];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package com.urcl.utils.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 进程内的简单指标注册表，包含计数器、仪表和历史记录三种指标。
+ * 默认实例会注册为JMX MBean（com.urcl.utils:type=Metrics），可以直接接入JMX监控面板。
+ */
+public class MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    // [可配置] 每个历史记录保留的最大条数
+    private static final int HISTORY_CAPACITY = 1024;
+
+    private static final MetricsRegistry DEFAULT = createDefault();
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MetricHistory> histories = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * 注册一个仪表，同名仪表会被替换
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public MetricHistory history(String name) {
+        return histories.computeIfAbsent(name, k -> new MetricHistory(HISTORY_CAPACITY));
+    }
+
+    /**
+     * @return 所有指标的当前值（历史记录取最近一次的值），按名称排序
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        histories.forEach((name, history) -> snapshot.put(name + ".last", history.last()));
+        return snapshot;
+    }
+
+    private static MetricsRegistry createDefault() {
+        MetricsRegistry registry = new MetricsRegistry();
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(registry.new JmxView(), new ObjectName("com.urcl.utils:type=Metrics"));
+        } catch (Exception e) {
+            log.debug("注册指标MBean失败: {}", e.getMessage());
+        }
+        return registry;
+    }
+
+    /**
+     * 以JMX属性的形式暴露所有指标，历史记录以 "名称.history" 的 long[] 属性暴露
+     */
+    private class JmxView implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (attribute.endsWith(".history") && histories.containsKey(attribute.substring(0, attribute.length() - 8))) {
+                return histories.get(attribute.substring(0, attribute.length() - 8)).values();
+            }
+            Long value = snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException ignored) {
+                    // 不存在的属性直接忽略
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("指标是只读的");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("不支持任何操作");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : snapshot().keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, "java.lang.Long", name, true, false, false));
+            }
+            for (String name : new TreeMap<>(histories).keySet()) {
+                attributes.add(new MBeanAttributeInfo(name + ".history", "[J", name, true, false, false));
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "CommonUtils 运行指标",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
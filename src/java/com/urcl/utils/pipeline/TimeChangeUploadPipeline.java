@@ -0,0 +1,206 @@
+package com.urcl.utils.pipeline;
+
+import com.urcl.utils.image.timechange.BatchModifyImageTime;
+import com.urcl.utils.image.timechange.ModificationOptions;
+import com.urcl.utils.image.timechange.ModifiedFileSink;
+import com.urcl.utils.uploader.BaiduPhotoUploader;
+import com.urcl.utils.uploader.UploadOptions;
+import com.urcl.utils.uploader.clients.UploadSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 修改时间和上传合并为一条流水线：每个子文件夹的文件修改完成后立即经过有界队列交给上传，
+ * 上传顺序直接使用修改时在内存中排好的顺序，不再按 lastModified 重新排序；
+ * 重写文件内容时顺带计算的MD5随文件一起交出，上传前不需要再读一遍文件。
+ * <p>
+ * 同时处理 folderParallelism 个子文件夹，每个文件夹一个修改线程（内部再按 fileParallelism 并行）和一个上传线程。
+ * options 中的 incremental 和 streaming 不起作用。使用完后应当 close 以写完上传的事件日志。
+ */
+@Slf4j
+public class TimeChangeUploadPipeline implements Closeable {
+
+    // [可配置] 每个文件夹中已经修改完成、等待上传的文件数上限
+    static final int QUEUE_CAPACITY = 32;
+
+    private final ModificationOptions options;
+    private final BaiduPhotoUploader uploader;
+
+    public TimeChangeUploadPipeline(ModificationOptions options, UploadOptions uploadOptions) {
+        this.options = options;
+        this.uploader = new BaiduPhotoUploader(uploadOptions);
+    }
+
+    @Override
+    public void close() throws IOException {
+        uploader.close();
+    }
+
+    public void run(String bdstoken, String cookie) {
+        File rootFolder = new File(options.getFolderPath());
+        if (!rootFolder.isDirectory()) {
+            log.error("错误: 提供的根路径不是一个文件夹! {}", options.getFolderPath());
+            return;
+        }
+        File[] subFolders = rootFolder.listFiles(f -> f.isDirectory() && !f.getName().startsWith("[Finished]"));
+        if (subFolders == null || subFolders.length == 0) {
+            log.info("在根目录中没有找到需要处理的子文件夹。");
+            return;
+        }
+
+        int folderParallelism = options.getFolderParallelism() == null ? 1 : Math.max(1, options.getFolderParallelism());
+        log.info("发现 {} 个待处理文件夹，同时处理 {} 个（修改完成的文件直接交给上传）", subFolders.length, folderParallelism);
+
+        ExecutorService uploadExecutor = Executors.newFixedThreadPool(folderParallelism);
+        ExecutorService modifyExecutor = Executors.newFixedThreadPool(folderParallelism);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(subFolders.length);
+            for (File folder : subFolders) {
+                futures.add(CompletableFuture.runAsync(() -> processFolder(rootFolder, folder, modifyExecutor, bdstoken, cookie), uploadExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            uploadExecutor.shutdown();
+            modifyExecutor.shutdown();
+        }
+        log.info("所有文件夹处理完毕！");
+        uploader.printSummaryReport();
+    }
+
+    /**
+     * 在 modifyExecutor 中修改文件，当前线程同时上传已经修改完成的文件
+     */
+    private void processFolder(File rootFolder, File folder, ExecutorService modifyExecutor, String bdstoken, String cookie) {
+        FolderHandoff handoff = new FolderHandoff(QUEUE_CAPACITY);
+        CompletableFuture<Void> modifying = CompletableFuture.runAsync(() -> {
+            try {
+                BatchModifyImageTime.modifyFolder(folder, options, handoff);
+            } finally {
+                handoff.finish();
+            }
+        }, modifyExecutor);
+        try {
+            int totalFiles = handoff.awaitTotal();
+            if (totalFiles < 0) {
+                log.error("!!! 文件夹 '{}' 没有修改时间，跳过上传。", folder.getName());
+                return;
+            }
+            uploader.uploadFolder(rootFolder, folder, bdstoken, cookie, totalFiles, handoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("!!! 处理文件夹 '{}' 的过程被中断。", folder.getName());
+        } finally {
+            // 上传提前结束时取走剩下的文件，修改线程才不会阻塞在已满的队列上
+            handoff.drain();
+            modifying.join();
+        }
+    }
+
+    /**
+     * 一个文件夹的修改线程和上传线程之间的交接：修改完成的文件按顺序放入有界队列，上传线程按顺序取出
+     */
+    static class FolderHandoff implements ModifiedFileSink, BaiduPhotoUploader.UploadFeed {
+
+        // 文件的结束标记
+        private static final UploadSource END_OF_FILES = UploadSource.ofBytes("", new byte[0]);
+
+        private final BlockingQueue<UploadSource> queue;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile int totalFiles = -1;
+        // 只由上传线程访问
+        private boolean endReached;
+
+        FolderHandoff(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void start(List<File> files) {
+            int uploadable = 0;
+            for (File file : files) {
+                if (BaiduPhotoUploader.isUploadable(file.getName())) {
+                    uploadable++;
+                }
+            }
+            totalFiles = uploadable;
+            started.countDown();
+        }
+
+        @Override
+        public void accept(File file, String md5) throws InterruptedException {
+            if (BaiduPhotoUploader.isUploadable(file.getName())) {
+                queue.put(UploadSource.ofFile(file, md5));
+            }
+        }
+
+        /**
+         * 修改线程结束时调用，之后 {@link #next()} 在取完队列后返回null
+         */
+        void finish() {
+            started.countDown();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(END_OF_FILES);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 等待修改线程完成排序
+         *
+         * @return 将要上传的文件数，修改线程没有排序就结束时（文件夹为空或文件名无法识别）返回-1
+         */
+        int awaitTotal() throws InterruptedException {
+            started.await();
+            return totalFiles;
+        }
+
+        @Override
+        public UploadSource next() throws InterruptedException {
+            if (endReached) {
+                return null;
+            }
+            UploadSource source = queue.take();
+            if (source == END_OF_FILES) {
+                endReached = true;
+                return null;
+            }
+            return source;
+        }
+
+        /**
+         * 丢弃剩下的文件直到结束标记
+         */
+        void drain() {
+            boolean interrupted = false;
+            while (!endReached) {
+                try {
+                    next();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,53 +1,107 @@
 package com.urcl.utils.uploader;
 
+import com.urcl.utils.events.Event;
+import com.urcl.utils.events.EventLog;
+import com.urcl.utils.lease.FolderLease;
+import com.urcl.utils.lease.FolderLeaseManager;
+import com.urcl.utils.metrics.MetricsRegistry;
 import com.urcl.utils.uploader.clients.BaiduPhotoApiClient;
+import com.urcl.utils.uploader.clients.RequestLane;
+import com.urcl.utils.uploader.clients.UploadSource;
+import com.urcl.utils.uploader.clients.UploadHostSelector;
+import com.urcl.utils.uploader.dedup.DedupPolicy;
+import com.urcl.utils.uploader.dedup.DuplicateDetector;
+import com.urcl.utils.uploader.limit.AdaptiveConcurrencyLimiter;
 import com.urcl.utils.uploader.model.AlbumInfo;
 import com.urcl.utils.uploader.model.CreateAlbumResponse;
-import com.urcl.utils.uploader.model.CreateResponse;
-import com.urcl.utils.uploader.model.PrecreateResponse;
+import com.urcl.utils.uploader.model.ListAlbumResponse;
+import com.urcl.utils.uploader.model.RemoteAlbumContents;
+import com.urcl.utils.uploader.model.UploadItem;
+import com.urcl.utils.uploader.model.UploadResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
-public class BaiduPhotoUploader {
+/**
+ * 把根目录下的每个子文件夹上传为一个一刻相册。
+ * 每个文件的上传结果记录到事件日志（如果配置了），控制台只输出相册级别的进度；使用完后应当 close 以写完事件日志
+ */
+public class BaiduPhotoUploader implements Closeable {
 
     // 使用SLF4J获取一个Logger实例
     private static final Logger log = LoggerFactory.getLogger(BaiduPhotoUploader.class);
 
-    // [可配置] 一次并行处理多少个文件夹（相册）
-    private static final int BATCH_SIZE = 10;
-
-    // [可配置] 设置创建每个相册之间的间隔时间（毫秒）
-    private static final int CREATE_ALBUM_INTERVAL_MS = 500;
-
     // [可配置] 设置每个文件上传的间隔时间（毫秒）
     public static final int UPLOAD_FILE_INTERVAL_MS = 10;
 
     // [可配置] 设置每次调用“添加到相册”接口之间的最小间隔时间（毫秒）
     public static final int BAND_ALBUM_INTERVAL_MS = 10000;
 
-    // [可配置] 批量添加文件到相册时，每批次包含的文件数量。这是为了防止URL过长（HTTP 414错误）
-    private static final int ADD_TO_ALBUM_CHUNK_SIZE = 200;
+    // 相册队列的结束标记
+    private static final AlbumInfo END_OF_ALBUMS = new AlbumInfo(null, null, null);
+
+    // 多进程协作时记录在租约中的相册，接手的进程直接复用
+    private static final String LEASE_ALBUM_ID = "album.id";
+    private static final String LEASE_ALBUM_TID = "album.tid";
 
-    // 所有的线程在执行“添加到相册”操作前都必须先获得这个锁。
-    private static final Object ALBUM_ADD_LOCK = new Object();
+    private final UploadOptions options;
+
+    // 根据各接口的往返延迟动态调整同时在途的文件上传数
+    private final AdaptiveConcurrencyLimiter uploadLimiter;
+
+    // 在多个PCS上传主机之间选择和切换
+    private final UploadHostSelector uploadHosts;
 
     // 用于存储每个上传任务结果的线程安全列表
     private final List<UploadTaskResult> taskResults = Collections.synchronizedList(new ArrayList<>());
 
+    // 上次创建相册的时间，由 createAlbum 在持有锁时读写
+    private long lastCreateAt = 0;
+
+    // 多进程协作时本进程持有租约的文件夹，上传结束后释放
+    private final Map<File, FolderLease> leases = new ConcurrentHashMap<>();
+
+    // 按文件记录的事件，未配置路径时不记录
+    private final EventLog events;
+
+    // 上传前检测相似的图片，策略为 OFF 时为null
+    private final DuplicateDetector dedup;
+
+    /**
+     * 按顺序提供要上传的文件，用于文件陆续就绪（例如刚修改完时间）的场景
+     */
+    public interface UploadFeed {
+        /**
+         * 阻塞直到下一个文件就绪
+         *
+         * @return 下一个文件，没有更多文件时返回null
+         */
+        UploadSource next() throws InterruptedException;
+    }
+
     /**
      * 内部类，用于封装单个文件夹（相册）上传任务的结果。
      */
@@ -80,6 +134,41 @@ public class BaiduPhotoUploader {
         }
     }
 
+    public BaiduPhotoUploader() {
+        this(UploadOptions.builder().build());
+    }
+
+    public BaiduPhotoUploader(UploadOptions options) {
+        this.options = options;
+        this.uploadLimiter = new AdaptiveConcurrencyLimiter("upload.concurrency",
+                options.getInitialConcurrency(), options.getMinConcurrency(), options.getMaxConcurrency());
+        this.uploadHosts = new UploadHostSelector(options.getUploadHosts());
+        try {
+            this.events = options.getEventLogPath() == null ? EventLog.disabled()
+                    : EventLog.open(Paths.get(options.getEventLogPath()), options.getEventBufferSize(),
+                    options.getEventSampleRate(), options.getEventDropPolicy());
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法打开事件日志: " + options.getEventLogPath(), e);
+        }
+        this.dedup = options.getDedupPolicy() == null || options.getDedupPolicy() == DedupPolicy.OFF ? null
+                : new DuplicateDetector(options.getDedupPolicy(), options.getDedupScope(), options.getDedupMaxDistance(), options.getDedupThreads());
+    }
+
+    /**
+     * 停止相似图片检测并发布其统计，写出事件日志中剩余的事件
+     */
+    @Override
+    public void close() throws IOException {
+        if (dedup != null) {
+            dedup.close();
+            dedup.getReport().publish(MetricsRegistry.getDefault());
+        }
+        events.close();
+        if (events.isEnabled()) {
+            log.info("事件日志: 写出 {} 条，丢弃 {} 条，采样跳过 {} 条。", events.getWritten(), events.getDropped(), events.getSampledOut());
+        }
+    }
+
     public void batchUpload(String root_folder_path, String bdstoken, String cookie) {
         File rootFolder = new File(root_folder_path);
         if (!rootFolder.isDirectory()) {
@@ -94,103 +183,362 @@ public class BaiduPhotoUploader {
         }
 
         List<File> subFolderList = Arrays.asList(subFolders);
-        log.info("发现 {} 个待处理文件夹，将以每批 {} 个进行处理...", subFolderList.size(), BATCH_SIZE);
+        int lookahead = Math.max(1, options.getAlbumLookahead());
+        int workerCount = Math.max(1, options.getMaxConcurrency());
+        log.info("发现 {} 个待处理文件夹，并发上传数从 {} 开始自适应调整（上限 {}），相册创建最多领先上传 {} 个...",
+                subFolderList.size(), uploadLimiter.getLimit(), workerCount, lookahead);
 
-        BaiduPhotoApiClient mainApiClient = new BaiduPhotoApiClient(cookie, bdstoken);
-        ExecutorService executor = Executors.newFixedThreadPool(BATCH_SIZE);
+        BaiduPhotoApiClient mainApiClient = createApiClient(cookie, bdstoken);
+        uploadHosts.startProbing(RequestLane.control(), options.getHostProbeIntervalSeconds());
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
 
-        for (int i = 0; i < subFolderList.size(); i += BATCH_SIZE) {
-            List<File> batch = subFolderList.subList(i, Math.min(i + BATCH_SIZE, subFolderList.size()));
-            int batchNum = (i / BATCH_SIZE + 1);
-            int totalBatches = (int) Math.ceil((double) subFolderList.size() / BATCH_SIZE);
+        // 相册创建（生产者）与文件上传（消费者）之间的交接队列，其容量即为领先量
+        BlockingQueue<AlbumInfo> createdAlbums = new ArrayBlockingQueue<>(lookahead);
 
-            log.info("======================= 开始处理批次 {} / {} =======================", batchNum, totalBatches);
+        List<CompletableFuture<Void>> uploadFutures = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            uploadFutures.add(CompletableFuture.runAsync(() -> uploadWorker(createdAlbums, cookie, bdstoken), executor));
+        }
 
-            log.info("======== [批次 {}] 步骤 1: 串行创建相册 ========", batchNum);
-            List<AlbumInfo> createdAlbums = new ArrayList<>();
-            for (File folder : batch) {
-                String albumTitle = rootFolder.getName() + "_" + folder.getName();
-                log.info(">>> 准备创建相册: {}", albumTitle);
-                try {
-                    CreateAlbumResponse albumResponse = mainApiClient.createAlbum(albumTitle);
-                    String newAlbumId = albumResponse.getAlbumId();
-                    String newTid = albumResponse.getInfo().getTid();
-
-                    if (newAlbumId == null || newAlbumId.isEmpty() || newTid == null || newTid.isEmpty()) {
-                        log.error("!!! 创建相册 '{}' 失败: 未能获取到有效的album_id或tid。", albumTitle);
-                        taskResults.add(new UploadTaskResult(albumTitle, 0, 0));
-                        continue;
-                    }
+        Map<String, ListAlbumResponse.Album> existingAlbums = options.isReconcileExistingAlbums()
+                ? findExistingAlbums(rootFolder, subFolderList, mainApiClient)
+                : Collections.emptyMap();
+
+        FolderLeaseManager leaseManager = options.isCoordinateWorkers()
+                ? new FolderLeaseManager(options.getLeaseTtlSeconds() * 1000) : null;
+        if (leaseManager != null) {
+            log.info("多进程协作: 本进程标识 {}，租约有效期 {} 秒。", leaseManager.getOwnerId(), options.getLeaseTtlSeconds());
+        }
+        try {
+            produceAlbums(rootFolder, subFolderList, mainApiClient, createdAlbums, existingAlbums, leaseManager);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("!!! 创建相册的过程被中断，不再创建新的相册。");
+        } finally {
+            // 每个上传线程收到一个结束标记后退出
+            for (int i = 0; i < workerCount; i++) {
+                putUninterruptibly(createdAlbums, END_OF_ALBUMS);
+            }
+        }
 
-                    log.info("  -> 成功创建相册! 相册ID: {}", newAlbumId);
-                    createdAlbums.add(new AlbumInfo(newAlbumId, newTid, folder));
-                    log.debug("  -> 等待 {} 秒...", (double) CREATE_ALBUM_INTERVAL_MS / 1000);
-                    Thread.sleep(CREATE_ALBUM_INTERVAL_MS);
+        CompletableFuture.allOf(uploadFutures.toArray(new CompletableFuture[0])).join();
+        if (leaseManager != null) {
+            leaseManager.close();
+        }
+        executor.shutdown();
+        uploadHosts.stopProbing();
+        log.info("所有相册处理完毕！");
+        printSummaryReport();
+    }
 
-                } catch (Exception e) {
-                    log.error("!!! 创建相册 '{}' 时发生严重错误:", albumTitle, e);
-                    taskResults.add(new UploadTaskResult(albumTitle, 0, 0));
+    /**
+     * 按限速串行创建相册，每创建成功一个就立即交给上传线程。
+     * 队列已满（领先量用尽）时阻塞，等待上传线程取走相册。
+     * leaseManager 不为null时只处理本进程认领到的文件夹，其他进程正在处理的文件夹等它们完成或者租约过期
+     */
+    private void produceAlbums(File rootFolder, List<File> folders, BaiduPhotoApiClient apiClient,
+                               BlockingQueue<AlbumInfo> createdAlbums,
+                               Map<String, ListAlbumResponse.Album> existingAlbums,
+                               FolderLeaseManager leaseManager) throws InterruptedException {
+        if (leaseManager == null) {
+            int albumNum = 0;
+            for (File folder : folders) {
+                AlbumInfo albumInfo = prepareAlbum(rootFolder, folder, ++albumNum, folders.size(), apiClient, existingAlbums, null);
+                if (albumInfo != null) {
+                    createdAlbums.put(albumInfo);
                 }
             }
+            return;
+        }
+
+        int[] albumNum = {0};
+        leaseManager.claimEach(folders, lease -> {
+            AlbumInfo albumInfo = prepareAlbum(rootFolder, lease.getFolder(), ++albumNum[0], folders.size(), apiClient, existingAlbums, lease);
+            if (albumInfo == null) {
+                lease.release();
+                return;
+            }
+            leases.put(albumInfo.getFolder(), lease);
+            createdAlbums.put(albumInfo);
+        });
+    }
+
+    /**
+     * 复用或创建文件夹对应的相册。持有租约时把新建的相册记录到租约中，
+     * 接手其他进程未完成的文件夹时直接复用租约中记录的相册，并跳过其中已经上传的文件
+     *
+     * @return 创建失败时返回null
+     */
+    private AlbumInfo prepareAlbum(File rootFolder, File folder, int albumNum, int albumCount, BaiduPhotoApiClient apiClient,
+                                   Map<String, ListAlbumResponse.Album> existingAlbums, FolderLease lease) throws InterruptedException {
+        String albumTitle = rootFolder.getName() + "_" + folder.getName();
+
+        if (lease != null && lease.get(LEASE_ALBUM_ID) != null) {
+            log.info(">>> [{}/{}] 接手其他进程未完成的相册: {} (相册ID: {})", albumNum, albumCount, albumTitle, lease.get(LEASE_ALBUM_ID));
+            return new AlbumInfo(lease.get(LEASE_ALBUM_ID), lease.get(LEASE_ALBUM_TID), folder, true);
+        }
 
-            if (createdAlbums.isEmpty()) {
-                log.warn("本批次没有成功创建任何相册，跳至下一批。");
-                continue;
+        ListAlbumResponse.Album existing = existingAlbums.get(albumTitle);
+        if (existing != null) {
+            log.info(">>> [{}/{}] 复用已存在的相册: {} (相册ID: {})", albumNum, albumCount, albumTitle, existing.getAlbumId());
+            return new AlbumInfo(existing.getAlbumId(), existing.getTid(), folder, true);
+        }
+
+        log.info(">>> [{}/{}] 准备创建相册: {}", albumNum, albumCount, albumTitle);
+        AlbumInfo created = createAlbum(apiClient, albumTitle, folder);
+        if (created != null && lease != null) {
+            try {
+                lease.put(LEASE_ALBUM_TID, created.getTid());
+                lease.put(LEASE_ALBUM_ID, created.getAlbumId());
+            } catch (IOException e) {
+                log.error("!!! 记录相册 '{}' 到租约失败，不再上传这个文件夹: {}", albumTitle, e.getMessage());
+                return null;
             }
+        }
+        return created;
+    }
 
-            log.info("======== [批次 {}] 步骤 2: 并行上传文件到已创建的相册中 ========", batchNum);
-            List<CompletableFuture<Void>> uploadFutures = createdAlbums.stream()
-                    .map(albumInfo -> CompletableFuture.runAsync(() -> {
-                        processFilesForAlbum(new BaiduPhotoApiClient(cookie, bdstoken), albumInfo);
-                    }, executor))
-                    .collect(Collectors.toList());
+    /**
+     * 按限速创建相册，所有调用（批量上传和单个文件夹上传）共享同一个限速。
+     *
+     * @return 创建失败时记录失败结果并返回null
+     */
+    private synchronized AlbumInfo createAlbum(BaiduPhotoApiClient apiClient, String albumTitle, File folder) throws InterruptedException {
+        long waitMs = lastCreateAt + options.getCreateAlbumIntervalMs() - System.currentTimeMillis();
+        if (waitMs > 0) {
+            log.debug("  -> 等待 {} 秒...", (double) waitMs / 1000);
+            Thread.sleep(waitMs);
+        }
+        lastCreateAt = System.currentTimeMillis();
+
+        try {
+            CreateAlbumResponse albumResponse = apiClient.createAlbum(albumTitle);
+            String newAlbumId = albumResponse.getAlbumId();
+            String newTid = albumResponse.getInfo() == null ? null : albumResponse.getInfo().getTid();
+
+            if (newAlbumId == null || newAlbumId.isEmpty() || newTid == null || newTid.isEmpty()) {
+                log.error("!!! 创建相册 '{}' 失败: 未能获取到有效的album_id或tid。", albumTitle);
+                taskResults.add(new UploadTaskResult(albumTitle, 0, 0));
+                return null;
+            }
 
-            CompletableFuture.allOf(uploadFutures.toArray(new CompletableFuture[0])).join();
-            log.info("======== [批次 {}] 文件上传任务已全部完成 ========", batchNum);
+            log.info("  -> 成功创建相册! 相册ID: {}", newAlbumId);
+            return new AlbumInfo(newAlbumId, newTid, folder);
+        } catch (IOException | RuntimeException e) {
+            log.error("!!! 创建相册 '{}' 时发生严重错误:", albumTitle, e);
+            taskResults.add(new UploadTaskResult(albumTitle, 0, 0));
+            return null;
         }
+    }
 
-        executor.shutdown();
-        log.info("所有批次处理完毕！");
-        printSummaryReport();
+    /**
+     * 上传单个文件夹：对账模式下复用同名相册，否则创建相册，然后上传图片、添加到相册并把文件夹重命名为[Finished]。
+     * 供监听模式等文件夹逐个到达的场景使用，可以被多个线程同时调用。不会启动上传主机的探测
+     */
+    public void uploadFolder(File rootFolder, File folder, String bdstoken, String cookie) throws InterruptedException {
+        uploadFolder(rootFolder, folder, bdstoken, cookie, 0, null);
+    }
+
+    /**
+     * 与 {@link #uploadFolder(File, File, String, String)} 相同，但要上传的文件按顺序从 feed 中取出，
+     * 不再列出文件夹并按修改时间排序。feed 返回null后把文件夹重命名为[Finished]
+     *
+     * @param totalFiles feed 将会提供的文件数，只用于日志和统计
+     * @param feed       为null时上传文件夹中的所有图片
+     */
+    public void uploadFolder(File rootFolder, File folder, String bdstoken, String cookie, int totalFiles,
+                             UploadFeed feed) throws InterruptedException {
+        if (!folder.isDirectory() || folder.getName().startsWith("[Finished]")) {
+            return;
+        }
+        String albumTitle = rootFolder.getName() + "_" + folder.getName();
+        BaiduPhotoApiClient apiClient = createApiClient(cookie, bdstoken);
+
+        ListAlbumResponse.Album existing = options.isReconcileExistingAlbums()
+                ? findExistingAlbums(rootFolder, Collections.singletonList(folder), apiClient).get(albumTitle)
+                : null;
+        AlbumInfo albumInfo;
+        if (existing != null) {
+            log.info(">>> 复用已存在的相册: {} (相册ID: {})", albumTitle, existing.getAlbumId());
+            albumInfo = new AlbumInfo(existing.getAlbumId(), existing.getTid(), folder, true);
+        } else {
+            log.info(">>> 准备创建相册: {}", albumTitle);
+            albumInfo = createAlbum(apiClient, albumTitle, folder);
+            if (albumInfo == null) {
+                return;
+            }
+        }
+
+        apiClient.setLatencyListener(uploadLimiter);
+        if (feed == null) {
+            processFilesForAlbum(apiClient, albumInfo);
+        } else {
+            uploadToAlbum(apiClient, albumInfo, totalFiles, feed);
+        }
+    }
+
+    /**
+     * 对账模式：流式列出所有相册，只保留标题与待处理文件夹对应的那些
+     */
+    private Map<String, ListAlbumResponse.Album> findExistingAlbums(File rootFolder, List<File> folders,
+                                                                    BaiduPhotoApiClient apiClient) {
+        Set<String> wantedTitles = new HashSet<>();
+        for (File folder : folders) {
+            wantedTitles.add(rootFolder.getName() + "_" + folder.getName());
+        }
+        Map<String, ListAlbumResponse.Album> existing = new HashMap<>();
+        try {
+            apiClient.listAlbums(album -> {
+                if (album.getTitle() != null && wantedTitles.contains(album.getTitle()) && album.getAlbumId() != null) {
+                    existing.putIfAbsent(album.getTitle(), album);
+                }
+            });
+            log.info("对账模式: {} 个待处理文件夹中有 {} 个已存在同名相册。", folders.size(), existing.size());
+        } catch (IOException e) {
+            log.error("!!! 获取相册列表失败，将为所有文件夹创建新相册: {}", e.getMessage());
+        }
+        return existing;
+    }
+
+    /**
+     * 对账模式：列出已存在相册中的文件，失败时返回null（即不跳过任何文件）
+     */
+    private RemoteAlbumContents listRemoteContents(BaiduPhotoApiClient apiClient, AlbumInfo albumInfo, String threadInfo) {
+        RemoteAlbumContents contents = new RemoteAlbumContents();
+        try {
+            apiClient.listAlbumFiles(albumInfo.getAlbumId(), contents::add);
+            log.info("[线程 {}] 相册中已有 {} 个文件，将跳过这些文件。", threadInfo, contents.size());
+            return contents;
+        } catch (IOException e) {
+            log.error("!!! [线程 {}] 获取相册文件列表失败，将上传所有文件: {}", threadInfo, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 上传线程：不断取出已创建好的相册并上传，直到收到结束标记。
+     */
+    private void uploadWorker(BlockingQueue<AlbumInfo> createdAlbums, String cookie, String bdstoken) {
+        BaiduPhotoApiClient apiClient = createApiClient(cookie, bdstoken);
+        apiClient.setLatencyListener(uploadLimiter);
+        while (true) {
+            AlbumInfo albumInfo;
+            try {
+                albumInfo = createdAlbums.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (albumInfo == END_OF_ALBUMS) {
+                return;
+            }
+            try {
+                processFilesForAlbum(apiClient, albumInfo);
+            } catch (RuntimeException e) {
+                log.error("!!! 处理相册 '{}' 时发生未预期的错误:", albumInfo.getFolder().getName(), e);
+            }
+        }
+    }
+
+    private BaiduPhotoApiClient createApiClient(String cookie, String bdstoken) {
+        return new BaiduPhotoApiClient(cookie, bdstoken, RequestLane.control(), RequestLane.data(), uploadHosts);
+    }
+
+    private static void putUninterruptibly(BlockingQueue<AlbumInfo> queue, AlbumInfo albumInfo) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(albumInfo);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void processFilesForAlbum(BaiduPhotoApiClient apiClient, AlbumInfo albumInfo) {
         String albumTitle = albumInfo.getFolder().getName();
         Thread.currentThread().setName(albumTitle);
         String threadInfo = Thread.currentThread().getId() + "_" + Thread.currentThread().getName();
-        log.info("====== [线程 {}] 开始上传照片到相册: {} ======", threadInfo, albumTitle);
 
-        int successCount = 0;
-        List<Long> uploadedFsids = new ArrayList<>();
-
-        File[] filesToUpload = albumInfo.getFolder().listFiles((dir, name) ->
-                name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".jpeg") || name.toLowerCase().endsWith(".png"));
+        File[] filesToUpload = albumInfo.getFolder().listFiles((dir, name) -> isUploadable(name));
 
         if (filesToUpload == null || filesToUpload.length == 0) {
             log.warn("[线程 {}] 文件夹 '{}' 中没有图片，跳过上传。", threadInfo, albumTitle);
-            renameFolderToFinished(albumInfo.getFolder());
+            try {
+                finishFolder(albumInfo.getFolder());
+            } finally {
+                releaseLease(albumInfo.getFolder());
+            }
             taskResults.add(new UploadTaskResult(albumTitle, 0, 0));
             return;
         }
 
         List<File> fileList = new ArrayList<>(Arrays.asList(filesToUpload));
         fileList.sort(Comparator.comparingLong(File::lastModified));
+        log.info("[线程 {}] 发现 {} 张图片，已按日期排序。", threadInfo, fileList.size());
+
+        try {
+            if (dedup != null) {
+                fileList = selectDistinct(albumTitle, fileList, threadInfo);
+            }
+            Iterator<File> files = fileList.iterator();
+            uploadToAlbum(apiClient, albumInfo, fileList.size(), () -> files.hasNext() ? UploadSource.ofFile(files.next()) : null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 逐个上传 feed 中的文件，全部完成后分批添加到相册并重命名文件夹
+     */
+    private void uploadToAlbum(BaiduPhotoApiClient apiClient, AlbumInfo albumInfo, int totalFiles,
+                               UploadFeed feed) throws InterruptedException {
+        String albumTitle = albumInfo.getFolder().getName();
+        Thread.currentThread().setName(albumTitle);
+        String threadInfo = Thread.currentThread().getId() + "_" + Thread.currentThread().getName();
+        log.info("====== [线程 {}] 开始上传照片到相册: {} ======", threadInfo, albumTitle);
+
+        int successCount = 0;
+        List<Long> uploadedFsids = new ArrayList<>();
 
-        int totalFiles = fileList.size();
-        log.info("[线程 {}] 发现 {} 张图片，已按日期排序。", threadInfo, totalFiles);
+        RemoteAlbumContents remoteContents = albumInfo.isExisting() ? listRemoteContents(apiClient, albumInfo, threadInfo) : null;
+        int skippedCount = 0;
 
         try {
-            for (int i = 0; i < totalFiles; i++) {
-                File file = fileList.get(i);
-                int currentFileNum = i + 1;
+            int currentFileNum = 0;
+            for (UploadSource source = feed.next(); source != null; source = feed.next()) {
+                currentFileNum++;
+                checkLease(albumInfo.getFolder());
+
+                UploadItem item = UploadItem.toAlbum(source, albumInfo.getAlbumId(), albumInfo.getTid());
+                if (remoteContents != null && isAlreadyInAlbum(remoteContents, item)) {
+                    log.debug(">>> [线程 {}] [{}/{}] 相册中已有文件 {}，跳过。", threadInfo, currentFileNum, totalFiles, source.getName());
+                    events.record(Event.of("upload", "album", albumTitle, "file", source.getName(), "status", "exists"));
+                    skippedCount++;
+                    successCount++;
+                    continue;
+                }
 
-                log.info(">>> [线程 {}] [{}/{}] 正在上传文件: {}", threadInfo, currentFileNum, totalFiles, file.getName());
+                log.debug(">>> [线程 {}] [{}/{}] 正在上传文件: {}", threadInfo, currentFileNum, totalFiles, source.getName());
+                uploadLimiter.acquire();
                 try {
-                    long fsid = uploadSingleFileAndGetFsid(apiClient, file, albumInfo.getAlbumId());
-                    uploadedFsids.add(fsid);
-                    successCount++;
-                } catch (Exception e) {
-                    log.error("!!! [线程 {}] [{}/{}] 上传文件 {} 失败: {}", threadInfo, currentFileNum, totalFiles, file.getName(), e.getMessage());
+                    UploadResult result = FileUploader.upload(apiClient, item, albumInfo.getAlbumId());
+                    recordUpload(albumTitle, source, result);
+                    if (result.isSuccess()) {
+                        // 秒传得到的文件可能已经在相册中，不需要重复添加
+                        if (remoteContents == null || !remoteContents.containsFsid(result.getFsid())) {
+                            uploadedFsids.add(result.getFsid());
+                        }
+                        successCount++;
+                    } else {
+                        log.error("!!! [线程 {}] [{}/{}] 上传文件 {} 失败: {}", threadInfo, currentFileNum, totalFiles, source.getName(), result.getError().getMessage());
+                    }
+                } finally {
+                    uploadLimiter.release();
                 }
                 Thread.sleep(UPLOAD_FILE_INTERVAL_MS);
             }
@@ -198,90 +546,130 @@ public class BaiduPhotoUploader {
             if (!uploadedFsids.isEmpty()) {
                 log.info(">>> [线程 {}] 所有文件上传完成，准备将 {} 个文件分批添加到相册...", threadInfo, uploadedFsids.size());
 
-                synchronized (ALBUM_ADD_LOCK) {
-                    log.debug(">>> [线程 {}] 获取到同步锁，准备分批添加到相册...", threadInfo);
-
-                    int totalFsids = uploadedFsids.size();
-                    int totalChunks = (int) Math.ceil((double) totalFsids / ADD_TO_ALBUM_CHUNK_SIZE);
-
-                    for (int j = 0; j < totalFsids; j += ADD_TO_ALBUM_CHUNK_SIZE) {
-                        int end = Math.min(j + ADD_TO_ALBUM_CHUNK_SIZE, totalFsids);
-                        List<Long> chunk = uploadedFsids.subList(j, end);
-                        int currentChunkNum = (j / ADD_TO_ALBUM_CHUNK_SIZE) + 1;
-
-                        try {
-                            log.info("  -> [线程 {}] 正在添加批次 {}/{} ({}个文件) 到相册...", threadInfo, currentChunkNum, totalChunks, chunk.size());
-                            apiClient.addFilesToAlbum(albumInfo.getAlbumId(), chunk, albumInfo.getTid());
-                            log.info("     [线程 {}] 批次 {} 添加成功!", threadInfo, currentChunkNum);
-                        } catch (Exception e) {
-                            log.error("!!! [线程 {}] 添加批次 {} 到相册 '{}' 失败:", threadInfo, currentChunkNum, albumTitle, e);
-                        }
-
-                        log.debug("  -> [线程 {}] 等待 {} 秒，再提交下一批或释放锁...", threadInfo, (double) BAND_ALBUM_INTERVAL_MS / 1000);
-                        Thread.sleep(BAND_ALBUM_INTERVAL_MS);
-                        // ==========================================================
-                    }
-
-                    log.info("  -> [线程 {}] 所有批次添加完毕! 释放同步锁。", threadInfo);
-                }
+                FileUploader.addToAlbum(apiClient, albumInfo.getAlbumId(), albumInfo.getTid(), albumTitle, uploadedFsids);
             }
 
-            renameFolderToFinished(albumInfo.getFolder());
+            finishFolder(albumInfo.getFolder());
 
+        } catch (InterruptedException e) {
+            log.error("!!! [线程 {}] 处理相册 '{}' 的文件时被中断。", threadInfo, albumTitle);
+            throw e;
         } catch (Exception e) {
             log.error("!!! [线程 {}] 处理相册 '{}' 的文件时失败:", threadInfo, albumTitle, e);
         } finally {
+            releaseLease(albumInfo.getFolder());
             taskResults.add(new UploadTaskResult(albumTitle, totalFiles, successCount));
-            log.info("====== [线程 {}] 相册 '{}' 处理完毕！成功上传: {} / {} ======", threadInfo, albumTitle, successCount, totalFiles);
+            events.record(Event.of("album", "album", albumTitle, "albumId", albumInfo.getAlbumId(), "files", totalFiles,
+                    "succeeded", successCount, "existing", skippedCount));
+            log.info("====== [线程 {}] 相册 '{}' 处理完毕！成功上传: {} / {} (其中 {} 个已存在于相册中) ======",
+                    threadInfo, albumTitle, successCount, totalFiles, skippedCount);
         }
     }
 
-    private long uploadSingleFileAndGetFsid(BaiduPhotoApiClient apiClient, File file, String albumId) throws IOException {
-        String remotePath = "/" + file.getName();
-        long fsid;
-        String threadInfo = Thread.currentThread().getId() + "_" + Thread.currentThread().getName();
+    /**
+     * 检测相似的图片并记录到事件日志
+     *
+     * @return 按策略需要上传的文件
+     */
+    private List<File> selectDistinct(String albumTitle, List<File> files, String threadInfo) throws InterruptedException {
+        DuplicateDetector.Selection selection = dedup.select(files);
+        if (selection.getDuplicates().isEmpty()) {
+            return files;
+        }
+        long duplicateBytes = 0;
+        for (DuplicateDetector.Duplicate duplicate : selection.getDuplicates()) {
+            duplicateBytes += duplicate.getFile().length();
+            events.record(Event.of("duplicate", "album", albumTitle, "file", duplicate.getFile().getName(),
+                    "representative", duplicate.getRepresentative().getName(), "distance", duplicate.getDistance(),
+                    "bytes", duplicate.getFile().length(), "skipped", dedup.getPolicy().skipsDuplicates()));
+        }
+        log.info("[线程 {}] {} 张图片与其他图片相似（共 {} MB）{}", threadInfo, selection.getDuplicates().size(),
+                String.format("%.1f", duplicateBytes / 1048576.0), dedup.getPolicy().skipsDuplicates() ? "，跳过上传。" : "。");
+        return selection.getUpload();
+    }
+
+    private void recordUpload(String albumTitle, UploadSource source, UploadResult result) {
+        if (!events.isEnabled()) {
+            return;
+        }
+        if (result.isSuccess()) {
+            events.record(Event.of("upload", "album", albumTitle, "file", source.getName(),
+                    "status", result.isSecondPass() ? "second-pass" : "uploaded", "bytes", source.size(), "fsid", result.getFsid(),
+                    "precreateUs", result.getPrecreateNanos() / 1000, "uploadUs", result.getUploadNanos() / 1000,
+                    "createUs", result.getCreateNanos() / 1000));
+        } else {
+            events.record(Event.failure("upload", "album", albumTitle, "file", source.getName(), "status", "failed",
+                    "bytes", source.size(), "totalUs", result.getTotalNanos() / 1000, "error", String.valueOf(result.getError().getMessage())));
+        }
+    }
+
+    /**
+     * 上传器接受的图片格式
+     */
+    public static boolean isUploadable(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        return lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg") || lowerName.endsWith(".png");
+    }
 
-        log.debug("  [{}] [1/3] 正在预创建...", threadInfo);
-        PrecreateResponse precreateResponse = apiClient.precreate(file, remotePath, albumId);
+    private static boolean isAlreadyInAlbum(RemoteAlbumContents remoteContents, UploadItem item) {
+        try {
+            return remoteContents.containsMd5(item.getSource().md5());
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-        if (precreateResponse.isSecondPass() || (precreateResponse.getErrno() == 0 && precreateResponse.getFsId() != null)) {
-            fsid = precreateResponse.getFsId();
-            log.info("  -> [{}] 文件已存在 (秒传成功)! FSID: {}", threadInfo, fsid);
-        } else if (precreateResponse.isUploadNeeded()) {
-            String uploadId = precreateResponse.getUploadid();
-            log.debug("  -> [{}] 获取到 UploadID: {}", threadInfo, uploadId);
+    /**
+     * 多进程协作时，本进程已经失去文件夹的租约（其他进程已经接手）则停止处理
+     */
+    private void checkLease(File folder) {
+        FolderLease lease = leases.get(folder);
+        if (lease != null && !lease.isValid()) {
+            throw new IllegalStateException("已失去文件夹的租约，由其他进程继续处理");
+        }
+    }
 
-            log.debug("  -> [{}] [2/3] 正在上传文件数据...", threadInfo);
-            apiClient.uploadPart(file, remotePath, uploadId);
-            log.debug("  -> [{}] 文件数据上传完成。", threadInfo);
+    /**
+     * 把文件夹重命名为[Finished]，持有的租约文件随之移动，之后由 releaseLease 删除
+     */
+    private void finishFolder(File folder) {
+        checkLease(folder);
+        File finished = renameFolderToFinished(folder);
+        FolderLease lease = leases.get(folder);
+        if (lease != null && finished != null) {
+            lease.moveTo(finished);
+        }
+    }
 
-            log.debug("  -> [{}] [3/3] 正在创建文件记录...", threadInfo);
-            CreateResponse createResponse = apiClient.createFile(file, remotePath, uploadId, albumId);
-            if (createResponse.getErrno() != 0 || createResponse.getData() == null) {
-                throw new IOException("创建文件记录失败，错误码: " + createResponse.getErrno());
-            }
-            fsid = createResponse.getData().getFsid();
-            log.info("  -> [{}] 文件记录创建成功! FSID: {}", threadInfo, fsid);
-        } else {
-            throw new IOException("预创建失败，错误码: " + precreateResponse.getErrno());
+    private void releaseLease(File folder) {
+        FolderLease lease = leases.remove(folder);
+        if (lease != null) {
+            lease.release();
         }
-        return fsid;
     }
 
-    private void renameFolderToFinished(File folder) {
+    /**
+     * @return 重命名后的文件夹，失败时返回null
+     */
+    private File renameFolderToFinished(File folder) {
         String threadInfo = Thread.currentThread().getId() + "_" + Thread.currentThread().getName();
         try {
-            if (folder.getName().startsWith("[Finished]")) return;
+            if (folder.getName().startsWith("[Finished]")) return folder;
             java.nio.file.Path sourcePath = folder.toPath();
             java.nio.file.Path destPath = new File(folder.getParent(), "[Finished] " + folder.getName()).toPath();
             Files.move(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
             log.debug("  -> [线程 {}] 已成功将文件夹重命名为: {}", threadInfo, destPath.getFileName());
+            return destPath.toFile();
         } catch (IOException e) {
             log.error("!!! [线程 {}] 重命名文件夹 {} 失败: {}", threadInfo, folder.getName(), e.getMessage());
+            return null;
         }
     }
 
-    private void printSummaryReport() {
+    /**
+     * 输出所有已处理相册的汇总
+     */
+    public void printSummaryReport() {
         log.info("==========================================================================");
         log.info("=======================   U P L O A D   S U M M A R Y   =======================");
         log.info("==========================================================================");
@@ -302,6 +690,15 @@ public class BaiduPhotoUploader {
         log.info("  - 部分成功: {}", totalPartial);
         log.info("  - 失败: {}", totalFailed);
         log.info("  - 跳过 (空文件夹): {}", totalSkipped);
+        log.info("  - 最终并发上限: {} (历史: {})", uploadLimiter.getLimit(),
+                Arrays.toString(MetricsRegistry.getDefault().history("upload.concurrency.limit").values()));
+        for (UploadHostSelector.HostStats host : uploadHosts.getHosts()) {
+            log.info("  - 上传主机 {}: 请求 {} 次, 失败 {} 次, 延迟 {} ms, 吞吐 {} KB/s", host.getBaseUrl(), host.getRequests(),
+                    host.getFailures(), (long) host.getLatencyMs(), (long) (host.getThroughputBytesPerMs() * 1000 / 1024));
+        }
+        if (dedup != null) {
+            dedup.getReport().logSummary();
+        }
 
         log.info("[详细情况]");
         for (UploadTaskResult result : taskResults) {
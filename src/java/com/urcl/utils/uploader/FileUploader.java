@@ -0,0 +1,114 @@
+package com.urcl.utils.uploader;
+
+import com.urcl.utils.uploader.clients.BaiduPhotoApiClient;
+import com.urcl.utils.uploader.clients.UploadSource;
+import com.urcl.utils.uploader.model.CreateResponse;
+import com.urcl.utils.uploader.model.PrecreateResponse;
+import com.urcl.utils.uploader.model.UploadItem;
+import com.urcl.utils.uploader.model.UploadResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 上传单个文件（预创建、上传文件数据、创建文件记录）以及分批添加到相册，
+ * 供按文件夹批量上传和响应式上传两种入口共用。
+ */
+class FileUploader {
+
+    private static final Logger log = LoggerFactory.getLogger(FileUploader.class);
+
+    // [可配置] 批量添加文件到相册时，每批次包含的文件数量。这是为了防止URL过长（HTTP 414错误）
+    static final int ADD_TO_ALBUM_CHUNK_SIZE = 200;
+
+    // 所有的线程在执行“添加到相册”操作前都必须先获得这个锁。
+    private static final Object ALBUM_ADD_LOCK = new Object();
+
+    private FileUploader() {
+    }
+
+    /**
+     * 上传单个文件，失败时不抛出异常，而是返回带有错误信息的结果
+     */
+    static UploadResult upload(BaiduPhotoApiClient apiClient, UploadItem item, String albumId) {
+        UploadSource source = item.getSource();
+        String remotePath = "/" + source.getName();
+        // 这里只有DEBUG日志，关闭时不为每个文件拼接线程信息
+        String threadInfo = log.isDebugEnabled() ? Thread.currentThread().getId() + "_" + Thread.currentThread().getName() : null;
+        long precreateNanos = 0;
+        long uploadNanos = 0;
+        long createNanos = 0;
+
+        try {
+            log.debug("  [{}] [1/3] 正在预创建...", threadInfo);
+            long start = System.nanoTime();
+            PrecreateResponse precreateResponse = apiClient.precreate(source, remotePath, albumId);
+            precreateNanos = System.nanoTime() - start;
+
+            if (precreateResponse.isSecondPass() || (precreateResponse.getErrno() == 0 && precreateResponse.getFsId() != null)) {
+                long fsid = precreateResponse.getFsId();
+                log.debug("  -> [{}] 文件已存在 (秒传成功)! FSID: {}", threadInfo, fsid);
+                return new UploadResult(item, albumId, fsid, true, precreateNanos, 0, 0, null);
+            } else if (precreateResponse.isUploadNeeded()) {
+                String uploadId = precreateResponse.getUploadid();
+                log.debug("  -> [{}] 获取到 UploadID: {}", threadInfo, uploadId);
+
+                log.debug("  -> [{}] [2/3] 正在上传文件数据...", threadInfo);
+                start = System.nanoTime();
+                apiClient.uploadPart(source, remotePath, uploadId);
+                uploadNanos = System.nanoTime() - start;
+                log.debug("  -> [{}] 文件数据上传完成。", threadInfo);
+
+                log.debug("  -> [{}] [3/3] 正在创建文件记录...", threadInfo);
+                start = System.nanoTime();
+                CreateResponse createResponse = apiClient.createFile(source, remotePath, uploadId, albumId);
+                createNanos = System.nanoTime() - start;
+                if (createResponse.getErrno() != 0 || createResponse.getData() == null) {
+                    throw new IOException("创建文件记录失败，错误码: " + createResponse.getErrno());
+                }
+                long fsid = createResponse.getData().getFsid();
+                log.debug("  -> [{}] 文件记录创建成功! FSID: {}", threadInfo, fsid);
+                return new UploadResult(item, albumId, fsid, false, precreateNanos, uploadNanos, createNanos, null);
+            } else {
+                throw new IOException("预创建失败，错误码: " + precreateResponse.getErrno());
+            }
+        } catch (IOException | RuntimeException e) {
+            return new UploadResult(item, albumId, 0, false, precreateNanos, uploadNanos, createNanos, e);
+        }
+    }
+
+    /**
+     * 将文件分批添加到相册。所有线程串行执行，每批之间间隔 {@link BaiduPhotoUploader#BAND_ALBUM_INTERVAL_MS}。
+     */
+    static void addToAlbum(BaiduPhotoApiClient apiClient, String albumId, String tid, String albumTitle,
+                           List<Long> fsids) throws InterruptedException {
+        String threadInfo = Thread.currentThread().getId() + "_" + Thread.currentThread().getName();
+        synchronized (ALBUM_ADD_LOCK) {
+            log.debug(">>> [线程 {}] 获取到同步锁，准备分批添加到相册...", threadInfo);
+
+            int totalFsids = fsids.size();
+            int totalChunks = (int) Math.ceil((double) totalFsids / ADD_TO_ALBUM_CHUNK_SIZE);
+
+            for (int j = 0; j < totalFsids; j += ADD_TO_ALBUM_CHUNK_SIZE) {
+                int end = Math.min(j + ADD_TO_ALBUM_CHUNK_SIZE, totalFsids);
+                List<Long> chunk = fsids.subList(j, end);
+                int currentChunkNum = (j / ADD_TO_ALBUM_CHUNK_SIZE) + 1;
+
+                try {
+                    log.info("  -> [线程 {}] 正在添加批次 {}/{} ({}个文件) 到相册...", threadInfo, currentChunkNum, totalChunks, chunk.size());
+                    apiClient.addFilesToAlbum(albumId, chunk, tid);
+                    log.info("     [线程 {}] 批次 {} 添加成功!", threadInfo, currentChunkNum);
+                } catch (Exception e) {
+                    log.error("!!! [线程 {}] 添加批次 {} 到相册 '{}' 失败:", threadInfo, currentChunkNum, albumTitle, e);
+                }
+
+                log.debug("  -> [线程 {}] 等待 {} 秒，再提交下一批或释放锁...", threadInfo, (double) BaiduPhotoUploader.BAND_ALBUM_INTERVAL_MS / 1000);
+                Thread.sleep(BaiduPhotoUploader.BAND_ALBUM_INTERVAL_MS);
+            }
+
+            log.info("  -> [线程 {}] 所有批次添加完毕! 释放同步锁。", threadInfo);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.urcl.utils.uploader;
+
+import com.urcl.utils.events.EventLog;
+import com.urcl.utils.uploader.clients.UploadHostSelector;
+import com.urcl.utils.uploader.dedup.DedupPolicy;
+import com.urcl.utils.uploader.dedup.DedupScope;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 上传器的运行参数，未设置的字段使用默认值
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadOptions {
+
+    /**
+     * 相册创建可以领先上传多少个相册（已创建但尚未开始上传的相册数上限）
+     */
+    @Builder.Default
+    private int albumLookahead = 5;
+
+    /**
+     * 两次创建相册请求之间的最小间隔（毫秒）
+     */
+    @Builder.Default
+    private long createAlbumIntervalMs = 500;
+
+    /**
+     * 同时在途的文件上传数的初始值，之后根据请求延迟自适应调整
+     */
+    @Builder.Default
+    private int initialConcurrency = 10;
+
+    /**
+     * 自适应调整时并发上传数的下限
+     */
+    @Builder.Default
+    private int minConcurrency = 2;
+
+    /**
+     * 自适应调整时并发上传数的上限，同时也是上传线程数
+     */
+    @Builder.Default
+    private int maxConcurrency = 32;
+
+    /**
+     * 可选的PCS上传主机（含协议，如 https://xafj-ct11.pcs.baidu.com），上传时自动选择表现最好的主机
+     */
+    @Builder.Default
+    private List<String> uploadHosts = Collections.singletonList(UploadHostSelector.DEFAULT_UPLOAD_HOST);
+
+    /**
+     * 探测上传主机延迟的间隔（秒）
+     */
+    @Builder.Default
+    private long hostProbeIntervalSeconds = 60;
+
+    /**
+     * 对账模式：复用与文件夹同名的已有相册，并跳过相册中已经存在的文件（按MD5和fs_id判断）
+     */
+    private boolean reconcileExistingAlbums;
+
+    /**
+     * 多进程协作：多个上传进程处理同一个根目录时，每个文件夹通过其中的租约文件只由一个进程上传，
+     * 失去响应的进程持有的文件夹在租约过期后由其他进程接手
+     */
+    private boolean coordinateWorkers;
+
+    /**
+     * 多进程协作时租约的有效期（秒）
+     */
+    @Builder.Default
+    private long leaseTtlSeconds = 60;
+
+    /**
+     * 按文件记录的事件日志（JSON Lines）的路径，为null时不记录
+     */
+    private String eventLogPath;
+
+    /**
+     * 事件日志的采样率：每多少个成功上传的文件记录1个，失败总是记录
+     */
+    @Builder.Default
+    private int eventSampleRate = 1;
+
+    /**
+     * 事件日志缓冲区能容纳的事件数
+     */
+    @Builder.Default
+    private int eventBufferSize = 8192;
+
+    /**
+     * 事件日志缓冲区满时丢弃新事件还是等待写出
+     */
+    @Builder.Default
+    private EventLog.DropPolicy eventDropPolicy = EventLog.DropPolicy.DROP;
+
+    /**
+     * 上传前检测相似的图片（重新保存的副本、只有末尾随机字节不同的文件等）并按策略跳过。
+     * 只作用于列出文件夹上传的文件，不作用于流式提供的文件
+     */
+    @Builder.Default
+    private DedupPolicy dedupPolicy = DedupPolicy.OFF;
+
+    /**
+     * 在同一相册内还是整个运行中查找相似的图片
+     */
+    @Builder.Default
+    private DedupScope dedupScope = DedupScope.ALBUM;
+
+    /**
+     * 感知哈希的汉明距离不超过这个值的图片视为相似（0到64）
+     */
+    @Builder.Default
+    private int dedupMaxDistance = 4;
+
+    /**
+     * 计算感知哈希的线程数
+     */
+    @Builder.Default
+    private int dedupThreads = Runtime.getRuntime().availableProcessors();
+
+}
@@ -0,0 +1,419 @@
+package com.urcl.utils.uploader;
+
+import com.urcl.utils.uploader.clients.BaiduPhotoApiClient;
+import com.urcl.utils.uploader.clients.RequestLane;
+import com.urcl.utils.uploader.clients.UploadHostSelector;
+import com.urcl.utils.uploader.limit.AdaptiveConcurrencyLimiter;
+import com.urcl.utils.uploader.model.AlbumInfo;
+import com.urcl.utils.uploader.model.CreateAlbumResponse;
+import com.urcl.utils.uploader.model.UploadItem;
+import com.urcl.utils.uploader.model.UploadResult;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 供嵌入使用的响应式上传接口，遵循 Reactive Streams 规范
+ * （接口与JDK9的 java.util.concurrent.Flow 一一对应，JDK9+ 可以用 FlowAdapters 互相转换）。
+ * <p>
+ * 上游发布 {@link UploadItem}，下游订阅每个文件的 {@link UploadResult}。
+ * 只有下游有需求时才会向上游请求新的文件，且同时在途的文件不超过 maxConcurrency 个，因此吞吐由消费者决定。
+ * 上传成功的文件每满 {@link FileUploader#ADD_TO_ALBUM_CHUNK_SIZE} 个添加一次到相册；
+ * 上游结束后剩余的文件全部添加到相册，然后再通知下游完成。每个处理器只能被订阅一次。
+ */
+public class UploadProcessor implements Processor<UploadItem, UploadResult> {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadProcessor.class);
+
+    private final UploadOptions options;
+    private final BaiduPhotoApiClient apiClient;
+    private final AdaptiveConcurrencyLimiter uploadLimiter;
+    private final UploadHostSelector uploadHosts;
+    private final Transport transport;
+    private final int maxInFlight;
+    private final ExecutorService workers;
+    private final ExecutorService albumCreator;
+
+    // 按标题创建的相册，同一标题只创建一次
+    private final ConcurrentMap<String, CompletableFuture<AlbumInfo>> albumsByTitle = new ConcurrentHashMap<>();
+    // 已上传但还没有添加到相册的文件，按album_id分组
+    private final ConcurrentMap<String, PendingAlbum> pendingAlbums = new ConcurrentHashMap<>();
+
+    private final Queue<UploadResult> results = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong downstreamRequested = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicReference<Subscriber<? super UploadResult>> downstream = new AtomicReference<>();
+
+    private volatile Subscription upstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    // 下游请求了非正数个结果，由drain循环发出onError（规范§3.9，且信号必须串行发出）
+    private volatile Throwable demandError;
+    private volatile boolean cancelled;
+    private volatile long lastAlbumCreateAt;
+
+    // 以下字段只在drain循环中访问
+    private long upstreamRequested;
+    private long emitted;
+    private boolean terminated;
+
+    /**
+     * 使用独立的并发限制器，指标前缀为 upload.processor.concurrency，不会覆盖同进程中 BaiduPhotoUploader 的指标
+     */
+    public UploadProcessor(String cookie, String bdstoken, UploadOptions options) {
+        this(cookie, bdstoken, options, new AdaptiveConcurrencyLimiter("upload.processor.concurrency",
+                options.getInitialConcurrency(), options.getMinConcurrency(), options.getMaxConcurrency()));
+    }
+
+    /**
+     * @param uploadLimiter 上传文件使用的并发限制器，可以与其他上传器共享，或者使用自己的指标前缀
+     */
+    public UploadProcessor(String cookie, String bdstoken, UploadOptions options, AdaptiveConcurrencyLimiter uploadLimiter) {
+        this(options, uploadLimiter, new UploadHostSelector(options.getUploadHosts()), cookie, bdstoken);
+    }
+
+    private UploadProcessor(UploadOptions options, AdaptiveConcurrencyLimiter uploadLimiter, UploadHostSelector uploadHosts,
+                            String cookie, String bdstoken) {
+        this(options, uploadLimiter, uploadHosts,
+                new BaiduPhotoApiClient(cookie, bdstoken, RequestLane.control(), RequestLane.data(), uploadHosts), null);
+        apiClient.setLatencyListener(uploadLimiter);
+        uploadHosts.startProbing(RequestLane.control(), options.getHostProbeIntervalSeconds());
+    }
+
+    /**
+     * 测试用：不访问网络，上传和添加到相册由 transport 完成（只能处理已有 album_id 的文件）
+     */
+    UploadProcessor(UploadOptions options, AdaptiveConcurrencyLimiter uploadLimiter, Transport transport) {
+        this(options, uploadLimiter, new UploadHostSelector(options.getUploadHosts()), null, transport);
+    }
+
+    private UploadProcessor(UploadOptions options, AdaptiveConcurrencyLimiter uploadLimiter, UploadHostSelector uploadHosts,
+                            BaiduPhotoApiClient apiClient, Transport transport) {
+        this.options = options;
+        this.maxInFlight = Math.max(1, options.getMaxConcurrency());
+        this.uploadLimiter = uploadLimiter;
+        this.uploadHosts = uploadHosts;
+        this.apiClient = apiClient;
+        this.transport = transport != null ? transport : Transport.of(apiClient);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "upload-processor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.albumCreator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-processor-album");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // ============================ 上游（Subscriber）============================
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(UploadItem item) {
+        if (cancelled) {
+            return;
+        }
+        received.incrementAndGet();
+        workers.execute(() -> process(item));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    // ============================ 下游（Publisher）============================
+
+    @Override
+    public void subscribe(Subscriber<? super UploadResult> subscriber) {
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("UploadProcessor 只支持一个订阅者"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    demandError = new IllegalArgumentException("请求数量必须为正数: " + n);
+                    cancel();
+                    return;
+                }
+                downstreamRequested.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                drain();
+            }
+        });
+    }
+
+    // ============================ 处理 ============================
+
+    private void process(UploadItem item) {
+        String albumId = item.getAlbumId();
+        UploadResult result;
+        try {
+            PendingAlbum album;
+            if (albumId == null) {
+                AlbumInfo created = resolveAlbum(item.getAlbumTitle());
+                albumId = created.getAlbumId();
+                album = pendingAlbums.computeIfAbsent(albumId, id -> new PendingAlbum(id, created.getTid(), item.getAlbumTitle()));
+            } else {
+                album = pendingAlbums.computeIfAbsent(albumId, id -> new PendingAlbum(id, item.getTid(), id));
+            }
+
+            uploadLimiter.acquire();
+            try {
+                result = transport.upload(item, albumId);
+            } finally {
+                uploadLimiter.release();
+            }
+
+            if (result.isSuccess()) {
+                List<Long> chunk = album.add(result.getFsid());
+                if (chunk != null) {
+                    transport.addToAlbum(album.albumId, album.tid, album.title, chunk);
+                }
+            } else {
+                log.error("!!! 上传文件 {} 失败: {}", item.getSource().getName(), result.getError().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = UploadResult.failed(item, albumId, e);
+        } catch (Exception e) {
+            result = UploadResult.failed(item, albumId, e);
+        }
+        results.offer(result);
+        drain();
+    }
+
+    private AlbumInfo resolveAlbum(String albumTitle) throws IOException {
+        CompletableFuture<AlbumInfo> future = albumsByTitle.computeIfAbsent(albumTitle,
+                title -> CompletableFuture.supplyAsync(() -> createAlbum(title), albumCreator));
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new IOException("创建相册 '" + albumTitle + "' 失败", e.getCause());
+        }
+    }
+
+    /**
+     * 在单独的线程上串行执行，两次创建之间至少间隔 createAlbumIntervalMs
+     */
+    private AlbumInfo createAlbum(String albumTitle) {
+        try {
+            long waitMs = lastAlbumCreateAt + options.getCreateAlbumIntervalMs() - System.currentTimeMillis();
+            if (waitMs > 0) {
+                Thread.sleep(waitMs);
+            }
+            lastAlbumCreateAt = System.currentTimeMillis();
+
+            log.info(">>> 准备创建相册: {}", albumTitle);
+            CreateAlbumResponse albumResponse = apiClient.createAlbum(albumTitle);
+            String newAlbumId = albumResponse.getAlbumId();
+            String newTid = albumResponse.getInfo() == null ? null : albumResponse.getInfo().getTid();
+            if (newAlbumId == null || newAlbumId.isEmpty() || newTid == null || newTid.isEmpty()) {
+                throw new IOException("未能获取到有效的album_id或tid");
+            }
+            log.info("  -> 成功创建相册! 相册ID: {}", newAlbumId);
+            return new AlbumInfo(newAlbumId, newTid, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 串行化所有发往下游的信号，并根据下游需求向上游请求新的文件
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Subscriber<? super UploadResult> subscriber = downstream.get();
+            if (subscriber != null && !terminated) {
+                Throwable invalidDemand = demandError;
+                if (cancelled) {
+                    terminated = true;
+                    results.clear();
+                    workers.execute(this::shutdown);
+                    if (invalidDemand != null) {
+                        subscriber.onError(invalidDemand);
+                    }
+                } else {
+                    long requested = downstreamRequested.get();
+                    UploadResult result;
+                    while (emitted < requested && (result = results.poll()) != null) {
+                        subscriber.onNext(result);
+                        emitted++;
+                    }
+
+                    if (upstreamDone && received.get() == emitted) {
+                        terminated = true;
+                        workers.execute(() -> {
+                            shutdown();
+                            Throwable error = upstreamError;
+                            if (error != null) {
+                                subscriber.onError(error);
+                            } else {
+                                subscriber.onComplete();
+                            }
+                        });
+                    } else if (upstream != null && !upstreamDone) {
+                        // 已请求但尚未发给下游的文件数（包括正在上传和等待下游需求的）
+                        long outstanding = upstreamRequested - emitted;
+                        long window = Math.min(maxInFlight, requested - emitted);
+                        if (window > outstanding) {
+                            upstreamRequested += window - outstanding;
+                            upstream.request(window - outstanding);
+                        }
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * 将剩余的文件添加到相册并释放线程
+     */
+    private void shutdown() {
+        for (PendingAlbum album : pendingAlbums.values()) {
+            List<Long> remaining = album.drainAll();
+            if (!remaining.isEmpty()) {
+                try {
+                    transport.addToAlbum(album.albumId, album.tid, album.title, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.error("!!! 添加文件到相册 '{}' 时被中断，{} 个文件未添加。", album.title, remaining.size());
+                }
+            }
+        }
+        uploadHosts.stopProbing();
+        albumCreator.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * 上传单个文件和添加到相册的实际操作，默认通过 {@link FileUploader} 调用接口
+     */
+    interface Transport {
+        UploadResult upload(UploadItem item, String albumId);
+
+        void addToAlbum(String albumId, String tid, String albumTitle, List<Long> fsids) throws InterruptedException;
+
+        static Transport of(BaiduPhotoApiClient apiClient) {
+            return new Transport() {
+                @Override
+                public UploadResult upload(UploadItem item, String albumId) {
+                    return FileUploader.upload(apiClient, item, albumId);
+                }
+
+                @Override
+                public void addToAlbum(String albumId, String tid, String albumTitle, List<Long> fsids) throws InterruptedException {
+                    FileUploader.addToAlbum(apiClient, albumId, tid, albumTitle, fsids);
+                }
+            };
+        }
+    }
+
+    /**
+     * 一个相册中已上传、等待添加到相册的文件
+     */
+    private static class PendingAlbum {
+        private final String albumId;
+        private final String tid;
+        private final String title;
+        private List<Long> fsids = new ArrayList<>();
+
+        PendingAlbum(String albumId, String tid, String title) {
+            this.albumId = albumId;
+            this.tid = tid;
+            this.title = title;
+        }
+
+        /**
+         * @return 攒满一批时返回这一批的fs_id，否则返回null
+         */
+        synchronized List<Long> add(long fsid) {
+            fsids.add(fsid);
+            if (fsids.size() < FileUploader.ADD_TO_ALBUM_CHUNK_SIZE) {
+                return null;
+            }
+            return drainAll();
+        }
+
+        synchronized List<Long> drainAll() {
+            List<Long> chunk = fsids;
+            fsids = new ArrayList<>();
+            return chunk;
+        }
+    }
+}
@@ -3,53 +3,89 @@ package com.urcl.utils.uploader.clients;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.urcl.utils.uploader.model.AddFileResponse;
 import com.urcl.utils.uploader.model.CreateAlbumResponse;
 import com.urcl.utils.uploader.model.CreateResponse;
+import com.urcl.utils.uploader.model.ListAlbumResponse;
+import com.urcl.utils.uploader.model.ListFileResponse;
 import com.urcl.utils.uploader.model.PrecreateResponse;
-import com.urcl.utils.uploader.utils.Utils;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory; // 导入 SLF4J 的类
 
 import java.io.File;
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class BaiduPhotoApiClient {
 
     // ** [新增] 创建一个私有的、静态的 Logger 实例 **
     private static final Logger log = LoggerFactory.getLogger(BaiduPhotoApiClient.class);
 
-    private final OkHttpClient httpClient;
+    private final RequestLane controlLane;
+    private final RequestLane dataLane;
+    private final UploadHostSelector uploadHosts;
     private final Gson gson;
     private final String cookie;
     private final String bdstoken;
+    private volatile RequestLatencyListener latencyListener;
+
+    // [可配置] 列表接口每页的条数
+    private static final int LIST_PAGE_SIZE = 100;
+
+    @FunctionalInterface
+    private interface BodyHandler<T> {
+        T handle(ResponseBody body) throws IOException;
+    }
 
     // API 接口地址
     private static final String CREATE_ALBUM_URL = "https://photo.baidu.com/youai/album/v1/create";
     private static final String PRECREATE_URL = "https://photo.baidu.com/youai/file/v1/precreate";
     private static final String CREATE_URL = "https://photo.baidu.com/youai/file/v1/create";
     private static final String ADDFILE_URL = "https://photo.baidu.com/youai/album/v1/addfile";
-    private static final String UPLOAD_URL_FORMAT = "https://xafj-ct11.pcs.baidu.com/rest/2.0/pcs/superfile2?method=upload&app_id=16051585&channel=chunlei&clienttype=70&web=1&path=%s&uploadid=%s&partseq=0";
+    private static final String LIST_ALBUM_URL = "https://photo.baidu.com/youai/album/v1/list";
+    private static final String LIST_ALBUM_FILE_URL = "https://photo.baidu.com/youai/album/v1/listfile";
+    private static final String UPLOAD_PATH_FORMAT = "/rest/2.0/pcs/superfile2?method=upload&app_id=16051585&channel=chunlei&clienttype=70&web=1&path=%s&uploadid=%s&partseq=0";
 
 
     public BaiduPhotoApiClient(String cookie, String bdstoken) {
+        this(cookie, bdstoken, RequestLane.control(), RequestLane.data(), UploadHostSelector.singleHost());
+    }
+
+    /**
+     * @param controlLane 用于元数据类小请求的通道
+     * @param dataLane    用于上传文件内容的通道
+     * @param uploadHosts 上传文件内容时可选的PCS主机
+     */
+    public BaiduPhotoApiClient(String cookie, String bdstoken, RequestLane controlLane, RequestLane dataLane,
+                               UploadHostSelector uploadHosts) {
         this.cookie = cookie;
         this.bdstoken = bdstoken;
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(60, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .build();
+        this.controlLane = controlLane;
+        this.dataLane = dataLane;
+        this.uploadHosts = uploadHosts;
         this.gson = new Gson();
     }
 
+    /**
+     * 设置请求延迟监听器，传入null表示不再监听
+     */
+    public void setLatencyListener(RequestLatencyListener latencyListener) {
+        this.latencyListener = latencyListener;
+    }
+
     /**
      * 新增: 步骤 0 - 创建相册
      */
@@ -64,29 +100,28 @@ public class BaiduPhotoApiClient {
 
         Request request = buildRequest(url, null, "https://photo.baidu.com/photo/web/album");
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("创建相册请求失败: " + response);
-            String responseBody = Objects.requireNonNull(response.body()).string();
-            // ** [优化] 将API响应日志降级为 DEBUG **
-            log.debug("Create Album API response: {}", responseBody);
-            CreateAlbumResponse createAlbumResponse = gson.fromJson(responseBody, CreateAlbumResponse.class);
-            if (createAlbumResponse.getErrno() != 0) {
-                throw new IOException("创建相册API错误, errno: " + createAlbumResponse.getErrno() + ", response: " + responseBody);
-            }
-            return createAlbumResponse;
+        String responseBody = execute("createAlbum", controlLane, request, 0, "创建相册请求失败");
+        // ** [优化] 将API响应日志降级为 DEBUG **
+        log.debug("Create Album API response: {}", responseBody);
+        CreateAlbumResponse createAlbumResponse = gson.fromJson(responseBody, CreateAlbumResponse.class);
+        if (createAlbumResponse.getErrno() != 0) {
+            throw new IOException("创建相册API错误, errno: " + createAlbumResponse.getErrno() + ", response: " + responseBody);
         }
+        return createAlbumResponse;
     }
 
     /**
      * 步骤 1: 预创建文件
      */
     public PrecreateResponse precreate(File file, String remotePath, String albumId) throws IOException {
-        String md5;
-        try {
-            md5 = Utils.calculateMD5(file);
-        } catch (Exception e) {
-            throw new IOException("无法计算文件MD5", e);
-        }
+        return precreate(UploadSource.ofFile(file), remotePath, albumId);
+    }
+
+    /**
+     * 步骤 1: 预创建文件（任意数据来源）
+     */
+    public PrecreateResponse precreate(UploadSource source, String remotePath, String albumId) throws IOException {
+        String md5 = source.md5();
 
         RequestBody formBody = new FormBody.Builder()
                 .add("autoinit", "1")
@@ -95,11 +130,11 @@ public class BaiduPhotoApiClient {
                 .add("rtype", "1")
                 .add("ctype", "11")
                 .add("path", remotePath)
-                .add("size", String.valueOf(file.length()))
+                .add("size", String.valueOf(source.size()))
                 .add("slice-md5", md5)
                 .add("content-md5", md5)
                 .add("local_ctime", String.valueOf(Instant.now().getEpochSecond()))
-                .add("local_mtime", String.valueOf(file.lastModified() / 1000))
+                .add("local_mtime", String.valueOf(source.getLastModified() / 1000))
                 .build();
 
         HttpUrl url = Objects.requireNonNull(HttpUrl.parse(PRECREATE_URL)).newBuilder()
@@ -109,20 +144,24 @@ public class BaiduPhotoApiClient {
 
         Request request = buildRequest(url, formBody, "https://photo.baidu.com/photo/web/album/" + albumId);
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("预创建请求失败: " + response);
-            String responseBody = Objects.requireNonNull(response.body()).string();
-            // ** [优化] 将API响应日志降级为 DEBUG **
-            log.debug("Precreate API response: {}", responseBody);
-            return gson.fromJson(responseBody, PrecreateResponse.class);
-        }
+        String responseBody = execute("precreate", controlLane, request, 0, "预创建请求失败");
+        // ** [优化] 将API响应日志降级为 DEBUG **
+        log.debug("Precreate API response: {}", responseBody);
+        return gson.fromJson(responseBody, PrecreateResponse.class);
     }
 
     /**
      * 步骤 2: 上传文件数据
      */
     public void uploadPart(File file, String remotePath, String uploadId) throws IOException {
-        RequestBody fileBody = RequestBody.create(file, MediaType.parse("application/octet-stream"));
+        uploadPart(UploadSource.ofFile(file), remotePath, uploadId);
+    }
+
+    /**
+     * 步骤 2: 上传文件数据（任意数据来源）
+     */
+    public void uploadPart(UploadSource source, String remotePath, String uploadId) throws IOException {
+        RequestBody fileBody = source.toRequestBody(MediaType.parse("application/octet-stream"));
 
         RequestBody multipartBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
@@ -130,38 +169,82 @@ public class BaiduPhotoApiClient {
                 .build();
 
         String encodedPath = URLEncoder.encode(remotePath, StandardCharsets.UTF_8.toString());
-        String uploadUrl = String.format(UPLOAD_URL_FORMAT, encodedPath, uploadId);
-
-        Request request = new Request.Builder()
-                .url(uploadUrl)
-                .post(multipartBody)
-                .addHeader("Cookie", this.cookie)
-                .addHeader("User-Agent", "\"Not;A=Brand\";v=\"99\", \"Microsoft Edge\";v=\"139\", \"Chromium\";v=\"139\"")
-                .addHeader("Referer", "https://photo.baidu.com/")
-                .build();
+        String uploadPath = String.format(UPLOAD_PATH_FORMAT, encodedPath, uploadId);
+
+        // 依次尝试不同的上传主机，直到成功或所有主机都失败；只有主机本身的故障才换主机
+        List<UploadHostSelector.HostStats> failedHosts = new ArrayList<>();
+        IOException lastError = null;
+        for (int attempt = 0; attempt < uploadHosts.size(); attempt++) {
+            UploadHostSelector.HostStats host = uploadHosts.acquire(failedHosts);
+            // 没有以成功或主机故障结束的尝试（4xx、读取数据失败等）只归还在途计数
+            boolean reported = false;
+            try {
+                Request request = new Request.Builder()
+                        .url(host.getBaseUrl() + uploadPath)
+                        .post(multipartBody)
+                        .addHeader("Cookie", this.cookie)
+                        .addHeader("User-Agent", "\"Not;A=Brand\";v=\"99\", \"Microsoft Edge\";v=\"139\", \"Chromium\";v=\"139\"")
+                        .addHeader("Referer", "https://photo.baidu.com/")
+                        .build();
+
+                long start = System.nanoTime();
+                try {
+                    String responseBody = execute("uploadPart", dataLane, request, source.size(), "文件上传失败");
+                    uploadHosts.onSuccess(host, System.nanoTime() - start, source.size());
+                    reported = true;
+                    // ** [优化] 将API响应日志降级为 DEBUG **
+                    log.debug("Upload Part API response ({}): {}", host, responseBody);
+                    return;
+                } catch (IOException e) {
+                    if (!isHostFailure(e)) {
+                        // 4xx（例如登录失效）和读取文件失败等错误换任何主机都一样，不惩罚主机
+                        throw e;
+                    }
+                    uploadHosts.onFailure(host);
+                    reported = true;
+                    failedHosts.add(host);
+                    lastError = e;
+                    log.warn("上传到主机 {} 失败: {}", host, e.getMessage());
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                }
+            } finally {
+                if (!reported) {
+                    uploadHosts.release(host);
+                }
+            }
+        }
+        throw lastError;
+    }
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("文件上传失败: " + response);
-            String responseBody = Objects.requireNonNull(response.body()).string();
-            // ** [优化] 将API响应日志降级为 DEBUG **
-            log.debug("Upload Part API response: {}", responseBody);
+    /**
+     * @return 是否是连接失败、超时或服务端错误（5xx），换一个上传主机可能成功
+     */
+    static boolean isHostFailure(IOException e) {
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).isServerError();
         }
+        return e instanceof ConnectException || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException || e instanceof SocketTimeoutException;
     }
 
     /**
      * 步骤 3: 创建文件记录
      */
     public CreateResponse createFile(File file, String remotePath, String uploadId, String albumId) throws IOException {
-        String md5;
-        try {
-            md5 = Utils.calculateMD5(file);
-        } catch (Exception e) {
-            throw new IOException("无法计算文件MD5", e);
-        }
+        return createFile(UploadSource.ofFile(file), remotePath, uploadId, albumId);
+    }
+
+    /**
+     * 步骤 3: 创建文件记录（任意数据来源，MD5复用预创建时的计算结果）
+     */
+    public CreateResponse createFile(UploadSource source, String remotePath, String uploadId, String albumId) throws IOException {
+        String md5 = source.md5();
 
         RequestBody formBody = new FormBody.Builder()
                 .add("path", remotePath)
-                .add("size", String.valueOf(file.length()))
+                .add("size", String.valueOf(source.size()))
                 .add("uploadid", uploadId)
                 .add("block_list", "[\"" + md5 + "\"]")
                 .add("isdir", "0")
@@ -177,13 +260,10 @@ public class BaiduPhotoApiClient {
 
         Request request = buildRequest(url, formBody, "https://photo.baidu.com/photo/web/album/" + albumId);
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("创建文件请求失败: " + response);
-            String responseBody = Objects.requireNonNull(response.body()).string();
-            // ** [优化] 将API响应日志降级为 DEBUG **
-            log.debug("Create File API response: {}", responseBody);
-            return gson.fromJson(responseBody, CreateResponse.class);
-        }
+        String responseBody = execute("createFile", controlLane, request, 0, "创建文件请求失败");
+        // ** [优化] 将API响应日志降级为 DEBUG **
+        log.debug("Create File API response: {}", responseBody);
+        return gson.fromJson(responseBody, CreateResponse.class);
     }
 
     /**
@@ -211,14 +291,125 @@ public class BaiduPhotoApiClient {
 
         Request request = buildRequest(url, null, "https://photo.baidu.com/photo/web/album/" + albumId);
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("添加文件到相册失败: " + response);
-            String responseBody = Objects.requireNonNull(response.body()).string();
-            // ** [优化] 将API响应日志降级为 DEBUG **
-            log.debug("Add to Album API response: {}", responseBody);
-            AddFileResponse addFileResponse = gson.fromJson(responseBody, AddFileResponse.class);
-            if (addFileResponse.getErrno() != 0) {
-                throw new IOException("添加文件到相册API错误, errno: " + addFileResponse.getErrno() + ", response: " + responseBody);
+        String responseBody = execute("addFilesToAlbum", controlLane, request, 0, "添加文件到相册失败");
+        // ** [优化] 将API响应日志降级为 DEBUG **
+        log.debug("Add to Album API response: {}", responseBody);
+        AddFileResponse addFileResponse = gson.fromJson(responseBody, AddFileResponse.class);
+        if (addFileResponse.getErrno() != 0) {
+            throw new IOException("添加文件到相册API错误, errno: " + addFileResponse.getErrno() + ", response: " + responseBody);
+        }
+    }
+
+    /**
+     * 列出所有相册，每解析出一个相册就交给 consumer，按页流式读取，不在内存中保留完整的JSON
+     */
+    public void listAlbums(Consumer<ListAlbumResponse.Album> consumer) throws IOException {
+        String cursor = null;
+        do {
+            HttpUrl.Builder url = Objects.requireNonNull(HttpUrl.parse(LIST_ALBUM_URL)).newBuilder()
+                    .addQueryParameter("clienttype", "70")
+                    .addQueryParameter("bdstoken", this.bdstoken)
+                    .addQueryParameter("limit", String.valueOf(LIST_PAGE_SIZE));
+            if (cursor != null) {
+                url.addQueryParameter("cursor", cursor);
+            }
+            Request request = buildRequest(url.build(), null, "https://photo.baidu.com/photo/web/album");
+            cursor = execute("listAlbums", controlLane, request, 0, "获取相册列表失败",
+                    body -> readPage(body, ListAlbumResponse.Album.class, consumer));
+        } while (cursor != null);
+    }
+
+    /**
+     * 列出相册中的所有文件，每解析出一个文件就交给 consumer，按页流式读取，不在内存中保留完整的JSON
+     */
+    public void listAlbumFiles(String albumId, Consumer<ListFileResponse.FileInfo> consumer) throws IOException {
+        String cursor = null;
+        do {
+            HttpUrl.Builder url = Objects.requireNonNull(HttpUrl.parse(LIST_ALBUM_FILE_URL)).newBuilder()
+                    .addQueryParameter("clienttype", "70")
+                    .addQueryParameter("bdstoken", this.bdstoken)
+                    .addQueryParameter("album_id", albumId)
+                    .addQueryParameter("limit", String.valueOf(LIST_PAGE_SIZE));
+            if (cursor != null) {
+                url.addQueryParameter("cursor", cursor);
+            }
+            Request request = buildRequest(url.build(), null, "https://photo.baidu.com/photo/web/album/" + albumId);
+            cursor = execute("listAlbumFiles", controlLane, request, 0, "获取相册文件列表失败",
+                    body -> readPage(body, ListFileResponse.FileInfo.class, consumer));
+        } while (cursor != null);
+    }
+
+    /**
+     * 辅助方法，流式解析一页列表响应：list 数组中的元素逐个交给 consumer，
+     * has_more（数字或布尔值）和 cursor 决定是否有下一页
+     *
+     * @return 下一页的游标，没有下一页时返回null
+     */
+    <T> String readPage(ResponseBody body, Class<T> itemType, Consumer<T> consumer) throws IOException {
+        int errno = 0;
+        boolean hasMore = false;
+        String cursor = null;
+        try (JsonReader reader = new JsonReader(body.charStream())) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "errno":
+                        errno = reader.nextInt();
+                        break;
+                    case "has_more":
+                        hasMore = reader.peek() == JsonToken.BOOLEAN ? reader.nextBoolean() : reader.nextInt() != 0;
+                        break;
+                    case "cursor":
+                        cursor = reader.nextString();
+                        break;
+                    case "list":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            consumer.accept(gson.fromJson(reader, itemType));
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        if (errno != 0) {
+            throw new IOException("列表API错误, errno: " + errno);
+        }
+        return hasMore && cursor != null && !cursor.isEmpty() ? cursor : null;
+    }
+
+    /**
+     * 辅助方法，执行请求并读取响应体，同时向监听器报告本次请求的往返延迟
+     */
+    private String execute(String endpoint, RequestLane lane, Request request, long bytes, String errorMessage) throws IOException {
+        return execute(endpoint, lane, request, bytes, errorMessage, ResponseBody::string);
+    }
+
+    /**
+     * 辅助方法，执行请求并交给 handler 处理响应体，同时向监听器报告本次请求的往返延迟
+     */
+    private <T> T execute(String endpoint, RequestLane lane, Request request, long bytes, String errorMessage,
+                          BodyHandler<T> handler) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try (Response response = lane.execute(request)) {
+            if (!response.isSuccessful()) throw new HttpStatusException(errorMessage + ": " + response, response.code());
+            T result = handler.handle(Objects.requireNonNull(response.body()));
+            success = true;
+            return result;
+        } finally {
+            RequestLatencyListener listener = this.latencyListener;
+            if (listener != null) {
+                listener.onRequestComplete(endpoint, System.nanoTime() - start, bytes, success);
             }
         }
     }
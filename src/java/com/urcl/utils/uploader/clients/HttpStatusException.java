@@ -0,0 +1,29 @@
+package com.urcl.utils.uploader.clients;
+
+import java.io.IOException;
+
+/**
+ * 服务端返回了非2xx的状态码
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+
+    public HttpStatusException(String message, int code) {
+        super(message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return 是否是服务端错误（5xx），换一个主机或稍后重试可能成功
+     */
+    public boolean isServerError() {
+        return code >= 500;
+    }
+}
@@ -0,0 +1,122 @@
+package com.urcl.utils.uploader.clients;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一条独立的请求通道：拥有自己的连接池、调度器（并发上限）、超时设置和线程优先级。
+ * <p>
+ * 控制面（precreate、create、addfile、创建相册等小JSON请求）和数据面（上传文件内容）分别走不同的通道，
+ * 这样在上行带宽被大文件占满时，元数据请求既不用和上传请求抢连接，也不用在调度器里排在它们后面。
+ * 通道在进程内共享，所有 {@link BaiduPhotoApiClient} 实例复用同一组连接。
+ */
+public class RequestLane {
+
+    private static final RequestLane CONTROL = new RequestLane("control", 16, 5, 10, 30, 30, Thread.MAX_PRIORITY);
+    private static final RequestLane DATA = new RequestLane("data", 64, 30, 30, 120, 120, Thread.NORM_PRIORITY);
+
+    private final String name;
+    private final OkHttpClient httpClient;
+
+    /**
+     * @param maxRequests    同时执行的请求数上限
+     * @param maxIdle        连接池中保留的空闲连接数
+     * @param connectTimeout 连接超时（秒）
+     * @param readTimeout    读超时（秒）
+     * @param writeTimeout   写超时（秒）
+     * @param priority       执行请求的调度线程的优先级
+     */
+    public RequestLane(String name, int maxRequests, int maxIdle, long connectTimeout, long readTimeout,
+                       long writeTimeout, int priority) {
+        this.name = name;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "baidu-" + name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        });
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdle, 5, TimeUnit.MINUTES))
+                .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                .readTimeout(readTimeout, TimeUnit.SECONDS)
+                .writeTimeout(writeTimeout, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 控制面通道：并发少、超时短、优先级高
+     */
+    public static RequestLane control() {
+        return CONTROL;
+    }
+
+    /**
+     * 数据面通道：并发多、超时长，用于上传文件内容
+     */
+    public static RequestLane data() {
+        return DATA;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 通过本通道的调度器执行请求并等待响应。
+     * 请求在调度器中排队直到有空闲名额，调用线程被中断时会取消请求。
+     */
+    public Response execute(Request request) throws IOException {
+        Call call = httpClient.newCall(request);
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (!future.complete(response)) {
+                    response.close();
+                }
+            }
+        });
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // 先取消future，之后才到达的响应会在回调里被关闭
+            future.cancel(false);
+            call.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待" + name + "通道响应时被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.urcl.utils.uploader.clients;
+
+/**
+ * 每个API请求完成（包括失败）后的回调，用于采集各接口的往返延迟
+ */
+public interface RequestLatencyListener {
+
+    /**
+     * @param endpoint 接口名称，如 precreate、uploadPart
+     * @param rttNanos 从发出请求到读完响应体的耗时（纳秒）
+     * @param bytes    请求体中文件数据的字节数，没有文件数据时为0
+     * @param success  请求是否成功
+     */
+    void onRequestComplete(String endpoint, long rttNanos, long bytes, boolean success);
+}
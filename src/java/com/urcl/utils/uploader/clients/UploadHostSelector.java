@@ -0,0 +1,272 @@
+package com.urcl.utils.uploader.clients;
+
+import com.urcl.utils.metrics.MetricsRegistry;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在多个PCS上传主机之间选择上传目标。
+ * <p>
+ * 每个主机维护延迟和吞吐的滑动平均：延迟来自定期探测和真实上传，吞吐来自真实上传。
+ * 选择时从健康的主机中随机取两个，选预计耗时（考虑在途请求数）更短的那个，既偏向快的主机又能分散负载。
+ * 连续失败的主机会被暂时摘除，冷却期过后或探测成功时恢复。
+ */
+public class UploadHostSelector {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadHostSelector.class);
+
+    public static final String DEFAULT_UPLOAD_HOST = "https://xafj-ct11.pcs.baidu.com";
+
+    // 连续失败多少次后暂时摘除主机
+    private static final int FAILURE_THRESHOLD = 2;
+
+    // 摘除主机的基础冷却时间，连续失败越多冷却越久
+    private static final long BASE_COOLDOWN_MS = 30_000;
+    private static final long MAX_COOLDOWN_MS = 10 * 60_000;
+
+    // 估算耗时时假定的典型上传大小
+    private static final long TYPICAL_PART_BYTES = 4 * 1024 * 1024;
+
+    private static final double ALPHA = 0.3;
+
+    private final List<HostStats> hosts;
+    private ScheduledExecutorService prober;
+
+    public UploadHostSelector(List<String> baseUrls) {
+        if (baseUrls == null || baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个上传主机");
+        }
+        List<HostStats> list = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            list.add(new HostStats(baseUrl));
+        }
+        this.hosts = Collections.unmodifiableList(list);
+    }
+
+    public static UploadHostSelector singleHost() {
+        return new UploadHostSelector(Collections.singletonList(DEFAULT_UPLOAD_HOST));
+    }
+
+    public int size() {
+        return hosts.size();
+    }
+
+    public List<HostStats> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * 选择一个上传主机，并将其在途请求数加一。调用方完成后必须调用 {@link #onSuccess}、{@link #onFailure} 或 {@link #release} 之一。
+     *
+     * @param exclude 本次请求中已经失败过的主机，尽量不再选择
+     */
+    public HostStats acquire(List<HostStats> exclude) {
+        long now = System.currentTimeMillis();
+        List<HostStats> candidates = new ArrayList<>();
+        for (HostStats host : hosts) {
+            if (host.isHealthy(now) && !exclude.contains(host)) {
+                candidates.add(host);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // 没有健康的主机时，选冷却最先结束的那个继续尝试
+            HostStats fallback = null;
+            for (HostStats host : hosts) {
+                if (!exclude.contains(host) && (fallback == null || host.downUntil < fallback.downUntil)) {
+                    fallback = host;
+                }
+            }
+            candidates.add(fallback != null ? fallback : hosts.get(0));
+        }
+
+        HostStats chosen = candidates.get(0);
+        if (candidates.size() > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(candidates.size());
+            int second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+            HostStats a = candidates.get(first);
+            HostStats b = candidates.get(second);
+            chosen = a.expectedCostMs() <= b.expectedCostMs() ? a : b;
+        }
+        chosen.inFlight.incrementAndGet();
+        return chosen;
+    }
+
+    public void onSuccess(HostStats host, long rttNanos, long bytes) {
+        host.inFlight.decrementAndGet();
+        host.requests.increment();
+        host.recordSuccess(rttNanos, bytes);
+    }
+
+    public void onFailure(HostStats host) {
+        host.inFlight.decrementAndGet();
+        host.requests.increment();
+        host.failures.increment();
+        host.recordFailure();
+    }
+
+    /**
+     * 请求因为与主机无关的原因结束（例如4xx或读取数据失败），只减少在途请求数，不记录失败也不进入冷却
+     */
+    public void release(HostStats host) {
+        host.inFlight.decrementAndGet();
+    }
+
+    /**
+     * 启动后台探测，定期测量每个主机的连接延迟
+     */
+    public synchronized void startProbing(RequestLane lane, long intervalSeconds) {
+        if (prober != null) {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-host-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(() -> hosts.forEach(host -> probe(lane, host)), 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopProbing() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    private void probe(RequestLane lane, HostStats host) {
+        Request request = new Request.Builder().url(host.baseUrl + "/").head().build();
+        long start = System.nanoTime();
+        // 任何HTTP响应都说明主机可达，这里只关心往返延迟
+        try {
+            lane.execute(request).close();
+            host.recordProbe(System.nanoTime() - start);
+        } catch (IOException e) {
+            log.debug("探测上传主机 {} 失败: {}", host.baseUrl, e.getMessage());
+            host.recordFailure();
+        }
+    }
+
+    /**
+     * 单个上传主机的统计信息
+     */
+    public static class HostStats {
+
+        private final String baseUrl;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        // 以下字段在 synchronized 方法中更新
+        private double latencyMs;
+        private double throughputBytesPerMs;
+        private int consecutiveFailures;
+        private volatile long downUntil;
+
+        HostStats(String baseUrl) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+
+            HttpUrl url = Objects.requireNonNull(HttpUrl.parse(this.baseUrl), "无效的上传主机: " + baseUrl);
+            String prefix = "upload.host." + url.host() + (url.port() == HttpUrl.defaultPort(url.scheme()) ? "" : ":" + url.port());
+            MetricsRegistry metrics = MetricsRegistry.getDefault();
+            metrics.gauge(prefix + ".latencyMs", () -> (long) getLatencyMs());
+            metrics.gauge(prefix + ".throughputKBps", () -> (long) (getThroughputBytesPerMs() * 1000 / 1024));
+            metrics.gauge(prefix + ".inFlight", inFlight::get);
+            metrics.gauge(prefix + ".requests", requests::sum);
+            metrics.gauge(prefix + ".failures", failures::sum);
+            metrics.gauge(prefix + ".bytes", bytes::sum);
+            metrics.gauge(prefix + ".healthy", () -> isHealthy(System.currentTimeMillis()) ? 1 : 0);
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public synchronized double getLatencyMs() {
+            return latencyMs;
+        }
+
+        public synchronized double getThroughputBytesPerMs() {
+            return throughputBytesPerMs;
+        }
+
+        public boolean isHealthy(long now) {
+            return downUntil <= now;
+        }
+
+        /**
+         * 预计再发一个典型大小的上传需要的时间，在途请求越多代价越高；没有统计数据时返回0，让新主机优先被尝试
+         */
+        synchronized double expectedCostMs() {
+            double transferMs = throughputBytesPerMs > 0 ? TYPICAL_PART_BYTES / throughputBytesPerMs : 0;
+            return (latencyMs + transferMs) * (inFlight.get() + 1);
+        }
+
+        synchronized void recordSuccess(long rttNanos, long size) {
+            double rttMs = rttNanos / 1_000_000.0;
+            bytes.add(size);
+            if (size > 0) {
+                double sample = size / Math.max(rttMs, 1.0);
+                throughputBytesPerMs = throughputBytesPerMs == 0 ? sample : throughputBytesPerMs * (1 - ALPHA) + sample * ALPHA;
+            } else {
+                updateLatency(rttMs);
+            }
+            consecutiveFailures = 0;
+            downUntil = 0;
+        }
+
+        synchronized void recordProbe(long rttNanos) {
+            updateLatency(rttNanos / 1_000_000.0);
+            if (downUntil > 0) {
+                log.info("上传主机 {} 探测恢复正常", baseUrl);
+            }
+            consecutiveFailures = 0;
+            downUntil = 0;
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            if (consecutiveFailures >= FAILURE_THRESHOLD) {
+                long cooldown = Math.min(MAX_COOLDOWN_MS, BASE_COOLDOWN_MS << Math.min(10, consecutiveFailures - FAILURE_THRESHOLD));
+                downUntil = System.currentTimeMillis() + cooldown;
+                log.warn("上传主机 {} 连续失败 {} 次，暂停使用 {} 秒", baseUrl, consecutiveFailures, cooldown / 1000);
+            }
+        }
+
+        private void updateLatency(double rttMs) {
+            latencyMs = latencyMs == 0 ? rttMs : latencyMs * (1 - ALPHA) + rttMs * ALPHA;
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+}
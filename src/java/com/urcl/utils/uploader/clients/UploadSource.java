@@ -0,0 +1,251 @@
+package com.urcl.utils.uploader.clients;
+
+import com.urcl.utils.uploader.utils.Utils;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 上传的数据来源，可以是磁盘文件、字节数组、ByteBuffer（包括直接内存和内存映射）或者可重复打开的输入流。
+ * <p>
+ * MD5只计算一次并缓存，预创建和创建文件记录共用；上传时直接把原始数据写入请求，不再经过临时文件。
+ */
+public abstract class UploadSource {
+
+    private final String name;
+    private final long lastModified;
+    private volatile String md5;
+
+    protected UploadSource(String name, long lastModified) {
+        this.name = name;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 可重复打开的输入流，每次上传都会重新打开一次
+     */
+    @FunctionalInterface
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    public static UploadSource ofFile(File file) {
+        return new FileSource(file);
+    }
+
+    /**
+     * 已经知道MD5的磁盘文件（例如刚写入文件时顺带计算出来的），不会再读一遍文件计算MD5
+     *
+     * @param md5 32位的MD5字符串，为null时与 {@link #ofFile(File)} 相同
+     */
+    public static UploadSource ofFile(File file, String md5) {
+        UploadSource source = new FileSource(file);
+        source.md5 = md5;
+        return source;
+    }
+
+    /**
+     * 将文件只读映射到内存后作为数据来源，哈希和上传都直接读取映射区域
+     */
+    public static UploadSource ofMappedFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BufferSource(file.getName(), file.lastModified(), mapped);
+        }
+    }
+
+    public static UploadSource ofBytes(String name, byte[] data) {
+        return ofBytes(name, data, 0, data.length);
+    }
+
+    public static UploadSource ofBytes(String name, byte[] data, int offset, int length) {
+        return new BufferSource(name, System.currentTimeMillis(), ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * 使用 buffer 中 position 到 limit 之间的数据，之后不会修改 buffer 的 position
+     */
+    public static UploadSource ofBuffer(String name, ByteBuffer buffer) {
+        return new BufferSource(name, System.currentTimeMillis(), buffer);
+    }
+
+    /**
+     * @param size   流的总字节数
+     * @param opener 每次调用都返回一个从头开始的新流（计算MD5一次，每次上传尝试一次）
+     */
+    public static UploadSource ofStream(String name, long size, StreamOpener opener) {
+        return new StreamSource(name, System.currentTimeMillis(), size, opener);
+    }
+
+    /**
+     * 只能读取一次的流：一次性读入内存后作为字节数组上传
+     */
+    public static UploadSource ofOneShotStream(String name, InputStream in, int size) throws IOException {
+        byte[] data = new byte[size];
+        int read = 0;
+        while (read < size) {
+            int n = in.read(data, read, size - read);
+            if (n < 0) {
+                throw new IOException("流的长度小于声明的大小: " + read + " < " + size);
+            }
+            read += n;
+        }
+        return ofBytes(name, data);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public abstract long size();
+
+    /**
+     * @return 32位的MD5字符串，只在第一次调用时计算
+     */
+    public String md5() throws IOException {
+        String result = md5;
+        if (result == null) {
+            try {
+                result = computeMd5();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("无法计算文件MD5", e);
+            }
+            md5 = result;
+        }
+        return result;
+    }
+
+    protected abstract String computeMd5() throws Exception;
+
+    public abstract RequestBody toRequestBody(MediaType contentType);
+
+    private static class FileSource extends UploadSource {
+        private final File file;
+
+        FileSource(File file) {
+            super(file.getName(), file.lastModified());
+            this.file = file;
+        }
+
+        @Override
+        public long size() {
+            return file.length();
+        }
+
+        @Override
+        protected String computeMd5() throws Exception {
+            return Utils.calculateMD5(file);
+        }
+
+        @Override
+        public RequestBody toRequestBody(MediaType contentType) {
+            return RequestBody.create(file, contentType);
+        }
+    }
+
+    private static class BufferSource extends UploadSource {
+        private final ByteBuffer buffer;
+
+        BufferSource(String name, long lastModified, ByteBuffer buffer) {
+            super(name, lastModified);
+            this.buffer = buffer.slice();
+        }
+
+        @Override
+        public long size() {
+            return buffer.remaining();
+        }
+
+        @Override
+        protected String computeMd5() throws Exception {
+            return Utils.calculateMD5(buffer.duplicate());
+        }
+
+        @Override
+        public RequestBody toRequestBody(MediaType contentType) {
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return contentType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return buffer.remaining();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    // 每次写入使用独立的视图，失败重试时从头开始
+                    ByteBuffer view = buffer.duplicate();
+                    while (view.hasRemaining()) {
+                        sink.write(view);
+                    }
+                }
+            };
+        }
+    }
+
+    private static class StreamSource extends UploadSource {
+        private final long size;
+        private final StreamOpener opener;
+
+        StreamSource(String name, long lastModified, long size, StreamOpener opener) {
+            super(name, lastModified);
+            this.size = size;
+            this.opener = opener;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        protected String computeMd5() throws Exception {
+            try (InputStream in = opener.open()) {
+                return Utils.calculateMD5(in);
+            }
+        }
+
+        @Override
+        public RequestBody toRequestBody(MediaType contentType) {
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return contentType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return size;
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    try (Source source = Okio.source(opener.open())) {
+                        long written = sink.writeAll(source);
+                        if (written != size) {
+                            throw new IOException("流的长度与声明的大小不一致: " + written + " != " + size);
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
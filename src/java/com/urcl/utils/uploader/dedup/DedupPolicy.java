@@ -0,0 +1,34 @@
+package com.urcl.utils.uploader.dedup;
+
+/**
+ * 上传前如何处理相似的图片
+ */
+public enum DedupPolicy {
+
+    /**
+     * 不检测
+     */
+    OFF,
+
+    /**
+     * 只检测并报告相似的图片，全部上传
+     */
+    REPORT,
+
+    /**
+     * 每组相似的图片只上传最早的一张（按上传顺序，即修改时间），跳过其余的
+     */
+    KEEP_FIRST,
+
+    /**
+     * 每组相似的图片只上传最大的一个文件（通常质量最好），跳过其余的
+     */
+    KEEP_LARGEST;
+
+    /**
+     * @return 是否跳过重复的图片
+     */
+    public boolean skipsDuplicates() {
+        return this == KEEP_FIRST || this == KEEP_LARGEST;
+    }
+}
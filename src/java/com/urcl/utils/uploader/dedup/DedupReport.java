@@ -0,0 +1,96 @@
+package com.urcl.utils.uploader.dedup;
+
+import com.urcl.utils.metrics.LatencyHistogram;
+import com.urcl.utils.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 相似图片检测的累计结果，可以被多个相册的上传线程同时更新
+ */
+@Slf4j
+public class DedupReport {
+
+    // [可配置] 发布到指标注册表时使用的名称前缀
+    static final String METRICS_PREFIX = "dedup";
+
+    private final DedupPolicy policy;
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder unhashable = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder duplicateBytes = new LongAdder();
+    private final LatencyHistogram hashNanos = new LatencyHistogram();
+
+    DedupReport(DedupPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return 计算了哈希的图片数
+     */
+    public long getHashed() {
+        return hashed.sum();
+    }
+
+    /**
+     * @return 无法解码、按不重复处理的文件数
+     */
+    public long getUnhashable() {
+        return unhashable.sum();
+    }
+
+    /**
+     * @return 与已有图片相似的图片数
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return 相似图片的总字节数
+     */
+    public long getDuplicateBytes() {
+        return duplicateBytes.sum();
+    }
+
+    /**
+     * @return 因为跳过相似图片而少上传的字节数，只报告不跳过时为0
+     */
+    public long getBytesAvoided() {
+        return policy.skipsDuplicates() ? getDuplicateBytes() : 0;
+    }
+
+    public LatencyHistogram getHashNanos() {
+        return hashNanos;
+    }
+
+    void recordHash(long nanos, boolean success) {
+        hashNanos.record(nanos);
+        if (success) {
+            hashed.increment();
+        } else {
+            unhashable.increment();
+        }
+    }
+
+    void recordDuplicate(long bytes) {
+        duplicates.increment();
+        duplicateBytes.add(bytes);
+    }
+
+    public void publish(MetricsRegistry registry) {
+        registry.counter(METRICS_PREFIX + ".hashed").add(getHashed());
+        registry.counter(METRICS_PREFIX + ".unhashable").add(getUnhashable());
+        registry.counter(METRICS_PREFIX + ".duplicates").add(getDuplicates());
+        registry.counter(METRICS_PREFIX + ".bytes.avoided").add(getBytesAvoided());
+        registry.counter(METRICS_PREFIX + ".hash.nanos").add(hashNanos.getTotal());
+    }
+
+    public void logSummary() {
+        log.info("[相似图片] 策略 {}: 计算哈希 {} 张（无法解码 {} 个，p50 {} µs / max {} µs），相似 {} 张共 {} MB，少上传 {} MB",
+                policy, getHashed(), getUnhashable(), hashNanos.percentile(50) / 1000, hashNanos.getMax() / 1000,
+                getDuplicates(), String.format("%.1f", getDuplicateBytes() / 1048576.0),
+                String.format("%.1f", getBytesAvoided() / 1048576.0));
+    }
+}
@@ -0,0 +1,17 @@
+package com.urcl.utils.uploader.dedup;
+
+/**
+ * 在什么范围内查找相似的图片
+ */
+public enum DedupScope {
+
+    /**
+     * 只在同一个相册（文件夹）内
+     */
+    ALBUM,
+
+    /**
+     * 本次运行上传的所有相册之间：之前的相册中已经上传过的图片，之后的相册中与之相似的图片也视为重复
+     */
+    RUN
+}
@@ -0,0 +1,216 @@
+package com.urcl.utils.uploader.dedup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传前检测相似的图片：并行计算每张图片的 {@link PerceptualHash 感知哈希}，
+ * 与已选中的代表图片的汉明距离不超过阈值的图片视为重复。
+ * <p>
+ * 按策略决定的顺序（最早的或最大的优先）逐个处理：没有相似代表的图片成为新的代表，否则归入最近的代表。
+ * 每张图片只与代表比较，相似关系不会沿着一串逐渐变化的图片传递下去。
+ * 范围为 {@link DedupScope#RUN} 时代表在整个运行中保留，之后的相册中与之相似的图片也是重复，
+ * 此时已经上传的代表不会因为之后出现更大的文件而替换。无法解码的文件总是上传。
+ */
+@Slf4j
+public class DuplicateDetector implements Closeable {
+
+    private final DedupPolicy policy;
+    private final DedupScope scope;
+    private final int maxDistance;
+    private final ExecutorService hashers;
+    private final HashIndex<File> runIndex = new HashIndex<>();
+    private final DedupReport report;
+
+    /**
+     * 一张重复的图片和与它相似的代表
+     */
+    public static class Duplicate {
+        private final File file;
+        private final File representative;
+        private final int distance;
+
+        Duplicate(File file, File representative, int distance) {
+            this.file = file;
+            this.representative = representative;
+            this.distance = distance;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public File getRepresentative() {
+            return representative;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * 一个相册的检测结果
+     */
+    public static class Selection {
+        private final List<File> upload;
+        private final List<Duplicate> duplicates;
+
+        Selection(List<File> upload, List<Duplicate> duplicates) {
+            this.upload = upload;
+            this.duplicates = duplicates;
+        }
+
+        /**
+         * @return 按策略需要上传的文件，保持传入时的顺序
+         */
+        public List<File> getUpload() {
+            return upload;
+        }
+
+        public List<Duplicate> getDuplicates() {
+            return duplicates;
+        }
+    }
+
+    /**
+     * @param maxDistance 汉明距离不超过这个值的两张图片视为相似（0到64）
+     * @param threads     计算哈希的线程数
+     */
+    public DuplicateDetector(DedupPolicy policy, DedupScope scope, int maxDistance, int threads) {
+        if (maxDistance < 0 || maxDistance > 64) {
+            throw new IllegalArgumentException("相似距离必须在0到64之间: " + maxDistance);
+        }
+        this.policy = policy;
+        this.scope = scope;
+        this.maxDistance = maxDistance;
+        this.report = new DedupReport(policy);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "dedup-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public DedupPolicy getPolicy() {
+        return policy;
+    }
+
+    public DedupReport getReport() {
+        return report;
+    }
+
+    /**
+     * 检测 files 中的相似图片，可以被多个相册的上传线程同时调用
+     *
+     * @param files 按上传顺序排列的文件
+     */
+    public Selection select(List<File> files) throws InterruptedException {
+        Long[] hashes = hashAll(files);
+
+        List<Integer> order = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            order.add(i);
+        }
+        if (policy == DedupPolicy.KEEP_LARGEST) {
+            long[] sizes = new long[files.size()];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = files.get(i).length();
+            }
+            // 稳定排序，大小相同时仍是最早的优先
+            order.sort(Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+        }
+
+        Duplicate[] duplicateOf = new Duplicate[files.size()];
+        HashIndex<File> index = scope == DedupScope.RUN ? runIndex : new HashIndex<>();
+        synchronized (index) {
+            for (int i : order) {
+                if (hashes[i] == null) {
+                    continue;
+                }
+                HashIndex.Match<File> match = index.nearest(hashes[i], maxDistance);
+                if (match == null) {
+                    index.add(hashes[i], files.get(i));
+                } else {
+                    duplicateOf[i] = new Duplicate(files.get(i), match.value, match.distance);
+                }
+            }
+        }
+
+        List<File> upload = new ArrayList<>(files.size());
+        List<Duplicate> duplicates = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Duplicate duplicate = duplicateOf[i];
+            if (duplicate == null) {
+                upload.add(files.get(i));
+                continue;
+            }
+            duplicates.add(duplicate);
+            report.recordDuplicate(duplicate.file.length());
+            log.debug("{} 与 {} 相似（距离 {}）", duplicate.file.getName(), duplicate.representative.getName(), duplicate.distance);
+            if (!policy.skipsDuplicates()) {
+                upload.add(files.get(i));
+            }
+        }
+        return new Selection(Collections.unmodifiableList(upload), Collections.unmodifiableList(duplicates));
+    }
+
+    /**
+     * 停止计算哈希的线程
+     */
+    @Override
+    public void close() {
+        hashers.shutdownNow();
+    }
+
+    /**
+     * @return 每个文件的哈希，无法解码的为null
+     */
+    private Long[] hashAll(List<File> files) throws InterruptedException {
+        List<Future<Long>> futures = new ArrayList<>(files.size());
+        for (File file : files) {
+            futures.add(hashers.submit(() -> hash(file)));
+        }
+        Long[] hashes = new Long[files.size()];
+        try {
+            for (int i = 0; i < hashes.length; i++) {
+                try {
+                    hashes[i] = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    log.warn("计算 {} 的哈希失败，按不重复处理: {}", files.get(i).getName(), e.getCause().toString());
+                }
+            }
+        } finally {
+            for (Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return hashes;
+    }
+
+    private Long hash(File file) {
+        long start = System.nanoTime();
+        try {
+            long hash = PerceptualHash.dHash(file);
+            report.recordHash(System.nanoTime() - start, true);
+            return hash;
+        } catch (IOException e) {
+            report.recordHash(System.nanoTime() - start, false);
+            log.debug("无法计算 {} 的哈希，按不重复处理: {}", file.getName(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.urcl.utils.uploader.dedup;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 按汉明距离查找最近哈希的BK树。
+ * 利用三角不等式，查询距离 d 以内的哈希时只需要进入与当前节点距离在 [k-d, k+d] 之间的子树，
+ * d 较小时每次查询只访问很少的节点。不是线程安全的
+ *
+ * @param <T> 与哈希关联的值
+ */
+class HashIndex<T> {
+
+    private static final int MAX_DISTANCE = 64;
+
+    private Node<T> root;
+    private int size;
+
+    private static class Node<T> {
+        private final long hash;
+        private final T value;
+        private final int order;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<T>[] children = new Node[MAX_DISTANCE + 1];
+
+        Node(long hash, T value, int order) {
+            this.hash = hash;
+            this.value = value;
+            this.order = order;
+        }
+    }
+
+    /**
+     * 查询结果：最近的值和它的距离
+     */
+    static class Match<T> {
+        final T value;
+        final int distance;
+
+        Match(T value, int distance) {
+            this.value = value;
+            this.distance = distance;
+        }
+    }
+
+    void add(long hash, T value) {
+        Node<T> added = new Node<>(hash, value, size++);
+        if (root == null) {
+            root = added;
+            return;
+        }
+        Node<T> node = root;
+        while (true) {
+            int distance = PerceptualHash.distance(hash, node.hash);
+            Node<T> child = node.children[distance];
+            if (child == null) {
+                node.children[distance] = added;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * @return 距离不超过 maxDistance 的最近的值，距离相同时返回先加入的；没有时返回null
+     */
+    Match<T> nearest(long hash, int maxDistance) {
+        if (root == null) {
+            return null;
+        }
+        Node<T> best = null;
+        int bestDistance = maxDistance + 1;
+        Deque<Node<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if (distance < bestDistance || (distance == bestDistance && best != null && node.order < best.order)) {
+                best = node;
+                bestDistance = distance;
+            }
+            int limit = Math.min(bestDistance, maxDistance);
+            for (int k = Math.max(0, distance - limit); k <= Math.min(MAX_DISTANCE, distance + limit); k++) {
+                if (node.children[k] != null) {
+                    pending.push(node.children[k]);
+                }
+            }
+        }
+        return best == null ? null : new Match<>(best.value, bestDistance);
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,101 @@
+package com.urcl.utils.uploader.dedup;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 64位差值哈希（dHash）：把图片缩小为 9x8 的灰度图，每行相邻两格比较亮度得到8位，共64位。
+ * <p>
+ * 只依赖解码后的像素，重新保存（不同的压缩质量或元数据）和在文件末尾追加字节（见 modifyMD5）都不会改变哈希，
+ * 两张图片哈希的汉明距离越小越相似。解码时按比例隔行隔列采样，只保留约 {@value #SAMPLE_WIDTH}x{@value #SAMPLE_HEIGHT}
+ * 个像素，内存占用与原图尺寸无关。
+ */
+public final class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    // [可配置] 采样后保留的最小尺寸，每格平均约 8x8 个像素，减少采样带来的噪声
+    static final int SAMPLE_WIDTH = GRID_WIDTH * 8;
+    static final int SAMPLE_HEIGHT = GRID_HEIGHT * 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * @return 图片的dHash
+     * @throws IOException 不是可以解码的图片（例如CMYK的JPEG）
+     */
+    public static long dHash(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                throw new IOException("无法读取文件: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("不支持的图片格式: " + file.getName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0) / SAMPLE_WIDTH, reader.getHeight(0) / SAMPLE_HEIGHT));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return dHash(reader.read(0, param));
+            } catch (RuntimeException e) {
+                // 部分解码器对不支持的颜色空间抛出运行时异常
+                throw new IOException("解码失败: " + file.getName() + ": " + e.getMessage(), e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] sums = new double[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = (int) ((long) y * GRID_HEIGHT / height) * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int cell = cellRow + (int) ((long) x * GRID_WIDTH / width);
+                sums[cell] += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                int cell = y * GRID_WIDTH + x;
+                hash <<= 1;
+                if (average(sums, counts, cell) < average(sums, counts, cell + 1)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return 两个哈希不同的位数，0到64
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static double average(double[] sums, int[] counts, int cell) {
+        // 小于 9x8 的图片有些格子没有像素
+        return counts[cell] == 0 ? 0 : sums[cell] / counts[cell];
+    }
+}
@@ -0,0 +1,151 @@
+package com.urcl.utils.uploader.limit;
+
+import com.urcl.utils.metrics.MetricHistory;
+import com.urcl.utils.metrics.MetricsRegistry;
+import com.urcl.utils.uploader.clients.RequestLatencyListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于延迟梯度的自适应并发限制器。
+ * <p>
+ * 每个接口分别维护一个长期平均延迟和一个短期平均延迟，梯度 = 长期延迟 / 短期延迟（限制在 [0.5, 1] 之间）。
+ * 每收到一个延迟样本，新的并发上限 = 当前上限 * 梯度 + sqrt(当前上限)：
+ * 延迟稳定时上限缓慢增长，延迟升高（服务端开始排队）时上限按比例收缩，请求失败时直接退避。
+ */
+public class AdaptiveConcurrencyLimiter implements RequestLatencyListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    // 上传类请求的延迟按每MiB折算，避免文件大小差异被误判为拥塞
+    private static final long BYTES_PER_UNIT = 1024 * 1024;
+    private static final long MIN_BYTES = 64 * 1024;
+
+    // 新上限与旧上限的平滑系数
+    private static final double SMOOTHING = 0.2;
+
+    // 请求失败时的退避系数
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String metricPrefix;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Map<String, EndpointLatency> endpoints = new ConcurrentHashMap<>();
+    private final MetricHistory limitHistory;
+
+    private double limit;
+    private int inFlight;
+    private int lastRecordedLimit;
+
+    public AdaptiveConcurrencyLimiter(String metricPrefix, int initialLimit, int minLimit, int maxLimit) {
+        this.metricPrefix = metricPrefix;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        this.limitHistory = metrics.history(metricPrefix + ".limit");
+        metrics.gauge(metricPrefix + ".limit", this::getLimit);
+        metrics.gauge(metricPrefix + ".inFlight", this::getInFlight);
+        recordLimit();
+    }
+
+    /**
+     * 获取一个并发许可，在途请求数达到上限时阻塞
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    @Override
+    public void onRequestComplete(String endpoint, long rttNanos, long bytes, boolean success) {
+        if (!success) {
+            synchronized (this) {
+                updateLimit(limit * BACKOFF_RATIO);
+            }
+            return;
+        }
+
+        double sample = bytes > 0 ? (double) rttNanos * BYTES_PER_UNIT / Math.max(bytes, MIN_BYTES) : rttNanos;
+        EndpointLatency latency = endpoints.computeIfAbsent(endpoint, this::registerEndpoint);
+        double gradient = latency.update(sample);
+
+        synchronized (this) {
+            // 在途请求远低于上限时说明是应用本身限制了吞吐，此时不再继续增长
+            if (gradient >= 1.0 && inFlight < limit / 2) {
+                return;
+            }
+            updateLimit(limit * gradient + Math.sqrt(limit));
+        }
+    }
+
+    public synchronized long getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized long getInFlight() {
+        return inFlight;
+    }
+
+    private void updateLimit(double newLimit) {
+        double smoothed = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.min(maxLimit, Math.max(minLimit, smoothed));
+        if ((int) limit != lastRecordedLimit) {
+            recordLimit();
+            log.debug("并发上限调整为 {} (在途 {})", (int) limit, inFlight);
+        }
+        notifyAll();
+    }
+
+    private void recordLimit() {
+        lastRecordedLimit = (int) limit;
+        limitHistory.record(lastRecordedLimit);
+    }
+
+    private EndpointLatency registerEndpoint(String endpoint) {
+        EndpointLatency latency = new EndpointLatency();
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge(metricPrefix + ".rtt." + endpoint + ".shortMicros", () -> (long) (latency.shortRtt / 1000));
+        metrics.gauge(metricPrefix + ".rtt." + endpoint + ".longMicros", () -> (long) (latency.longRtt / 1000));
+        return latency;
+    }
+
+    /**
+     * 单个接口的延迟统计
+     */
+    private static class EndpointLatency {
+
+        private static final double SHORT_ALPHA = 0.5;
+        private static final double LONG_ALPHA = 0.02;
+
+        private volatile double shortRtt;
+        private volatile double longRtt;
+
+        synchronized double update(double sample) {
+            if (longRtt == 0) {
+                shortRtt = sample;
+                longRtt = sample;
+                return 1.0;
+            }
+            shortRtt = shortRtt * (1 - SHORT_ALPHA) + sample * SHORT_ALPHA;
+            longRtt = longRtt * (1 - LONG_ALPHA) + sample * LONG_ALPHA;
+
+            // 长期延迟明显偏高时向短期延迟靠拢，以便更快地适应网络变好的情况
+            if (longRtt > shortRtt * 2) {
+                longRtt = longRtt * 0.95;
+            }
+            return Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+        }
+    }
+}
@@ -9,11 +9,18 @@ public class AlbumInfo {
     private final String albumId;
     private final String tid;
     private final File folder;
+    // 相册是否是之前的运行中已经创建好的（对账模式下按标题找到的）
+    private final boolean existing;
 
     public AlbumInfo(String albumId, String tid, File folder) {
+        this(albumId, tid, folder, false);
+    }
+
+    public AlbumInfo(String albumId, String tid, File folder, boolean existing) {
         this.albumId = albumId;
         this.tid = tid;
         this.folder = folder;
+        this.existing = existing;
     }
 
     public String getAlbumId() {
@@ -27,4 +34,8 @@ public class AlbumInfo {
     public File getFolder() {
         return folder;
     }
+
+    public boolean isExisting() {
+        return existing;
+    }
 }
@@ -0,0 +1,48 @@
+package com.urcl.utils.uploader.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+/**
+ * 对应相册列表接口的JSON响应
+ */
+public class ListAlbumResponse {
+
+    @SerializedName("list")
+    private List<Album> list;
+
+    @SerializedName("errno")
+    private int errno;
+
+    public List<Album> getList() {
+        return list;
+    }
+
+    public int getErrno() {
+        return errno;
+    }
+
+    public static class Album {
+        @SerializedName("album_id")
+        private String albumId;
+
+        @SerializedName("tid")
+        private String tid;
+
+        @SerializedName("title")
+        private String title;
+
+        public String getAlbumId() {
+            return albumId;
+        }
+
+        public String getTid() {
+            return tid;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+}
@@ -23,8 +23,22 @@ public class ListFileResponse {
         @SerializedName("tid")
         private String tid;
 
+        @SerializedName(value = "fsid", alternate = {"fs_id"})
+        private long fsid;
+
+        @SerializedName("md5")
+        private String md5;
+
         public String getTid() {
             return tid;
         }
+
+        public long getFsid() {
+            return fsid;
+        }
+
+        public String getMd5() {
+            return md5;
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.urcl.utils.uploader.model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 远程相册中已有文件的 fs_id 和 MD5 集合，用于重新运行时跳过已经上传过的文件
+ */
+public class RemoteAlbumContents {
+    private final Set<Long> fsids = new HashSet<>();
+    private final Set<String> md5s = new HashSet<>();
+
+    public void add(ListFileResponse.FileInfo fileInfo) {
+        if (fileInfo.getFsid() > 0) {
+            fsids.add(fileInfo.getFsid());
+        }
+        if (fileInfo.getMd5() != null && !fileInfo.getMd5().isEmpty()) {
+            md5s.add(fileInfo.getMd5().toLowerCase());
+        }
+    }
+
+    public boolean containsFsid(long fsid) {
+        return fsids.contains(fsid);
+    }
+
+    public boolean containsMd5(String md5) {
+        return md5s.contains(md5.toLowerCase());
+    }
+
+    public int size() {
+        return fsids.size();
+    }
+}
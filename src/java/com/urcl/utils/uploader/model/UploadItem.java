@@ -0,0 +1,76 @@
+package com.urcl.utils.uploader.model;
+
+import com.urcl.utils.uploader.clients.UploadSource;
+
+import java.io.File;
+
+/**
+ * 一个待上传的文件及其目标相册。
+ * 目标相册可以直接给出 album_id 和 tid，也可以只给出相册标题，由上传器按标题创建相册（同一标题只创建一次）。
+ */
+public class UploadItem {
+    private final UploadSource source;
+    private final File file;
+    private final String albumTitle;
+    private final String albumId;
+    private final String tid;
+
+    private UploadItem(UploadSource source, File file, String albumTitle, String albumId, String tid) {
+        this.source = source;
+        this.file = file;
+        this.albumTitle = albumTitle;
+        this.albumId = albumId;
+        this.tid = tid;
+    }
+
+    /**
+     * 上传到一个已存在的相册
+     */
+    public static UploadItem toAlbum(File file, String albumId, String tid) {
+        return new UploadItem(UploadSource.ofFile(file), file, null, albumId, tid);
+    }
+
+    /**
+     * 将内存中的数据上传到一个已存在的相册
+     */
+    public static UploadItem toAlbum(UploadSource source, String albumId, String tid) {
+        return new UploadItem(source, null, null, albumId, tid);
+    }
+
+    /**
+     * 上传到指定标题的新相册
+     */
+    public static UploadItem toNewAlbum(File file, String albumTitle) {
+        return new UploadItem(UploadSource.ofFile(file), file, albumTitle, null, null);
+    }
+
+    /**
+     * 将内存中的数据上传到指定标题的新相册
+     */
+    public static UploadItem toNewAlbum(UploadSource source, String albumTitle) {
+        return new UploadItem(source, null, albumTitle, null, null);
+    }
+
+    public UploadSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return 数据来源为磁盘文件时返回该文件，否则返回null
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public String getAlbumTitle() {
+        return albumTitle;
+    }
+
+    public String getAlbumId() {
+        return albumId;
+    }
+
+    public String getTid() {
+        return tid;
+    }
+}
@@ -0,0 +1,74 @@
+package com.urcl.utils.uploader.model;
+
+/**
+ * 单个文件的上传结果，包括 fs_id、各步骤耗时以及失败原因
+ */
+public class UploadResult {
+    private final UploadItem item;
+    private final String albumId;
+    private final long fsid;
+    private final boolean secondPass;
+    private final long precreateNanos;
+    private final long uploadNanos;
+    private final long createNanos;
+    private final Exception error;
+
+    public UploadResult(UploadItem item, String albumId, long fsid, boolean secondPass,
+                        long precreateNanos, long uploadNanos, long createNanos, Exception error) {
+        this.item = item;
+        this.albumId = albumId;
+        this.fsid = fsid;
+        this.secondPass = secondPass;
+        this.precreateNanos = precreateNanos;
+        this.uploadNanos = uploadNanos;
+        this.createNanos = createNanos;
+        this.error = error;
+    }
+
+    public static UploadResult failed(UploadItem item, String albumId, Exception error) {
+        return new UploadResult(item, albumId, 0, false, 0, 0, 0, error);
+    }
+
+    public UploadItem getItem() {
+        return item;
+    }
+
+    public String getAlbumId() {
+        return albumId;
+    }
+
+    public long getFsid() {
+        return fsid;
+    }
+
+    /**
+     * @return true 如果服务器已有该文件（秒传），没有上传文件内容
+     */
+    public boolean isSecondPass() {
+        return secondPass;
+    }
+
+    public long getPrecreateNanos() {
+        return precreateNanos;
+    }
+
+    public long getUploadNanos() {
+        return uploadNanos;
+    }
+
+    public long getCreateNanos() {
+        return createNanos;
+    }
+
+    public long getTotalNanos() {
+        return precreateNanos + uploadNanos + createNanos;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
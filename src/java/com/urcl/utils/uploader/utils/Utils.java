@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -16,18 +17,45 @@ public class Utils {
      * @return 32位的MD5字符串
      */
     public static String calculateMD5(File file) throws IOException, NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("MD5");
         try (InputStream is = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            int read;
-            while ((read = is.read(buffer)) > 0) {
-                md.update(buffer, 0, read);
-            }
+            return calculateMD5(is);
+        }
+    }
+
+    /**
+     * 读完输入流并计算MD5哈希值，不会关闭流
+     *
+     * @return 32位的MD5字符串
+     */
+    public static String calculateMD5(InputStream is) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) > 0) {
+            md.update(buffer, 0, read);
         }
-        byte[] digest = md.digest();
-        StringBuilder sb = new StringBuilder();
+        return toHex(md.digest());
+    }
+
+    /**
+     * 计算 buffer 中 position 到 limit 之间数据的MD5哈希值，直接内存和内存映射的 buffer 也不会被复制到堆上。
+     * 计算完成后 buffer 的 position 会移动到 limit。
+     *
+     * @return 32位的MD5字符串
+     */
+    public static String calculateMD5(ByteBuffer buffer) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        md.update(buffer);
+        return toHex(md.digest());
+    }
+
+    /**
+     * 将摘要转换为小写的十六进制字符串
+     */
+    public static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
         for (byte b : digest) {
-            sb.append(String.format("%02x", b));
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
         }
         return sb.toString();
     }
@@ -0,0 +1,275 @@
+package com.urcl.utils.watch;
+
+import com.urcl.utils.image.timechange.BatchModifyImageTime;
+import com.urcl.utils.image.timechange.ModificationOptions;
+import com.urcl.utils.uploader.BaiduPhotoUploader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听模式：用文件系统的 WatchService 监听根目录，新出现的子文件夹在写入稳定（一段时间内没有新的写入）后
+ * 立即交给固定大小的线程池处理，不需要等下一次整棵目录树的批量运行。
+ * <p>
+ * 只有调用 {@link #run()} 的线程读写监听状态；处理文件夹在线程池中进行，处理期间该文件夹不再被监听，
+ * 因此处理本身产生的写入和重命名（[Finished]）不会再次触发处理。每个文件夹在一次运行中只处理一次，
+ * 处理失败的文件夹会在下一次批量运行或以 processExisting 重新启动时再次处理。
+ * processExisting 为false时，启动时已经存在的文件夹在整个运行期间都不处理（包括丢失事件后重新扫描时）。
+ */
+@Slf4j
+public class FolderWatcher implements Closeable {
+
+    // [可配置] 检查文件夹是否已经稳定的最长间隔（毫秒）
+    static final long MAX_POLL_INTERVAL_MS = 1000;
+
+    private static final String FINISHED_PREFIX = "[Finished]";
+
+    /**
+     * 处理一个已经写入稳定的子文件夹
+     */
+    public interface FolderHandler {
+        void handle(File folder) throws Exception;
+    }
+
+    private final Path root;
+    private final WatchOptions options;
+    private final FolderHandler handler;
+    private final WatchService watchService;
+    private final ExecutorService workers;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    // 以下状态只由 run() 所在的线程访问
+    private WatchKey rootKey;
+    private final Map<WatchKey, Path> folderKeys = new HashMap<>();
+    // 等待写入稳定的文件夹 -> 最后一次看到写入的时间
+    private final Map<Path, Long> pending = new HashMap<>();
+    // 本次运行中已经提交处理的文件夹（无论成功与否），以及不处理的启动前已经存在的文件夹
+    private final Set<Path> done = new HashSet<>();
+
+    private volatile boolean closed;
+
+    public FolderWatcher(WatchOptions options, FolderHandler handler) throws IOException {
+        this.root = Paths.get(options.getRootPath()).toAbsolutePath();
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("提供的根路径不是一个文件夹! " + options.getRootPath());
+        }
+        this.options = options;
+        this.handler = handler;
+        this.watchService = root.getFileSystem().newWatchService();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, options.getWorkers()));
+    }
+
+    /**
+     * 每个文件夹先修改图片时间（modificationOptions 为 null 时跳过），再上传为一个相册
+     */
+    public static FolderHandler timeChangeThenUpload(File rootFolder, ModificationOptions modificationOptions,
+                                                     BaiduPhotoUploader uploader, String bdstoken, String cookie) {
+        return folder -> {
+            if (modificationOptions != null) {
+                BatchModifyImageTime.modifyFolder(folder, modificationOptions);
+            }
+            uploader.uploadFolder(rootFolder, folder, bdstoken, cookie);
+        };
+    }
+
+    /**
+     * 开始监听，直到 {@link #close()} 被调用或线程被中断。返回前等待正在处理的文件夹完成
+     */
+    public void run() throws IOException, InterruptedException {
+        try {
+            rootKey = root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            if (options.isProcessExisting()) {
+                scanRoot();
+            } else {
+                ignoreExisting();
+            }
+            log.info("开始监听 {}，子文件夹在 {} 秒内没有新的写入后开始处理（同时处理 {} 个）",
+                    root, options.getSettleMillis() / 1000.0, Math.max(1, options.getWorkers()));
+
+            long pollMillis = Math.max(1, Math.min(options.getSettleMillis(), MAX_POLL_INTERVAL_MS));
+            while (!closed) {
+                WatchKey key;
+                try {
+                    key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        handleKey(key);
+                        key = watchService.poll();
+                    }
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                submitSettled();
+            }
+        } finally {
+            closed = true;
+            try {
+                watchService.close();
+            } finally {
+                workers.shutdown();
+                try {
+                    workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } finally {
+                    terminated.countDown();
+                    log.info("已停止监听 {}", root);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止监听。不会中断正在处理的文件夹，{@link #run()} 在它们完成后返回
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    /**
+     * 等待 {@link #run()} 返回
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    private void handleKey(WatchKey key) {
+        Path dir = key == rootKey ? root : folderKeys.get(key);
+        if (dir == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 丢失了事件：根目录重新扫描一遍，子文件夹按有新的写入处理
+                if (dir == root) {
+                    scanRoot();
+                } else {
+                    pending.put(dir, System.currentTimeMillis());
+                }
+                continue;
+            }
+            if (dir != root) {
+                pending.put(dir, System.currentTimeMillis());
+                continue;
+            }
+            Path child = root.resolve((Path) event.context());
+            if (pending.containsKey(child)) {
+                pending.put(child, System.currentTimeMillis());
+            } else if (isCandidate(child)) {
+                track(child);
+            }
+        }
+        if (!key.reset()) {
+            if (key == rootKey) {
+                log.error("!!! 根目录 {} 已不可访问，停止监听。", root);
+                closed = true;
+            } else {
+                // 文件夹被删除或移走
+                folderKeys.remove(key);
+                pending.remove(dir);
+            }
+        }
+    }
+
+    private void scanRoot() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path child : stream) {
+                if (!pending.containsKey(child) && isCandidate(child)) {
+                    track(child);
+                }
+            }
+        } catch (IOException e) {
+            log.error("!!! 扫描根目录 {} 失败: {}", root, e.getMessage());
+        }
+    }
+
+    private void ignoreExisting() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path child : stream) {
+                done.add(child);
+            }
+        } catch (IOException e) {
+            log.error("!!! 扫描根目录 {} 失败: {}", root, e.getMessage());
+        }
+    }
+
+    private boolean isCandidate(Path child) {
+        String name = child.getFileName().toString();
+        return !name.startsWith(FINISHED_PREFIX) && !name.startsWith(".")
+                && !done.contains(child) && Files.isDirectory(child);
+    }
+
+    /**
+     * 开始监听文件夹中的写入。注册之前已经写入的文件由注册时间覆盖：之后同样要等待一个稳定期
+     */
+    private void track(Path folder) {
+        try {
+            WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            folderKeys.put(key, folder);
+            pending.put(folder, System.currentTimeMillis());
+            log.info("发现新的文件夹: {}，等待写入稳定...", folder.getFileName());
+        } catch (IOException e) {
+            log.error("!!! 无法监听文件夹 {}: {}", folder.getFileName(), e.getMessage());
+        }
+    }
+
+    private void submitSettled() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Long> entry = it.next();
+            if (now - entry.getValue() < options.getSettleMillis()) {
+                continue;
+            }
+            it.remove();
+            Path folder = entry.getKey();
+            untrack(folder);
+            if (!Files.isDirectory(folder)) {
+                continue;
+            }
+            done.add(folder);
+            log.info("文件夹 {} 已经写入稳定，开始处理。", folder.getFileName());
+            workers.execute(() -> {
+                try {
+                    handler.handle(folder.toFile());
+                    log.info("文件夹 {} 处理完毕。", folder.getFileName());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.error("!!! 处理文件夹 {} 的过程被中断。", folder.getFileName());
+                } catch (Exception e) {
+                    log.error("!!! 处理文件夹 {} 时出错:", folder.getFileName(), e);
+                }
+            });
+        }
+    }
+
+    private void untrack(Path folder) {
+        for (Iterator<Map.Entry<WatchKey, Path>> it = folderKeys.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<WatchKey, Path> entry = it.next();
+            if (entry.getValue().equals(folder)) {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.urcl.utils.watch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 监听模式的运行参数，未设置的字段使用默认值
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WatchOptions {
+
+    /**
+     * 监听的根目录，其下每个新出现的子文件夹单独处理
+     */
+    private String rootPath;
+
+    /**
+     * 子文件夹在这段时间（毫秒）内没有新的写入后才认为已经完整，开始处理
+     */
+    @Builder.Default
+    private long settleMillis = 30_000;
+
+    /**
+     * 同时处理的文件夹数
+     */
+    @Builder.Default
+    private int workers = 2;
+
+    /**
+     * 启动时是否把根目录下已经存在的、尚未完成的子文件夹也当作新文件夹处理
+     */
+    private boolean processExisting;
+
+}
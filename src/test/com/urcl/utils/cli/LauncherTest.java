@@ -0,0 +1,69 @@
+package com.urcl.utils.cli;
+
+import com.urcl.utils.image.timechange.ModificationOptions;
+import com.urcl.utils.image.timechange.SortType;
+import com.urcl.utils.uploader.UploadOptions;
+import com.urcl.utils.uploader.dedup.DedupPolicy;
+import com.urcl.utils.uploader.dedup.DedupScope;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LauncherTest {
+
+    @Test
+    public void parsesTimechangeOptions() {
+        CommandLine cmd = CommandLine.parse(new String[]{"timechange", "--root", "/photos", "--start", "2025-09-09 01:00",
+                "--sort=reverse", "--remove-metadata"}, new HashSet<>(Arrays.asList("remove-metadata", "modify-md5")));
+        ModificationOptions options = Launcher.toModificationOptions(cmd);
+
+        assertEquals("/photos", options.getFolderPath());
+        assertEquals(LocalDateTime.of(2025, 9, 9, 1, 0), options.getStartTime());
+        assertEquals(SortType.REVERSE, options.getSortType());
+        assertTrue(options.getRemoveMetadata());
+        assertFalse(options.getModifyMD5());
+    }
+
+    @Test
+    public void repeatedUploadHostsAreCollected() {
+        CommandLine cmd = CommandLine.parse(new String[]{"upload", "--upload-host", "https://a", "--upload-host", "https://b",
+                "--max-concurrency", "8", "--reconcile"}, Collections.singleton("reconcile"));
+        UploadOptions options = Launcher.toUploadOptions(cmd);
+
+        assertEquals(Arrays.asList("https://a", "https://b"), options.getUploadHosts());
+        assertEquals(8, options.getMaxConcurrency());
+        assertTrue(options.isReconcileExistingAlbums());
+        assertEquals(UploadOptions.builder().build().getAlbumLookahead(), options.getAlbumLookahead());
+        assertEquals(DedupPolicy.OFF, options.getDedupPolicy());
+    }
+
+    @Test
+    public void parsesDedupOptions() {
+        CommandLine cmd = CommandLine.parse(new String[]{"upload", "--dedup", "keep-largest", "--dedup-scope", "run",
+                "--dedup-distance", "6"}, Collections.emptySet());
+        UploadOptions options = Launcher.toUploadOptions(cmd);
+
+        assertEquals(DedupPolicy.KEEP_LARGEST, options.getDedupPolicy());
+        assertEquals(DedupScope.RUN, options.getDedupScope());
+        assertEquals(6, options.getDedupMaxDistance());
+    }
+
+    @Test
+    public void usageErrorsExitWithCodeTwo() {
+        PrintStream sink = new PrintStream(new ByteArrayOutputStream());
+
+        assertEquals(Launcher.EXIT_USAGE, Launcher.run(new String[]{"unknown"}, sink, sink));
+        assertEquals(Launcher.EXIT_USAGE, Launcher.run(new String[]{"timechange", "--root"}, sink, sink));
+        assertEquals(Launcher.EXIT_USAGE, Launcher.run(new String[]{"timechange", "--root", "/x", "--typo", "1"}, sink, sink));
+        assertEquals(Launcher.EXIT_OK, Launcher.run(new String[0], sink, sink));
+    }
+}
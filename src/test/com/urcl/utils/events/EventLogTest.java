@@ -0,0 +1,139 @@
+package com.urcl.utils.events;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void writesJsonLinesKeepingFailuresAndEveryNthSuccess() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("logs/events.jsonl");
+        try (EventLog events = EventLog.open(file, 64, 3, EventLog.DropPolicy.BLOCK)) {
+            for (int i = 0; i < 9; i++) {
+                events.record(Event.of("uploaded", "file", "a\"b\n" + i, "bytes", i, "fsid", null));
+            }
+            events.record(Event.failure("failed", "error", "超时"));
+        }
+
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lines.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        // 9个成功事件写出3个，失败事件和汇总记录各1个
+        assertEquals(5, lines.size());
+        JsonObject first = lines.get(0);
+        assertEquals("uploaded", first.get("type").getAsString());
+        assertEquals("a\"b\n0", first.get("file").getAsString());
+        assertEquals(0, first.get("bytes").getAsInt());
+        assertEquals(3, first.get("sample").getAsInt());
+        assertFalse(first.has("fsid"));
+        assertEquals(3, lines.get(1).get("bytes").getAsInt());
+
+        JsonObject failure = lines.get(3);
+        assertEquals("超时", failure.get("error").getAsString());
+        assertFalse(failure.has("sample"));
+
+        JsonObject summary = lines.get(4);
+        assertEquals("event-log", summary.get("type").getAsString());
+        assertEquals(4, summary.get("written").getAsInt());
+        assertEquals(0, summary.get("dropped").getAsInt());
+        assertEquals(6, summary.get("sampledOut").getAsInt());
+    }
+
+    @Test
+    public void dropPolicyNeverBlocksTheProducer() throws IOException, InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EventLog events = new EventLog(new BlockingWriter(writing, release), 4, 1, EventLog.DropPolicy.DROP);
+        events.record(Event.of("uploaded", "n", 0));
+        // 写出线程取走第一个事件后卡在写入上
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            events.record(Event.of("uploaded", "n", i));
+        }
+        // 缓冲区只能放下4个，其余的事件被丢弃
+        assertEquals(5, events.getDropped());
+        release.countDown();
+        events.close();
+        assertEquals(10, events.getWritten() + events.getDropped());
+    }
+
+    @Test
+    public void blockPolicyWritesEveryEvent() throws IOException {
+        StringWriter out = new StringWriter();
+        EventLog events = new EventLog(out, 2, 1, EventLog.DropPolicy.BLOCK);
+        for (int i = 0; i < 100; i++) {
+            events.record(Event.of("uploaded", "n", i));
+        }
+        events.close();
+        assertEquals(100, events.getWritten());
+        assertEquals(0, events.getDropped());
+        assertEquals(101, out.toString().split("\n").length);
+    }
+
+    @Test
+    public void disabledLogIgnoresEvents() throws IOException {
+        EventLog events = EventLog.disabled();
+        assertFalse(events.isEnabled());
+        events.record(Event.failure("failed"));
+        events.close();
+        assertEquals(0, events.getWritten());
+    }
+
+    /**
+     * 第一次写入时阻塞，模拟写出很慢的磁盘
+     */
+    private static class BlockingWriter extends Writer {
+        private final CountDownLatch writing;
+        private final CountDownLatch release;
+
+        BlockingWriter(CountDownLatch writing, CountDownLatch release) {
+            this.writing = writing;
+            this.release = release;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+            write(str.toCharArray(), 0, str.length());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.urcl.utils.image.metadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JpegMetadataStripperTest {
+
+    private static final byte[] SOI = {(byte) 0xFF, (byte) 0xD8};
+    private static final byte[] JFIF = segment(0xE0, "JFIF\0\1\1");
+    private static final byte[] EXIF = segment(0xE1, "Exif\0\0MM\0*camera-model");
+    private static final byte[] XMP = segment(0xE1, "http://ns.adobe.com/xap/1.0/\0<x:xmpmeta/>");
+    private static final byte[] ICC = segment(0xE2, "ICC_PROFILE\0\1\1profile");
+    private static final byte[] PHOTOSHOP = segment(0xED, "Photoshop 3.0\0");
+    private static final byte[] COMMENT = segment(0xFE, "a comment");
+    private static final byte[] DQT = segment(0xDB, "\0quantization-table");
+    // 扫描数据中包含 FF00 填充和 RST 标记，必须原样保留
+    private static final byte[] SCAN = concat(segment(0xDA, "\1\1\0\0?\0"),
+            new byte[]{1, 2, (byte) 0xFF, 0, 3, (byte) 0xFF, (byte) 0xD0, 4, (byte) 0xFF, (byte) 0xD9});
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void dropsExifAndXmpOnly() throws IOException {
+        byte[] input = concat(SOI, JFIF, EXIF, XMP, ICC, PHOTOSHOP, COMMENT, DQT, SCAN);
+
+        assertArrayEquals(concat(SOI, JFIF, ICC, PHOTOSHOP, COMMENT, DQT, SCAN), filter(new JpegMetadataStripper(false), input));
+    }
+
+    @Test
+    public void optionallyDropsOtherAppSegmentsAndComments() throws IOException {
+        byte[] input = concat(SOI, JFIF, EXIF, XMP, ICC, PHOTOSHOP, COMMENT, DQT, SCAN);
+
+        assertArrayEquals(concat(SOI, JFIF, ICC, DQT, SCAN), filter(new JpegMetadataStripper(true), input));
+    }
+
+    @Test
+    public void stripReplacesFileAndSkipsOtherFormats() throws IOException {
+        Path jpeg = temp.newFile("a.jpg").toPath();
+        Files.write(jpeg, concat(SOI, EXIF, DQT, SCAN));
+        Path png = temp.newFile("b.png").toPath();
+        byte[] pngBytes = {(byte) 0x89, 'P', 'N', 'G'};
+        Files.write(png, pngBytes);
+
+        JpegMetadataStripper stripper = new JpegMetadataStripper(false);
+        assertTrue(stripper.strip(jpeg));
+        assertFalse(stripper.strip(png));
+
+        assertArrayEquals(concat(SOI, DQT, SCAN), Files.readAllBytes(jpeg));
+        assertArrayEquals(pngBytes, Files.readAllBytes(png));
+        // 临时文件已被移走或删除
+        assertEquals(2, temp.getRoot().list().length);
+    }
+
+    @Test
+    public void neutralizeRetagsMetadataInPlaceWithoutChangingLength() throws IOException {
+        Path jpeg = temp.newFile("a.jpg").toPath();
+        Files.write(jpeg, concat(SOI, JFIF, EXIF, XMP, ICC, COMMENT, DQT, SCAN));
+
+        // 两个段的内容各自写为0，另外各改写1个字节的标记
+        assertEquals(EXIF.length - 4 + 1 + XMP.length - 4 + 1, new JpegMetadataStripper(false).neutralize(jpeg));
+
+        assertArrayEquals(concat(SOI, JFIF, neutralized(EXIF), neutralized(XMP), ICC, COMMENT, DQT, SCAN), Files.readAllBytes(jpeg));
+        // 中和后的文件再经过过滤，只是多了几个注释段
+        assertArrayEquals(concat(SOI, JFIF, ICC, DQT, SCAN), filter(new JpegMetadataStripper(true), Files.readAllBytes(jpeg)));
+    }
+
+    @Test
+    public void neutralizeSkipsOtherFormats() throws IOException {
+        Path png = temp.newFile("b.png").toPath();
+        byte[] pngBytes = {(byte) 0x89, 'P', 'N', 'G'};
+        Files.write(png, pngBytes);
+
+        assertEquals(-1, new JpegMetadataStripper(true).neutralize(png));
+        assertArrayEquals(pngBytes, Files.readAllBytes(png));
+    }
+
+    /**
+     * 标记改为 COM，长度不变，内容全为0
+     */
+    private static byte[] neutralized(byte[] segment) {
+        byte[] result = new byte[segment.length];
+        System.arraycopy(segment, 0, result, 0, 4);
+        result[1] = (byte) 0xFE;
+        return result;
+    }
+
+    private static byte[] filter(JpegMetadataStripper stripper, byte[] input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stripper.filter(new ByteArrayInputStream(input), out);
+        return out.toByteArray();
+    }
+
+    private static byte[] segment(int marker, String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.ISO_8859_1);
+        int length = data.length + 2;
+        return concat(new byte[]{(byte) 0xFF, (byte) marker, (byte) (length >> 8), (byte) length}, data);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,150 @@
+package com.urcl.utils.image.metadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetadataStrippersTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    // GIF89a，2x2，全局颜色表2个颜色
+    private static final byte[] GIF_HEADER = concat("GIF89a".getBytes(StandardCharsets.ISO_8859_1),
+            new byte[]{2, 0, 2, 0, (byte) 0x80, 0, 0}, new byte[]{0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+    private static final byte[] LOOP = concat(new byte[]{0x21, (byte) 0xFF, 11}, ascii("NETSCAPE2.0"), new byte[]{3, 1, 0, 0, 0});
+    private static final byte[] XMP = concat(new byte[]{0x21, (byte) 0xFF, 11}, ascii("XMP DataXMP"), new byte[]{4}, ascii("<x:x"), new byte[]{0});
+    private static final byte[] COMMENT = concat(new byte[]{0x21, (byte) 0xFE, 5}, ascii("hello"), new byte[]{0});
+    private static final byte[] GRAPHIC_CONTROL = {0x21, (byte) 0xF9, 4, 0, 10, 0, 0, 0};
+    private static final byte[] IMAGE = {0x2C, 0, 0, 0, 0, 2, 0, 2, 0, 0, 2, 2, 0x44, 0x01, 0};
+    private static final byte[] TRAILER = {0x3B};
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void pngDropsTextAndExifChunksAndKeepsImageData() throws IOException {
+        byte[] ihdr = chunk("IHDR", new byte[13]);
+        byte[] text = chunk("tEXt", ascii("Author\0someone"));
+        byte[] itxt = chunk("iTXt", ascii("XML:com.adobe.xmp\0\0\0\0\0<x:xmpmeta/>"));
+        byte[] exif = chunk("eXIf", ascii("MM\0*"));
+        byte[] time = chunk("tIME", new byte[7]);
+        byte[] gama = chunk("gAMA", new byte[4]);
+        byte[] idat = chunk("IDAT", new byte[100_000]);
+        byte[] iend = chunk("IEND", new byte[0]);
+        byte[] input = concat(PNG_SIGNATURE, ihdr, text, gama, itxt, exif, time, idat, idat, iend, new byte[]{42});
+
+        assertArrayEquals(concat(PNG_SIGNATURE, ihdr, gama, time, idat, idat, iend, new byte[]{42}),
+                filter(new PngMetadataStripper(false), input));
+        assertArrayEquals(concat(PNG_SIGNATURE, ihdr, gama, idat, idat, iend, new byte[]{42}),
+                filter(new PngMetadataStripper(true), input));
+    }
+
+    @Test
+    public void gifDropsCommentsAndApplicationExtensionsButKeepsLooping() throws IOException {
+        byte[] input = concat(GIF_HEADER, LOOP, XMP, COMMENT, GRAPHIC_CONTROL, IMAGE, COMMENT, TRAILER, new byte[]{42});
+
+        assertArrayEquals(concat(GIF_HEADER, LOOP, GRAPHIC_CONTROL, IMAGE, TRAILER, new byte[]{42}),
+                filter(new GifMetadataStripper(), input));
+    }
+
+    @Test
+    public void formatIsSniffedFromContentNotExtension() throws IOException {
+        // 扩展名是jpg，内容是带有文本块的PNG
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(3, 5, 0x123456);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", encoded);
+        byte[] png = encoded.toByteArray();
+        byte[] text = chunk("tEXt", ascii("Comment\0secret"));
+        // 签名和IHDR之后插入文本块
+        int afterIhdr = PNG_SIGNATURE.length + 8 + 13 + 4;
+        Path misnamed = temp.getRoot().toPath().resolve("photo.jpg");
+        Files.write(misnamed, concat(slice(png, 0, afterIhdr), text, slice(png, afterIhdr, png.length)));
+        Path unknown = temp.getRoot().toPath().resolve("notes.gif");
+        byte[] notes = ascii("not an image");
+        Files.write(unknown, notes);
+
+        MetadataStrippers strippers = new MetadataStrippers(false);
+        assertTrue(strippers.detect(misnamed) instanceof PngMetadataStripper);
+        assertNull(strippers.detect(unknown));
+
+        assertTrue(strippers.strip(misnamed, new byte[]{7}, null));
+        assertFalse(strippers.strip(unknown, new byte[]{7}, null));
+
+        byte[] stripped = Files.readAllBytes(misnamed);
+        assertArrayEquals(concat(png, new byte[]{7}), stripped);
+        assertEquals(0x123456, ImageIO.read(misnamed.toFile()).getRGB(3, 5) & 0xFFFFFF);
+        assertArrayEquals(notes, Files.readAllBytes(unknown));
+        assertEquals(2, temp.getRoot().list().length);
+    }
+
+    @Test
+    public void failedRewriteKeepsTheOriginalAndRemovesTheTempFile() throws IOException {
+        // 块头声明了100个字节的数据，实际只有10个
+        byte[] truncated = concat(PNG_SIGNATURE, intBytes(100), ascii("IDAT"), new byte[10]);
+        Path file = temp.getRoot().toPath().resolve("broken.png");
+        Files.write(file, truncated);
+
+        try {
+            new MetadataStrippers(false).strip(file, new byte[]{7}, null);
+            fail("截断的PNG应当失败");
+        } catch (IOException expected) {
+            // 预期的异常
+        }
+        assertArrayEquals(truncated, Files.readAllBytes(file));
+        assertEquals(1, temp.getRoot().list().length);
+    }
+
+    private static byte[] filter(MetadataStripper stripper, byte[] input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stripper.filter(new ByteArrayInputStream(input), out);
+        return out.toByteArray();
+    }
+
+    private static byte[] chunk(String type, byte[] data) {
+        byte[] typeBytes = ascii(type);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        return concat(intBytes(data.length), typeBytes, data, intBytes((int) crc.getValue()));
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] slice(byte[] data, int from, int to) {
+        byte[] result = new byte[to - from];
+        System.arraycopy(data, from, result, 0, result.length);
+        return result;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,156 @@
+package com.urcl.utils.image.timechange;
+
+import ch.qos.logback.classic.Level;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * BatchModifyImageTime 的端到端基准测试，不随 mvn test 运行（类名不以 Test 结尾），需要单独执行：
+ * <pre>
+ *   mvn test -Dtest=BatchModifyImageTimeBenchmark -Dbenchmark.folders=14 -Dbenchmark.files=500 -Dbenchmark.imageKb=256
+ * </pre>
+ * 每种选项组合都在临时目录中重新生成同样的目录树后运行一次 modifyCreationTime，输出文件数/秒、MB/秒、峰值堆内存，
+ * 以及 Linux 下 /proc/self/io 中的读写系统调用次数和字节数（其他系统上这几列为 -）。
+ * 只设置时间、追加字节、重写内容几种组合的系统调用差异即对应了各个阶段的开销。
+ */
+public class BatchModifyImageTimeBenchmark {
+
+    private static final Path PROC_IO = Paths.get("/proc/self/io");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void run() throws IOException {
+        int folders = Integer.getInteger("benchmark.folders", NameType.values().length);
+        int files = Integer.getInteger("benchmark.files", 100);
+        int imageKb = Integer.getInteger("benchmark.imageKb", 64);
+        double metadataRatio = Double.parseDouble(System.getProperty("benchmark.metadataRatio", "0.5"));
+        int parallelism = Integer.getInteger("benchmark.parallelism", Math.max(2, Runtime.getRuntime().availableProcessors()));
+        SyntheticImageTree tree = new SyntheticImageTree().folders(folders).filesPerFolder(files)
+                .imageBytes(imageKb * 1024).metadataRatio(metadataRatio);
+
+        // 每个文件一行的INFO日志会主导耗时
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.urcl.utils.image");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.WARN);
+        try {
+            System.out.printf("%n目录树: %d 个文件夹 x %d 个文件, 每个约 %d KB, %.0f%% 带元数据, 并行度 %d%n",
+                    folders, files, imageKb, metadataRatio * 100, parallelism);
+            System.out.printf("%-44s %8s %10s %8s %10s %10s %10s %10s %10s%n",
+                    "选项", "秒", "文件/秒", "MB/秒", "峰值堆MB", "读调用", "写调用", "读MB", "写MB");
+            int run = 0;
+            for (String mode : new String[]{"serial", "parallel", "streaming"}) {
+                // null 表示不移除元数据
+                for (MetadataMode metadataMode : new MetadataMode[]{null, MetadataMode.STRIP, MetadataMode.NEUTRALIZE}) {
+                    for (boolean modifyMd5 : new boolean[]{false, true}) {
+                        ModificationOptions options = ModificationOptions.builder()
+                                .startTime(LocalDateTime.of(2025, 9, 9, 1, 0))
+                                .sortType(SortType.SEQUENTIAL)
+                                .removeMetadata(metadataMode != null)
+                                .metadataMode(metadataMode)
+                                .modifyMD5(modifyMd5)
+                                .folderParallelism("serial".equals(mode) ? 1 : parallelism)
+                                .fileParallelism("serial".equals(mode) ? 1 : parallelism)
+                                .streaming("streaming".equals(mode))
+                                .build();
+                        String label = String.format("%s%s%s", mode,
+                                metadataMode == null ? "" : " +" + metadataMode.name().toLowerCase(), modifyMd5 ? " +modify-md5" : "");
+                        measure(label, tree, temp.newFolder("run" + run++), options);
+                    }
+                }
+            }
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+
+    private void measure(String label, SyntheticImageTree tree, File root, ModificationOptions options) throws IOException {
+        Map<String, List<String>> expected = tree.generate(root);
+        options.setFolderPath(root.getPath());
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = heapPools();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        Map<String, Long> ioBefore = readProcIo();
+        long start = System.nanoTime();
+
+        BatchModifyImageTime.modifyCreationTime(options);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Map<String, Long> ioAfter = readProcIo();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        // 所有文件都按顺序设置了时间
+        long startMillis = options.getStartTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+        for (Map.Entry<String, List<String>> folder : expected.entrySet()) {
+            List<String> names = folder.getValue();
+            for (int seq = 0; seq < names.size(); seq++) {
+                assertEquals(startMillis + seq * 60_000L, new File(new File(root, folder.getKey()), names.get(seq)).lastModified());
+            }
+        }
+
+        double mb = tree.totalBytes() / (1024.0 * 1024.0);
+        System.out.printf("%-44s %8.2f %10.0f %8.1f %10.1f %10s %10s %10s %10s%n", label, seconds, tree.totalFiles() / seconds,
+                mb / seconds, peakHeap / (1024.0 * 1024.0),
+                delta(ioBefore, ioAfter, "syscr", 1), delta(ioBefore, ioAfter, "syscw", 1),
+                delta(ioBefore, ioAfter, "rchar", 1024 * 1024), delta(ioBefore, ioAfter, "wchar", 1024 * 1024));
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        pools.removeIf(pool -> pool.getType() != MemoryType.HEAP);
+        return pools;
+    }
+
+    /**
+     * @return /proc/self/io 中的计数，不是 Linux 时返回空表
+     */
+    private static Map<String, Long> readProcIo() {
+        Map<String, Long> counters = new HashMap<>();
+        if (!Files.isReadable(PROC_IO)) {
+            return counters;
+        }
+        try {
+            for (String line : Files.readAllLines(PROC_IO, StandardCharsets.US_ASCII)) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    counters.put(line.substring(0, colon), Long.parseLong(line.substring(colon + 1).trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            counters.clear();
+        }
+        return counters;
+    }
+
+    private static String delta(Map<String, Long> before, Map<String, Long> after, String key, long unit) {
+        if (!before.containsKey(key) || !after.containsKey(key)) {
+            return "-";
+        }
+        long value = after.get(key) - before.get(key);
+        return unit == 1 ? String.valueOf(value) : String.format("%.1f", value / (double) unit);
+    }
+}
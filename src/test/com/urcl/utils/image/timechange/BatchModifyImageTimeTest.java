@@ -1,12 +1,22 @@
 package com.urcl.utils.image.timechange;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
-public class BatchModifyImageTimeTest {
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
-    private static final String ROOT_FOLDER_PATH = "D:\\Edge下载\\collection\\HalfLove";
+public class BatchModifyImageTimeTest {
 
     private static final LocalDateTime START_TIME = LocalDateTime.of(2025, 9, 9, 1, 0, 0);
 
@@ -16,15 +26,208 @@ public class BatchModifyImageTimeTest {
 
     private static final Boolean MODIFY_MD5 = Boolean.FALSE;
 
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     @Test
-    public void run() {
+    public void run() throws IOException {
+        File root = temp.newFolder("synthetic");
+        Map<String, List<String>> expected = new SyntheticImageTree().filesPerFolder(12).imageBytes(2048).generate(root);
         ModificationOptions options = ModificationOptions.builder()
-                .folderPath(ROOT_FOLDER_PATH)
+                .folderPath(root.getPath())
                 .startTime(START_TIME)
                 .sortType(SORT_TYPE)
                 .removeMetadata(REMOVE_META_DATA)
                 .modifyMD5(MODIFY_MD5)
                 .build();
         BatchModifyImageTime.modifyCreationTime(options);
+
+        // 每种命名方式的文件夹都按序号倒序，每个文件间隔一分钟
+        long start = START_TIME.toInstant(ZoneOffset.UTC).toEpochMilli();
+        Map<String, Long> times = lastModifiedTimes(root);
+        for (Map.Entry<String, List<String>> folder : expected.entrySet()) {
+            List<String> names = folder.getValue();
+            for (int seq = 0; seq < names.size(); seq++) {
+                long expectedTime = start + (names.size() - 1 - seq) * 60_000L;
+                assertEquals(folder.getKey() + "/" + names.get(seq), expectedTime, (long) times.get(folder.getKey() + "/" + names.get(seq)));
+            }
+        }
+    }
+
+    @Test
+    public void parallelRunMatchesSerialRun() throws IOException {
+        File serialRoot = createRoot("serial");
+        File parallelRoot = createRoot("parallel");
+
+        BatchModifyImageTime.modifyCreationTime(options(serialRoot, 1, 1));
+        BatchModifyImageTime.modifyCreationTime(options(parallelRoot, 3, 4));
+
+        Map<String, Long> serial = lastModifiedTimes(serialRoot);
+        assertEquals(3 * 25, serial.size());
+        assertEquals(serial, lastModifiedTimes(parallelRoot));
+    }
+
+    @Test
+    public void streamingRunMatchesSerialRun() throws IOException {
+        File serialRoot = createRoot("serial");
+        File streamingRoot = createRoot("streaming");
+        ModificationOptions streaming = options(streamingRoot, 2, 3);
+        streaming.setStreaming(true);
+        streaming.setStreamingMemoryMb(1);
+
+        BatchModifyImageTime.modifyCreationTime(options(serialRoot, 1, 1));
+        BatchModifyImageTime.modifyCreationTime(streaming);
+
+        assertEquals(lastModifiedTimes(serialRoot), lastModifiedTimes(streamingRoot));
+    }
+
+    @Test
+    public void streamingRunRecordsFileStatesOnlyInIncrementalMode() throws IOException {
+        File root = createRoot("streaming-states");
+        ModificationOptions options = options(root, 1, 2);
+        options.setStreaming(true);
+
+        ModificationReport plain = BatchModifyImageTime.modifyCreationTime(options);
+        assertEquals(75, plain.getCount(ModificationReport.FileOutcome.MODIFIED));
+        assertFalse(new File(root, ModificationManifest.MANIFEST_FILE_NAME).exists());
+
+        options.setIncremental(true);
+        BatchModifyImageTime.modifyCreationTime(options);
+        ModificationReport again = BatchModifyImageTime.modifyCreationTime(options);
+        assertEquals(75, again.getCount(ModificationReport.FileOutcome.UNCHANGED));
+    }
+
+    @Test
+    public void incrementalRunOnlyTouchesNewAndShiftedFiles() throws IOException {
+        File root = createRoot("incremental");
+        ModificationOptions options = options(root, 1, 1);
+        options.setModifyMD5(true);
+        options.setIncremental(true);
+
+        BatchModifyImageTime.modifyCreationTime(options);
+        ModificationReport unchanged = BatchModifyImageTime.modifyCreationTime(options);
+        assertEquals(3, unchanged.getFolderCount(ModificationReport.FolderStatus.UNCHANGED));
+        assertEquals(75, unchanged.getCount(ModificationReport.FileOutcome.UNCHANGED));
+        File album = new File(root, "album0");
+        // 第二次运行没有再追加字节
+        assertEquals(2, new File(album, "7.jpg").length());
+
+        Map<String, Long> before = lastModifiedTimes(root);
+        Files.write(new File(album, "26.jpg").toPath(), new byte[]{26});
+        ModificationReport report = BatchModifyImageTime.modifyCreationTime(options);
+        Map<String, Long> after = lastModifiedTimes(root);
+        assertEquals(1, report.getFolder("album0").getCount(ModificationReport.FileOutcome.MODIFIED));
+        assertEquals(25, report.getFolder("album0").getCount(ModificationReport.FileOutcome.TIMES_ONLY));
+        assertEquals(ModificationReport.FolderStatus.UNCHANGED, report.getFolder("album1").getStatus());
+
+        assertEquals(2, new File(album, "26.jpg").length());
+        assertEquals(2, new File(album, "7.jpg").length());
+        assertEquals(START_TIME.toInstant(ZoneOffset.UTC).toEpochMilli(), (long) after.get("album0/26.jpg"));
+        // 倒序时新文件占据序号0，其余文件的时间都顺延一分钟，但内容不再修改
+        assertEquals(before.get("album0/7.jpg") + 60_000, (long) after.get("album0/7.jpg"));
+        assertEquals(before.get("album1/7.jpg"), after.get("album1/7.jpg"));
+    }
+
+    @Test
+    public void changingOnlyTheStartTimeResetsTimesWithoutRewritingFiles() throws IOException {
+        File root = createRoot("start-time");
+        ModificationOptions options = options(root, 1, 1);
+        options.setModifyMD5(true);
+        options.setIncremental(true);
+        BatchModifyImageTime.modifyCreationTime(options);
+        Map<String, Long> before = lastModifiedTimes(root);
+
+        options.setStartTime(START_TIME.plusDays(1));
+        ModificationReport report = BatchModifyImageTime.modifyCreationTime(options);
+
+        assertEquals(75, report.getCount(ModificationReport.FileOutcome.TIMES_ONLY));
+        assertEquals(0, report.getCount(ModificationReport.FileOutcome.MODIFIED));
+        // 没有再追加修改MD5的字节
+        assertEquals(2, new File(root, "album0/7.jpg").length());
+        assertEquals(before.get("album0/7.jpg") + 86_400_000L, (long) lastModifiedTimes(root).get("album0/7.jpg"));
+
+        // 新的起始时间已经记录到清单中
+        ModificationReport again = BatchModifyImageTime.modifyCreationTime(options);
+        assertEquals(3, again.getFolderCount(ModificationReport.FolderStatus.UNCHANGED));
+    }
+
+    @Test
+    public void reportCountsOutcomesBytesAndPhases() throws IOException {
+        File root = temp.newFolder("report");
+        Map<String, List<String>> expected = new SyntheticImageTree().folders(2).filesPerFolder(10).imageBytes(4096)
+                .metadataRatio(1).generate(root);
+        Files.createDirectory(new File(root, "empty").toPath());
+        File unrecognized = new File(root, "unrecognized");
+        Files.createDirectory(unrecognized.toPath());
+        Files.write(new File(unrecognized, "cover.jpg").toPath(), new byte[]{1});
+        long before = totalLength(root);
+
+        ModificationOptions options = options(root, 2, 2);
+        options.setRemoveMetadata(true);
+        options.setModifyMD5(true);
+        ModificationReport report = BatchModifyImageTime.modifyCreationTime(options);
+
+        assertEquals(2, report.getFolderCount(ModificationReport.FolderStatus.PROCESSED));
+        assertEquals(ModificationReport.FolderStatus.EMPTY, report.getFolder("empty").getStatus());
+        assertEquals(ModificationReport.FolderStatus.UNRECOGNIZED, report.getFolder("unrecognized").getStatus());
+        assertEquals(20, report.getCount(ModificationReport.FileOutcome.MODIFIED));
+        assertEquals(0, report.getCount(ModificationReport.FileOutcome.FAILED));
+        assertFalse(report.hasFailures());
+        // 读取了全部原始内容（无法识别的文件没有读取），写出的是移除元数据并追加了1个字节后的内容
+        assertEquals(before - 1, report.getBytesRead());
+        assertEquals(totalLength(root) - 1, report.getBytesWritten());
+
+        // 空文件夹在扫描时就跳过，无法识别的文件夹在分类之后才跳过
+        assertEquals(3, report.getPhase(ModificationReport.Phase.SCAN).getCount());
+        assertEquals(3, report.getPhase(ModificationReport.Phase.CLASSIFY).getCount());
+        assertEquals(20, report.getPhase(ModificationReport.Phase.STRIP_METADATA).getCount());
+        assertEquals(20, report.getPhase(ModificationReport.Phase.SET_TIMES).getCount());
+        // 随机字节与移除元数据后的内容一起写出，没有单独追加
+        assertEquals(0, report.getPhase(ModificationReport.Phase.MODIFY_MD5).getCount());
+        assertEquals(expected.size(), report.getFolders().size() - 2);
+    }
+
+    private static long totalLength(File root) {
+        long total = 0;
+        for (File folder : root.listFiles(File::isDirectory)) {
+            for (File file : folder.listFiles()) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    private ModificationOptions options(File root, int folderParallelism, int fileParallelism) {
+        return ModificationOptions.builder()
+                .folderPath(root.getPath())
+                .startTime(START_TIME)
+                .sortType(SORT_TYPE)
+                .removeMetadata(false)
+                .modifyMD5(false)
+                .folderParallelism(folderParallelism)
+                .fileParallelism(fileParallelism)
+                .build();
+    }
+
+    private File createRoot(String name) throws IOException {
+        File root = temp.newFolder(name);
+        for (int f = 0; f < 3; f++) {
+            File folder = new File(root, "album" + f);
+            Files.createDirectory(folder.toPath());
+            for (int i = 1; i <= 25; i++) {
+                Files.write(new File(folder, i + ".jpg").toPath(), new byte[]{(byte) i});
+            }
+        }
+        return root;
+    }
+
+    private static Map<String, Long> lastModifiedTimes(File root) {
+        Map<String, Long> times = new TreeMap<>();
+        for (File folder : root.listFiles(File::isDirectory)) {
+            for (File file : folder.listFiles()) {
+                times.put(folder.getName() + "/" + file.getName(), file.lastModified());
+            }
+        }
+        return times;
     }
 }
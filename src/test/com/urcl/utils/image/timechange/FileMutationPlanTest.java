@@ -0,0 +1,91 @@
+package com.urcl.utils.image.timechange;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FileMutationPlanTest {
+
+    private static final LocalDateTime START_TIME = LocalDateTime.of(2025, 9, 9, 1, 0, 0);
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void stripsAppendsAndSetsTimeInOnePlan() throws IOException {
+        byte[] exif = segment(0xE1, "Exif\0\0MM\0*");
+        byte[] dqt = segment(0xDB, "\0table");
+        byte[] scan = {(byte) 0xFF, (byte) 0xDA, 0, 2, 7, 7, (byte) 0xFF, (byte) 0xD9};
+        File file = temp.newFile("1.jpg");
+        Files.write(file.toPath(), concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, exif, dqt, scan));
+
+        ModificationOptions options = ModificationOptions.builder()
+                .startTime(START_TIME)
+                .removeMetadata(true)
+                .modifyMD5(true)
+                .build();
+        FileMutationPlan.of(options, 3).apply(file);
+
+        byte[] expected = concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, dqt, scan);
+        byte[] actual = Files.readAllBytes(file.toPath());
+        // 去掉EXIF段之后追加了一个随机字节
+        assertEquals(expected.length + 1, actual.length);
+        assertArrayEquals(expected, Arrays.copyOf(actual, expected.length));
+        assertEquals(START_TIME.plusMinutes(3).toInstant(ZoneOffset.UTC).toEpochMilli(), file.lastModified());
+    }
+
+    @Test
+    public void neutralizeModeKeepsLengthAndAppendsMd5Byte() throws IOException {
+        byte[] exif = segment(0xE1, "Exif\0\0MM\0*");
+        byte[] scan = {(byte) 0xFF, (byte) 0xDA, 0, 2, 7, 7, (byte) 0xFF, (byte) 0xD9};
+        byte[] original = concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, exif, scan);
+        File file = temp.newFile("2.jpg");
+        Files.write(file.toPath(), original);
+
+        ModificationOptions options = ModificationOptions.builder()
+                .startTime(START_TIME)
+                .removeMetadata(true)
+                .metadataMode(MetadataMode.NEUTRALIZE)
+                .modifyMD5(true)
+                .build();
+        FileMutationPlan.of(options, 0).apply(file);
+
+        byte[] actual = Files.readAllBytes(file.toPath());
+        assertEquals(original.length + 1, actual.length);
+        assertEquals((byte) 0xFE, actual[3]);
+        assertArrayEquals(new byte[exif.length - 4], Arrays.copyOfRange(actual, 6, 2 + exif.length));
+        assertArrayEquals(scan, Arrays.copyOfRange(actual, 2 + exif.length, original.length));
+        assertEquals(START_TIME.toInstant(ZoneOffset.UTC).toEpochMilli(), file.lastModified());
+    }
+
+    private static byte[] segment(int marker, String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.ISO_8859_1);
+        int length = data.length + 2;
+        return concat(new byte[]{(byte) 0xFF, (byte) marker, (byte) (length >> 8), (byte) length}, data);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int total = 0;
+        for (byte[] part : parts) {
+            total += part.length;
+        }
+        byte[] result = new byte[total];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.urcl.utils.image.timechange;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileNameClassifierTest {
+
+    @Test
+    public void classifiesEachNamingConvention() {
+        assertEquals(NameType.PREFIX_YYYYMM_SEQ, FileNameClassifier.classify("IMG202508_12.jpg"));
+        assertEquals(NameType.TIMESTAMP_14, FileNameClassifier.classify("20250725154901.jpg"));
+        assertEquals(NameType.DATE_STRING_SEQ, FileNameClassifier.classify("20250731_abc_0001.jpg"));
+        assertEquals(NameType.PREFIX_IN_PARENTHESES, FileNameClassifier.classify("1-1 (10).jpg"));
+        assertEquals(NameType.POST_PARENTHESES, FileNameClassifier.classify("a_b(3).png"));
+        assertEquals(NameType.RRE_UNDERLINE, FileNameClassifier.classify("123_x.png"));
+        assertEquals(NameType.NUMBER, FileNameClassifier.classify("42.jpeg"));
+        assertNull(FileNameClassifier.classify("cover.jpg"));
+    }
+
+    @Test
+    public void sortsNumericallyNotLexicographically() {
+        String[] names = {"10.jpg", "9.jpg", "100.jpg", "1.jpg"};
+
+        assertArrayEquals(new String[]{"1.jpg", "9.jpg", "10.jpg", "100.jpg"},
+                ordered(names, FileNameClassifier.classifyAndSort(names, SortType.SEQUENTIAL).getOrder()));
+        assertArrayEquals(new String[]{"100.jpg", "10.jpg", "9.jpg", "1.jpg"},
+                ordered(names, FileNameClassifier.classifyAndSort(names, SortType.REVERSE).getOrder()));
+    }
+
+    @Test
+    public void sortsParenthesesByPrefixThenNumber() {
+        String[] names = {"b (2).jpg", "a (10).jpg", "b (1).jpg", "a (9).jpg"};
+
+        assertArrayEquals(new String[]{"a (9).jpg", "a (10).jpg", "b (1).jpg", "b (2).jpg"},
+                ordered(names, FileNameClassifier.classifyAndSort(names, SortType.SEQUENTIAL).getOrder()));
+    }
+
+    @Test
+    public void mixedFolderPutsDominantTypeFirstAndUnknownLast() {
+        String[] names = {"cover.jpg", "x(2).png", "3.jpg", "1.jpg", "x(1).png", "2.jpg"};
+        FileNameClassifier.Classification classification = FileNameClassifier.classifyAndSort(names, SortType.SEQUENTIAL);
+
+        assertEquals(NameType.NUMBER, classification.getDominantType());
+        assertEquals(1, classification.getUnclassified());
+        assertTrue(classification.isMixed());
+        assertArrayEquals(new String[]{"1.jpg", "2.jpg", "3.jpg", "x(1).png", "x(2).png", "cover.jpg"},
+                ordered(names, classification.getOrder()));
+    }
+
+    @Test
+    public void unrecognisedFolderHasNoDominantType() {
+        assertNull(FileNameClassifier.classifyAndSort(new String[]{"a.jpg", "b.jpg"}, SortType.SEQUENTIAL).getDominantType());
+    }
+
+    private static String[] ordered(String[] names, int[] order) {
+        String[] result = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = names[order[i]];
+        }
+        return result;
+    }
+}
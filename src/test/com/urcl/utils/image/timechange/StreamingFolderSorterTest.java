@@ -0,0 +1,80 @@
+package com.urcl.utils.image.timechange;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingFolderSorterTest {
+
+    @Test
+    public void externalMergeMatchesInMemorySort() throws IOException {
+        String[] names = mixedNames(5000);
+        for (SortType sortType : SortType.values()) {
+            List<String> streamed = new ArrayList<>();
+            try (StreamingFolderSorter sorter = new StreamingFolderSorter(16 * 1024, sortType)) {
+                for (String name : names) {
+                    sorter.add(name);
+                }
+                assertTrue(sorter.getSpilledRuns() > 1);
+                sorter.forEachInOrder((index, name) -> {
+                    assertEquals(streamed.size(), index);
+                    streamed.add(name);
+                });
+            }
+
+            int[] order = FileNameClassifier.classifyAndSort(names, sortType).getOrder();
+            List<String> expected = new ArrayList<>();
+            for (int i : order) {
+                expected.add(names[i]);
+            }
+            assertEquals(sortType.name(), expected, streamed);
+        }
+    }
+
+    @Test
+    public void smallFolderStaysInMemory() throws IOException {
+        try (StreamingFolderSorter sorter = new StreamingFolderSorter(1024 * 1024, SortType.SEQUENTIAL)) {
+            for (String name : Arrays.asList("10.jpg", "2.jpg", "1.jpg")) {
+                sorter.add(name);
+            }
+            List<String> streamed = new ArrayList<>();
+            sorter.forEachInOrder((index, name) -> streamed.add(name));
+
+            assertEquals(0, sorter.getSpilledRuns());
+            assertEquals(NameType.NUMBER, sorter.getDominantType());
+            assertEquals(Arrays.asList("1.jpg", "2.jpg", "10.jpg"), streamed);
+        }
+    }
+
+    private static String[] mixedNames(int n) {
+        Random random = new Random(42);
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    names[i] = random.nextInt(100000) + ".jpg";
+                    break;
+                case 1:
+                    names[i] = (char) ('a' + random.nextInt(3)) + " (" + random.nextInt(500) + ").png";
+                    break;
+                case 2:
+                    names[i] = "2025" + String.format("%010d", random.nextInt(1_000_000_000)) + ".jpg";
+                    break;
+                case 3:
+                    names[i] = "IMG202508_" + random.nextInt(100000) + ".jpeg";
+                    break;
+                default:
+                    names[i] = "cover-" + random.nextInt(1000) + ".gif";
+                    break;
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,176 @@
+package com.urcl.utils.image.timechange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 生成合成的根目录树：每个子文件夹使用一种命名方式（依次轮换所有 NameType），
+ * 文件是结构完整的最小JPEG，按比例带有 EXIF 和 XMP 段。同样的参数和种子总是生成完全相同的目录树。
+ */
+class SyntheticImageTree {
+
+    private int folders = NameType.values().length;
+    private int filesPerFolder = 50;
+    private int imageBytes = 16 * 1024;
+    private double metadataRatio = 0.5;
+    private List<NameType> nameTypes = Arrays.asList(NameType.values());
+    private long seed = 42;
+
+    SyntheticImageTree folders(int folders) {
+        this.folders = folders;
+        return this;
+    }
+
+    SyntheticImageTree filesPerFolder(int filesPerFolder) {
+        this.filesPerFolder = filesPerFolder;
+        return this;
+    }
+
+    /**
+     * 每个文件的大致大小，元数据段不计在内
+     */
+    SyntheticImageTree imageBytes(int imageBytes) {
+        this.imageBytes = imageBytes;
+        return this;
+    }
+
+    /**
+     * 带有元数据的文件所占比例：其中一半同时带有 EXIF 和 XMP，另一半只带 EXIF
+     */
+    SyntheticImageTree metadataRatio(double metadataRatio) {
+        this.metadataRatio = metadataRatio;
+        return this;
+    }
+
+    SyntheticImageTree nameTypes(NameType... nameTypes) {
+        this.nameTypes = Arrays.asList(nameTypes);
+        return this;
+    }
+
+    SyntheticImageTree seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    long totalBytes() {
+        return (long) folders * filesPerFolder * imageBytes;
+    }
+
+    int totalFiles() {
+        return folders * filesPerFolder;
+    }
+
+    /**
+     * 在 root 下生成目录树，文件按打乱的顺序写入
+     *
+     * @return 文件夹名 -> 按 SEQUENTIAL 排序后应有的文件名顺序
+     */
+    Map<String, List<String>> generate(File root) throws IOException {
+        Random random = new Random(seed);
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        for (int f = 0; f < folders; f++) {
+            NameType type = nameTypes.get(f % nameTypes.size());
+            File folder = new File(root, String.format("%03d_%s", f, type.name().toLowerCase()));
+            Files.createDirectories(folder.toPath());
+
+            List<String> names = new ArrayList<>(filesPerFolder);
+            for (int seq = 1; seq <= filesPerFolder; seq++) {
+                names.add(fileName(type, seq));
+            }
+            expected.put(folder.getName(), names);
+
+            List<String> writeOrder = new ArrayList<>(names);
+            Collections.shuffle(writeOrder, random);
+            for (String name : writeOrder) {
+                boolean exif = random.nextDouble() < metadataRatio;
+                boolean xmp = exif && random.nextBoolean();
+                Files.write(new File(folder, name).toPath(), jpeg(imageBytes, exif, xmp, random));
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * 第 seq 个文件（从1开始）在给定命名方式下的文件名，按 SEQUENTIAL 排序时 seq 小的在前
+     */
+    static String fileName(NameType type, int seq) {
+        switch (type) {
+            case NUMBER:
+                return seq + ".jpg";
+            case RRE_UNDERLINE:
+                return seq + "_holiday_photo.jpg";
+            case POST_PARENTHESES:
+                return "holiday_photo(" + seq + ").jpg";
+            case TIMESTAMP_14:
+                return String.format("20250101%06d.jpg", seq);
+            case DATE_STRING_SEQ:
+                return String.format("20250731_cam_%04d.jpg", seq);
+            case PREFIX_IN_PARENTHESES:
+                return "IMG (" + seq + ").jpg";
+            case PREFIX_YYYYMM_SEQ:
+                return "IMG202508_" + seq + ".jpg";
+            default:
+                throw new IllegalArgumentException(String.valueOf(type));
+        }
+    }
+
+    /**
+     * SOI、JFIF、可选的 EXIF 和 XMP、量化表、扫描数据、EOI。扫描数据中不含 0xFF，不会被误认为标记
+     */
+    static byte[] jpeg(int size, boolean exif, boolean xmp, Random random) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 4096);
+        out.write(0xFF);
+        out.write(0xD8);
+        segment(out, 0xE0, "JFIF\0\1\1\0\0\1\0\1\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        if (exif) {
+            byte[] payload = new byte[1024];
+            random.nextBytes(payload);
+            System.arraycopy("Exif\0\0MM\0*".getBytes(StandardCharsets.ISO_8859_1), 0, payload, 0, 10);
+            segment(out, 0xE1, payload);
+        }
+        if (xmp) {
+            StringBuilder packet = new StringBuilder("http://ns.adobe.com/xap/1.0/\0<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">");
+            while (packet.length() < 2048) {
+                packet.append("<rdf:Description camera=\"synthetic\"/>");
+            }
+            packet.append("</x:xmpmeta>");
+            segment(out, 0xE1, packet.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+        byte[] table = new byte[65];
+        random.nextBytes(table);
+        table[0] = 0;
+        segment(out, 0xDB, table);
+        segment(out, 0xDA, new byte[]{1, 1, 0, 0, 63, 0});
+
+        byte[] scan = new byte[Math.max(0, size - out.size() - 2)];
+        random.nextBytes(scan);
+        for (int i = 0; i < scan.length; i++) {
+            if (scan[i] == (byte) 0xFF) {
+                scan[i] = (byte) 0xFE;
+            }
+        }
+        out.write(scan, 0, scan.length);
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static void segment(ByteArrayOutputStream out, int marker, byte[] payload) {
+        int length = payload.length + 2;
+        out.write(0xFF);
+        out.write(marker);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(payload, 0, payload.length);
+    }
+}
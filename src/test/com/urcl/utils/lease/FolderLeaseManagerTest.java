@@ -0,0 +1,213 @@
+package com.urcl.utils.lease;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FolderLeaseManagerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void claimIsExclusiveUntilReleased() throws IOException {
+        File folder = temp.newFolder("album");
+        try (FolderLeaseManager a = new FolderLeaseManager("a", 60_000);
+             FolderLeaseManager b = new FolderLeaseManager("b", 60_000)) {
+            FolderLease lease = a.tryClaim(folder);
+            assertNotNull(lease);
+            assertFalse(lease.isReclaimed());
+            assertNull(b.tryClaim(folder));
+
+            lease.put("album.id", "42");
+            lease.release();
+            assertFalse(lease.isValid());
+
+            FolderLease next = b.tryClaim(folder);
+            assertNotNull(next);
+            assertNull(next.get("album.id"));
+            // 文件夹已被重命名
+            assertNull(a.tryClaim(new File(temp.getRoot(), "missing")));
+        }
+    }
+
+    @Test
+    public void abandonedLeaseIsReclaimedWithItsAttributes() throws Exception {
+        File folder = temp.newFolder("album");
+        writeLease(folder, "crashed", "42");
+
+        try (FolderLeaseManager manager = new FolderLeaseManager("b", 300)) {
+            // 第一次只是开始观察，即使文件的修改时间很早也不立即回收
+            assertNull(manager.tryClaim(folder));
+            Thread.sleep(400);
+            FolderLease lease = manager.tryClaim(folder);
+            assertNotNull(lease);
+            assertTrue(lease.isReclaimed());
+            assertEquals("42", lease.get("album.id"));
+            assertFalse(new File(folder, FolderLeaseManager.LEASE_FILE_NAME + ".reclaim").exists());
+        }
+    }
+
+    @Test
+    public void holderNoticesWhenItsLeaseIsTakenOver() throws Exception {
+        File folder = temp.newFolder("album");
+        try (FolderLeaseManager manager = new FolderLeaseManager("a", 300)) {
+            FolderLease lease = manager.tryClaim(folder);
+            assertNotNull(lease);
+            writeLease(folder, "other", "7");
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (lease.isValid() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(lease.isValid());
+            lease.release();
+            // 不删除其他进程的租约
+            assertTrue(new File(folder, FolderLeaseManager.LEASE_FILE_NAME).exists());
+        }
+    }
+
+    @Test
+    public void renamedFolderKeepsItsLeaseUntilMoveToCatchesUp() throws Exception {
+        File folder = temp.newFolder("album");
+        try (FolderLeaseManager manager = new FolderLeaseManager("a", 300)) {
+            FolderLease lease = manager.tryClaim(folder);
+            assertNotNull(lease);
+
+            // 重命名之后、调用 moveTo 之前至少经过一次心跳（间隔100毫秒）
+            File finished = new File(temp.getRoot(), "[Finished] album");
+            Files.move(folder.toPath(), finished.toPath());
+            Thread.sleep(150);
+            assertTrue(lease.isValid());
+            lease.moveTo(finished);
+
+            Thread.sleep(300);
+            assertTrue(lease.isValid());
+            lease.release();
+            assertFalse(new File(finished, FolderLeaseManager.LEASE_FILE_NAME).exists());
+        }
+    }
+
+    @Test
+    public void leaseIsLostWhenItsFileStaysMissing() throws Exception {
+        File folder = temp.newFolder("album");
+        try (FolderLeaseManager manager = new FolderLeaseManager("a", 300)) {
+            FolderLease lease = manager.tryClaim(folder);
+            assertNotNull(lease);
+            Files.delete(new File(folder, FolderLeaseManager.LEASE_FILE_NAME).toPath());
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (lease.isValid() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(lease.isValid());
+        }
+    }
+
+    @Test
+    public void workerProcessesPartitionFoldersAndTakeOverACrashedWorker() throws Exception {
+        File root = temp.newFolder("root");
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            names.add(String.format("album%02d", i));
+            assertTrue(new File(root, names.get(i)).mkdir());
+        }
+
+        // 第一个进程认领到一个文件夹后立即退出，不释放租约
+        assertEquals(3, startWorker(root, "crashed", true).waitFor());
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(startWorker(root, "worker" + i, false));
+        }
+        for (Process worker : workers) {
+            assertTrue(worker.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, worker.exitValue());
+        }
+
+        int reclaimed = 0;
+        for (String name : names) {
+            File finished = new File(root, "[Finished] " + name);
+            assertTrue(name, finished.isDirectory());
+            String[] done = finished.list((dir, file) -> file.startsWith("done-by-"));
+            assertEquals(name + " " + Arrays.toString(done), 1, done.length);
+            assertFalse(new File(finished, FolderLeaseManager.LEASE_FILE_NAME).exists());
+            if (new File(finished, "reclaimed").exists()) {
+                reclaimed++;
+            }
+        }
+        assertEquals(1, reclaimed);
+    }
+
+    private Process startWorker(File root, String id, boolean crash) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(),
+                root.getPath(), id, String.valueOf(crash))
+                .redirectErrorStream(true)
+                .redirectOutput(new File(temp.getRoot(), id + ".log"))
+                .start();
+    }
+
+    private static void writeLease(File folder, String owner, String albumId) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("lease.owner", owner);
+        properties.setProperty("album.id", albumId);
+        try (OutputStream out = Files.newOutputStream(new File(folder, FolderLeaseManager.LEASE_FILE_NAME).toPath())) {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * 在独立的JVM中运行的工作进程：认领文件夹，写入标记后重命名为[Finished]
+     */
+    public static class Worker {
+        public static void main(String[] args) throws Exception {
+            File root = new File(args[0]);
+            String id = args[1];
+            boolean crash = Boolean.parseBoolean(args[2]);
+            File[] folders = root.listFiles(f -> f.isDirectory() && !f.getName().startsWith("[Finished]"));
+            List<File> order = new ArrayList<>(Arrays.asList(folders));
+            Collections.shuffle(order, new Random(id.hashCode()));
+
+            FolderLeaseManager manager = new FolderLeaseManager(id, 1000);
+            manager.claimEach(order, lease -> {
+                if (crash) {
+                    Runtime.getRuntime().halt(3);
+                }
+                File folder = lease.getFolder();
+                try {
+                    if (lease.isReclaimed()) {
+                        Files.createFile(new File(folder, "reclaimed").toPath());
+                    }
+                    Files.createFile(new File(folder, "done-by-" + id).toPath());
+                    Thread.sleep(100);
+                    File finished = new File(root, "[Finished] " + folder.getName());
+                    Files.move(folder.toPath(), finished.toPath());
+                    lease.moveTo(finished);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    lease.release();
+                }
+            });
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.urcl.utils.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesStayWithinOneSubBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(50_005_000_000L, histogram.getTotal());
+        for (double p : new double[]{50, 90, 99}) {
+            long exact = (long) (p * 100) * 1000;
+            long estimate = histogram.percentile(p);
+            assertTrue(p + ": " + estimate, estimate >= exact && estimate <= exact + exact / 16);
+        }
+        assertEquals(histogram.getMax(), histogram.percentile(100));
+    }
+
+    @Test
+    public void bucketsCoverTheWholeRange() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 1000, 1L << 40, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(String.valueOf(value), LatencyHistogram.upperBound(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue(String.valueOf(value), LatencyHistogram.upperBound(bucket - 1) < value);
+            }
+        }
+
+        LatencyHistogram empty = new LatencyHistogram();
+        assertEquals(0, empty.percentile(99));
+        empty.record(-5);
+        assertEquals(0, empty.getMax());
+    }
+}
@@ -0,0 +1,119 @@
+package com.urcl.utils.pipeline;
+
+import com.urcl.utils.image.timechange.BatchModifyImageTime;
+import com.urcl.utils.image.timechange.ModificationOptions;
+import com.urcl.utils.image.timechange.ModifiedFileSink;
+import com.urcl.utils.image.timechange.SortType;
+import com.urcl.utils.uploader.clients.UploadSource;
+import com.urcl.utils.uploader.utils.Utils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class TimeChangeUploadPipelineTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8,
+            (byte) 0xFF, (byte) 0xE1, 0, 10, 'E', 'x', 'i', 'f', 0, 0, 'M', 'M',
+            (byte) 0xFF, (byte) 0xDA, 0, 2, 1, 2, 3, (byte) 0xFF, (byte) 0xD9};
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void modifiedFilesArriveInSortedOrderWithTheirNewMd5() throws Exception {
+        File folder = temp.newFolder("album");
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            // PNG不经过JPEG过滤器，而是整个重写
+            String name = i + (i % 5 == 0 ? ".png" : ".jpg");
+            Files.write(new File(folder, name).toPath(), i % 5 == 0 ? new byte[]{(byte) 0x89, 'P', 'N', 'G', (byte) i} : JPEG);
+            expected.add(name);
+        }
+        // 上传器不接受GIF，修改后不会交给上传
+        Files.write(new File(folder, "21.gif").toPath(), new byte[]{'G', 'I', 'F'});
+
+        ModificationOptions options = ModificationOptions.builder()
+                .startTime(LocalDateTime.of(2025, 9, 9, 1, 0))
+                .sortType(SortType.SEQUENTIAL)
+                .removeMetadata(true)
+                .modifyMD5(true)
+                .fileParallelism(4)
+                .build();
+        // 队列很小，修改线程会被上传线程的消费速度限制
+        TimeChangeUploadPipeline.FolderHandoff handoff = new TimeChangeUploadPipeline.FolderHandoff(2);
+        RecordingSink recording = new RecordingSink(handoff);
+        CompletableFuture<Void> modifying = CompletableFuture.runAsync(() -> {
+            try {
+                BatchModifyImageTime.modifyFolder(folder, options, recording);
+            } finally {
+                handoff.finish();
+            }
+        });
+
+        assertEquals(20, handoff.awaitTotal());
+        List<String> received = new ArrayList<>();
+        for (UploadSource source = handoff.next(); source != null; source = handoff.next()) {
+            received.add(source.getName());
+            Thread.sleep(5);
+        }
+        modifying.join();
+
+        assertEquals(expected, received);
+        for (String name : expected) {
+            // 每个文件都重写了内容，随文件交出的MD5不为空且与写入后的文件内容一致
+            String handedOver = recording.md5s.get(name);
+            assertNotNull(name, handedOver);
+            assertEquals(name, Utils.calculateMD5(new File(folder, name)), handedOver);
+        }
+    }
+
+    @Test
+    public void unrecognisedFolderReportsNoTotal() throws Exception {
+        File folder = temp.newFolder("empty");
+        TimeChangeUploadPipeline.FolderHandoff handoff = new TimeChangeUploadPipeline.FolderHandoff(2);
+
+        BatchModifyImageTime.modifyFolder(folder, ModificationOptions.builder()
+                .startTime(LocalDateTime.of(2025, 9, 9, 1, 0)).build(), handoff);
+        handoff.finish();
+
+        assertEquals(-1, handoff.awaitTotal());
+        handoff.drain();
+    }
+
+    /**
+     * 记录修改时实际交出的MD5，再转交给上传队列
+     */
+    private static class RecordingSink implements ModifiedFileSink {
+        private final ModifiedFileSink delegate;
+        private final Map<String, String> md5s = new ConcurrentHashMap<>();
+
+        RecordingSink(ModifiedFileSink delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void start(List<File> files) throws InterruptedException {
+            delegate.start(files);
+        }
+
+        @Override
+        public void accept(File file, String md5) throws InterruptedException {
+            if (md5 != null) {
+                md5s.put(file.getName(), md5);
+            }
+            delegate.accept(file, md5);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.urcl.utils.uploader;
+
+import com.urcl.utils.uploader.clients.UploadSource;
+import com.urcl.utils.uploader.limit.AdaptiveConcurrencyLimiter;
+import com.urcl.utils.uploader.model.UploadItem;
+import com.urcl.utils.uploader.model.UploadResult;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadProcessorTest {
+
+    private static final String ALBUM_ID = "album-1";
+
+    @Test
+    public void upstreamDemandFollowsDownstreamDemandAndConcurrency() throws InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        UploadProcessor processor = processor(2, transport);
+        ItemPublisher publisher = new ItemPublisher(processor, 10);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(publisher);
+
+        subscriber.subscription.request(3);
+        await(() -> subscriber.results.size() == 3);
+        // 下游的需求已经满足，不再向上游请求
+        Thread.sleep(100);
+        assertEquals(3, subscriber.results.size());
+        assertEquals(3, publisher.requested.get());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        await(() -> subscriber.completed.get() == 1);
+        assertEquals(10, subscriber.results.size());
+        assertEquals(10, publisher.requested.get());
+        assertTrue(transport.maxConcurrent.get() <= 2);
+        // 上游结束后剩余的文件在通知下游完成之前添加到相册
+        assertEquals(10, transport.addedToAlbum.size());
+        assertTrue(subscriber.errors.isEmpty());
+    }
+
+    @Test
+    public void cancelStopsRequestingFromUpstream() throws InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        UploadProcessor processor = processor(4, transport);
+        ItemPublisher publisher = new ItemPublisher(processor, 100);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(publisher);
+
+        subscriber.subscription.request(1);
+        await(() -> subscriber.results.size() == 1);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+
+        assertTrue(publisher.cancelled);
+        Thread.sleep(100);
+        assertEquals(1, publisher.requested.get());
+        assertEquals(1, subscriber.results.size());
+        assertEquals(0, subscriber.completed.get());
+        assertTrue(subscriber.errors.isEmpty());
+    }
+
+    @Test
+    public void onlyOneSubscriberIsAccepted() {
+        UploadProcessor processor = processor(2, new FakeTransport());
+        RecordingSubscriber first = new RecordingSubscriber();
+        RecordingSubscriber second = new RecordingSubscriber();
+        processor.subscribe(first);
+        processor.subscribe(second);
+
+        assertTrue(first.errors.isEmpty());
+        assertEquals(1, second.errors.size());
+        assertTrue(second.errors.get(0) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void nonPositiveRequestSignalsErrorOnceAndCancelsUpstream() {
+        UploadProcessor processor = processor(2, new FakeTransport());
+        ItemPublisher publisher = new ItemPublisher(processor, 10);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(publisher);
+
+        subscriber.subscription.request(0);
+        subscriber.subscription.request(-1);
+
+        assertEquals(1, subscriber.errors.size());
+        assertTrue(subscriber.errors.get(0) instanceof IllegalArgumentException);
+        assertTrue(publisher.cancelled);
+        assertEquals(0, publisher.requested.get());
+        assertEquals(0, subscriber.completed.get());
+    }
+
+    @Test
+    public void upstreamErrorIsSignalledAfterInFlightResults() throws InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        UploadProcessor processor = processor(2, transport);
+        ItemPublisher publisher = new ItemPublisher(processor, 2);
+        publisher.failWith = new IOException("读取文件列表失败");
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(publisher);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        await(() -> !subscriber.errors.isEmpty());
+        assertEquals(2, subscriber.results.size());
+        assertEquals(Collections.singletonList(publisher.failWith), subscriber.errors);
+        assertEquals(0, subscriber.completed.get());
+    }
+
+    @Test
+    public void failedUploadsAreReportedAndNotAddedToTheAlbum() throws InterruptedException {
+        FakeTransport transport = new FakeTransport();
+        transport.failing = "file-1";
+        UploadProcessor processor = processor(2, transport);
+        ItemPublisher publisher = new ItemPublisher(processor, 3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(publisher);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        await(() -> subscriber.completed.get() == 1);
+        assertEquals(3, subscriber.results.size());
+        long failed = subscriber.results.stream().filter(result -> !result.isSuccess()).count();
+        assertEquals(1, failed);
+        assertEquals(2, transport.addedToAlbum.size());
+    }
+
+    private static UploadProcessor processor(int maxConcurrency, FakeTransport transport) {
+        UploadOptions options = UploadOptions.builder()
+                .initialConcurrency(maxConcurrency)
+                .minConcurrency(1)
+                .maxConcurrency(maxConcurrency)
+                .build();
+        return new UploadProcessor(options,
+                new AdaptiveConcurrencyLimiter("test.processor", maxConcurrency, 1, maxConcurrency), transport);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue("等待超时", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 在被请求时同步发出文件，发完后结束（或者以 failWith 出错）
+     */
+    private static class ItemPublisher implements Subscription {
+        private final UploadProcessor processor;
+        private final int total;
+        private final AtomicInteger requested = new AtomicInteger();
+        private int sent;
+        private volatile boolean cancelled;
+        private volatile Exception failWith;
+
+        ItemPublisher(UploadProcessor processor, int total) {
+            this.processor = processor;
+            this.total = total;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            requested.addAndGet((int) n);
+            while (!cancelled && sent < total && sent < requested.get()) {
+                String name = "file-" + sent++;
+                processor.onNext(UploadItem.toAlbum(UploadSource.ofBytes(name, new byte[]{1}), ALBUM_ID, "tid"));
+            }
+            finishIfDone();
+        }
+
+        private void finishIfDone() {
+            if (sent == total && !cancelled) {
+                cancelled = true;
+                if (failWith != null) {
+                    processor.onError(failWith);
+                } else {
+                    processor.onComplete();
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class RecordingSubscriber implements Subscriber<UploadResult> {
+        private final List<UploadResult> results = new CopyOnWriteArrayList<>();
+        private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        private final AtomicInteger completed = new AtomicInteger();
+        private volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(UploadResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            errors.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.incrementAndGet();
+        }
+    }
+
+    private static class FakeTransport implements UploadProcessor.Transport {
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final AtomicInteger nextFsid = new AtomicInteger();
+        private final List<Long> addedToAlbum = Collections.synchronizedList(new ArrayList<>());
+        private volatile String failing;
+
+        @Override
+        public UploadResult upload(UploadItem item, String albumId) {
+            int current = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(2);
+                if (item.getSource().getName().equals(failing)) {
+                    return UploadResult.failed(item, albumId, new IOException("上传失败"));
+                }
+                return new UploadResult(item, albumId, nextFsid.incrementAndGet(), false, 0, 0, 0, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return UploadResult.failed(item, albumId, e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void addToAlbum(String albumId, String tid, String albumTitle, List<Long> fsids) {
+            addedToAlbum.addAll(fsids);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.urcl.utils.uploader.clients;
+
+import com.urcl.utils.uploader.model.ListAlbumResponse;
+import com.urcl.utils.uploader.model.ListFileResponse;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 用预先准备好的JSON页面验证列表响应的流式解析
+ */
+public class BaiduPhotoApiClientTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final BaiduPhotoApiClient client = new BaiduPhotoApiClient("cookie", "token",
+            RequestLane.control(), RequestLane.data(), new UploadHostSelector(Collections.singletonList(UploadHostSelector.DEFAULT_UPLOAD_HOST)));
+
+    @Test
+    public void albumPagesAreFollowedUntilHasMoreIsFalse() throws IOException {
+        List<String> pages = Arrays.asList(
+                "{\"errno\":0,\"has_more\":1,\"cursor\":\"c1\",\"list\":["
+                        + "{\"album_id\":\"a1\",\"tid\":\"t1\",\"title\":\"2023-01\",\"cover\":{\"url\":\"x\"}},"
+                        + "{\"album_id\":\"a2\",\"tid\":\"t2\",\"title\":\"2023-02\"}],\"request_id\":123}",
+                "{\"list\":[{\"album_id\":\"a3\",\"tid\":\"t3\",\"title\":null}],\"cursor\":\"c2\",\"has_more\":true,\"errno\":0}",
+                "{\"errno\":0,\"has_more\":false,\"cursor\":\"c3\",\"list\":[]}");
+
+        List<ListAlbumResponse.Album> albums = new ArrayList<>();
+        List<String> cursors = new ArrayList<>();
+        String cursor = null;
+        int page = 0;
+        do {
+            cursor = client.readPage(body(pages.get(page++)), ListAlbumResponse.Album.class, albums::add);
+            cursors.add(cursor);
+        } while (cursor != null);
+
+        assertEquals(Arrays.asList("c1", "c2", null), cursors);
+        assertEquals(3, albums.size());
+        assertEquals("a1", albums.get(0).getAlbumId());
+        assertEquals("2023-02", albums.get(1).getTitle());
+        assertEquals("t3", albums.get(2).getTid());
+        assertNull(albums.get(2).getTitle());
+    }
+
+    @Test
+    public void filePageAcceptsBothFsidSpellings() throws IOException {
+        List<ListFileResponse.FileInfo> files = new ArrayList<>();
+        String cursor = client.readPage(body("{\"errno\":0,\"cursor\":null,\"list\":["
+                        + "{\"tid\":\"t1\",\"fsid\":11,\"md5\":\"m1\"},{\"tid\":\"t2\",\"fs_id\":22,\"md5\":\"m2\"}]}"),
+                ListFileResponse.FileInfo.class, files::add);
+
+        assertNull(cursor);
+        assertEquals(2, files.size());
+        assertEquals(11, files.get(0).getFsid());
+        assertEquals(22, files.get(1).getFsid());
+        assertEquals("m2", files.get(1).getMd5());
+    }
+
+    @Test
+    public void hasMoreWithoutCursorEndsPaging() throws IOException {
+        assertNull(client.readPage(body("{\"errno\":0,\"has_more\":1,\"cursor\":\"\",\"list\":[]}"),
+                ListAlbumResponse.Album.class, album -> fail("空页面不应有相册")));
+    }
+
+    @Test
+    public void nonZeroErrnoFails() {
+        try {
+            client.readPage(body("{\"errno\":-6,\"list\":[]}"), ListAlbumResponse.Album.class, album -> {
+            });
+            fail("errno不为0时应当失败");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("-6"));
+        }
+    }
+
+    private static ResponseBody body(String json) {
+        return ResponseBody.create(json, JSON);
+    }
+}
@@ -0,0 +1,150 @@
+package com.urcl.utils.uploader.clients;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 使用几个本地HTTP服务模拟PCS上传主机，验证主机选择和故障切换
+ */
+public class UploadHostSelectorTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("upload-host", ".jpg");
+        Files.write(file.toPath(), new byte[16 * 1024]);
+    }
+
+    @After
+    public void tearDown() {
+        servers.forEach(server -> server.stop(0));
+        file.delete();
+    }
+
+    @Test
+    public void failsOverToHealthyHost() throws IOException {
+        AtomicInteger brokenHits = new AtomicInteger();
+        AtomicInteger healthyHits = new AtomicInteger();
+        String broken = startServer(500, 0, brokenHits);
+        String healthy = startServer(200, 0, healthyHits);
+
+        UploadHostSelector selector = new UploadHostSelector(Arrays.asList(broken, healthy));
+        BaiduPhotoApiClient client = newClient(selector);
+
+        for (int i = 0; i < 10; i++) {
+            client.uploadPart(file, "/a.jpg", "upload-" + i);
+        }
+
+        assertEquals(10, healthyHits.get());
+        // 连续失败两次后坏主机被摘除，不会再收到请求
+        assertTrue(brokenHits.get() <= 2);
+        assertFalse(selector.getHosts().get(0).isHealthy(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void prefersFasterHost() throws IOException {
+        AtomicInteger slowHits = new AtomicInteger();
+        AtomicInteger fastHits = new AtomicInteger();
+        String slow = startServer(200, 150, slowHits);
+        String fast = startServer(200, 0, fastHits);
+
+        UploadHostSelector selector = new UploadHostSelector(Arrays.asList(slow, fast));
+        BaiduPhotoApiClient client = newClient(selector);
+
+        for (int i = 0; i < 12; i++) {
+            client.uploadPart(file, "/a.jpg", "upload-" + i);
+        }
+
+        assertTrue("slow=" + slowHits.get() + ", fast=" + fastHits.get(), fastHits.get() > slowHits.get() * 3);
+        assertTrue(selector.getHosts().get(1).getThroughputBytesPerMs() > selector.getHosts().get(0).getThroughputBytesPerMs());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsWhenAllHostsFail() throws IOException {
+        String first = startServer(503, 0, new AtomicInteger());
+        String second = startServer(503, 0, new AtomicInteger());
+
+        newClient(new UploadHostSelector(Arrays.asList(first, second))).uploadPart(file, "/a.jpg", "upload");
+    }
+
+    @Test
+    public void clientErrorsAreNotRetriedOnOtherHosts() throws IOException {
+        AtomicInteger forbiddenHits = new AtomicInteger();
+        AtomicInteger otherHits = new AtomicInteger();
+        String forbidden = startServer(403, 0, forbiddenHits);
+        String other = startServer(403, 0, otherHits);
+        UploadHostSelector selector = new UploadHostSelector(Arrays.asList(forbidden, other));
+
+        try {
+            newClient(selector).uploadPart(file, "/a.jpg", "upload");
+            fail("403 应当直接抛出");
+        } catch (HttpStatusException e) {
+            assertEquals(403, e.getCode());
+        }
+        assertEquals(1, forbiddenHits.get() + otherHits.get());
+        for (UploadHostSelector.HostStats host : selector.getHosts()) {
+            assertTrue(host.isHealthy(System.currentTimeMillis()));
+            assertEquals(0, host.getFailures());
+            // 在途计数已经归还，不会抬高这个主机的预期开销
+            assertEquals(0, host.getInFlight());
+        }
+    }
+
+    @Test
+    public void onlyConnectTimeoutAndServerErrorsCountAsHostFailures() {
+        assertTrue(BaiduPhotoApiClient.isHostFailure(new ConnectException("refused")));
+        assertTrue(BaiduPhotoApiClient.isHostFailure(new SocketTimeoutException("timeout")));
+        assertTrue(BaiduPhotoApiClient.isHostFailure(new HttpStatusException("bad gateway", 502)));
+        assertFalse(BaiduPhotoApiClient.isHostFailure(new HttpStatusException("forbidden", 403)));
+        assertFalse(BaiduPhotoApiClient.isHostFailure(new EOFException("source too short")));
+    }
+
+    private BaiduPhotoApiClient newClient(UploadHostSelector selector) {
+        return new BaiduPhotoApiClient("cookie", "token", RequestLane.control(), RequestLane.data(), selector);
+    }
+
+    private String startServer(int status, long delayMs, AtomicInteger hits) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                while (body.read(new byte[8192]) != -1) {
+                    // 读完请求体
+                }
+                hits.incrementAndGet();
+                Thread.sleep(delayMs);
+                byte[] response = "{\"md5\":\"x\"}".getBytes();
+                exchange.sendResponseHeaders(status, response.length);
+                exchange.getResponseBody().write(response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,122 @@
+package com.urcl.utils.uploader.clients;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UploadSourceTest {
+
+    private static final byte[] DATA = "hello".getBytes(StandardCharsets.US_ASCII);
+    private static final String DATA_MD5 = "5d41402abc4b2a76b9719d911017c592";
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void bytesSourceUsesOnlyTheGivenRange() throws IOException {
+        byte[] padded = "[hello]".getBytes(StandardCharsets.US_ASCII);
+        UploadSource source = UploadSource.ofBytes("a.jpg", padded, 1, DATA.length);
+
+        assertEquals(DATA.length, source.size());
+        assertEquals(DATA_MD5, source.md5());
+        assertArrayEquals(DATA, write(source.toRequestBody(OCTET_STREAM)));
+    }
+
+    @Test
+    public void bufferSourceCanBeHashedAndWrittenRepeatedly() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DATA.length + 2);
+        buffer.put((byte) 0).put(DATA).put((byte) 0);
+        buffer.position(1).limit(1 + DATA.length);
+        UploadSource source = UploadSource.ofBuffer("a.jpg", buffer);
+
+        assertEquals(DATA_MD5, source.md5());
+        RequestBody body = source.toRequestBody(OCTET_STREAM);
+        // 失败重试时重新写入，每次都从头开始
+        assertArrayEquals(DATA, write(body));
+        assertArrayEquals(DATA, write(body));
+        assertEquals(DATA.length, body.contentLength());
+        assertEquals(1, buffer.position());
+        assertEquals(1 + DATA.length, buffer.limit());
+    }
+
+    @Test
+    public void mappedFileSourceReadsTheFileContent() throws IOException {
+        File file = temp.newFile("a.jpg");
+        Files.write(file.toPath(), DATA);
+
+        UploadSource source = UploadSource.ofMappedFile(file);
+
+        assertEquals("a.jpg", source.getName());
+        assertEquals(DATA.length, source.size());
+        assertEquals(DATA_MD5, source.md5());
+        assertArrayEquals(DATA, write(source.toRequestBody(OCTET_STREAM)));
+    }
+
+    @Test
+    public void streamMd5IsComputedOnceAndTheStreamIsReopenedForEachAttempt() throws IOException {
+        AtomicInteger opened = new AtomicInteger();
+        UploadSource source = UploadSource.ofStream("a.jpg", DATA.length, () -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(DATA);
+        });
+
+        assertEquals(DATA_MD5, source.md5());
+        assertEquals(DATA_MD5, source.md5());
+        assertEquals(1, opened.get());
+
+        RequestBody body = source.toRequestBody(OCTET_STREAM);
+        assertArrayEquals(DATA, write(body));
+        assertArrayEquals(DATA, write(body));
+        assertEquals(3, opened.get());
+    }
+
+    @Test
+    public void knownMd5IsNotRecomputed() throws IOException {
+        File file = temp.newFile("a.jpg");
+        Files.write(file.toPath(), DATA);
+
+        assertEquals("precomputed", UploadSource.ofFile(file, "precomputed").md5());
+        assertEquals(DATA_MD5, UploadSource.ofFile(file, null).md5());
+    }
+
+    @Test
+    public void streamShorterThanDeclaredSizeFails() {
+        UploadSource source = UploadSource.ofStream("a.jpg", DATA.length + 1, () -> new ByteArrayInputStream(DATA));
+        try {
+            write(source.toRequestBody(OCTET_STREAM));
+            fail("流的长度不足时应当失败");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(DATA.length + " != " + (DATA.length + 1)));
+        }
+
+        try {
+            UploadSource.ofOneShotStream("a.jpg", new ByteArrayInputStream(DATA), DATA.length + 1);
+            fail("流的长度不足时应当失败");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(DATA.length + " < " + (DATA.length + 1)));
+        }
+    }
+
+    private static byte[] write(RequestBody body) throws IOException {
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        return sink.readByteArray();
+    }
+}
@@ -0,0 +1,167 @@
+package com.urcl.utils.uploader.dedup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateDetectorTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void resavedAndPaddedCopiesHashAlike() throws IOException {
+        BufferedImage image = scene(1, 640, 480);
+        File original = writeJpeg(image, "original.jpg", 0.95f);
+        File resaved = writeJpeg(image, "resaved.jpg", 0.5f);
+        File padded = writeJpeg(image, "padded.jpg", 0.95f);
+        // 与 modifyMD5 一样在文件末尾追加一个字节
+        Files.write(padded.toPath(), new byte[]{42}, StandardOpenOption.APPEND);
+        File other = writeJpeg(scene(2, 640, 480), "other.jpg", 0.95f);
+
+        long hash = PerceptualHash.dHash(original);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(resaved)) <= 4);
+        assertEquals(hash, PerceptualHash.dHash(padded));
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(other)) > 16);
+    }
+
+    @Test
+    public void keepLargestUploadsOneRepresentativePerGroup() throws Exception {
+        BufferedImage image = scene(1, 640, 480);
+        File small = writeJpeg(image, "a-small.jpg", 0.3f);
+        File other = writeJpeg(scene(2, 640, 480), "b-other.jpg", 0.9f);
+        File large = writeJpeg(image, "c-large.jpg", 0.95f);
+        File broken = temp.newFile("d-broken.jpg");
+        try (OutputStream out = Files.newOutputStream(broken.toPath())) {
+            out.write(new byte[]{(byte) 0xFF, (byte) 0xD8, 1, 2, 3});
+        }
+
+        try (DuplicateDetector detector = new DuplicateDetector(DedupPolicy.KEEP_LARGEST, DedupScope.ALBUM, 4, 2)) {
+            DuplicateDetector.Selection selection = detector.select(Arrays.asList(small, other, large, broken));
+
+            // 保持上传顺序，无法解码的文件照常上传
+            assertEquals(Arrays.asList(other, large, broken), selection.getUpload());
+            assertEquals(1, selection.getDuplicates().size());
+            DuplicateDetector.Duplicate duplicate = selection.getDuplicates().get(0);
+            assertSame(small, duplicate.getFile());
+            assertSame(large, duplicate.getRepresentative());
+
+            DedupReport report = detector.getReport();
+            assertEquals(3, report.getHashed());
+            assertEquals(1, report.getUnhashable());
+            assertEquals(small.length(), report.getBytesAvoided());
+        }
+    }
+
+    @Test
+    public void scopeDecidesWhetherEarlierAlbumsCount() throws Exception {
+        BufferedImage image = scene(3, 320, 240);
+        File first = writeJpeg(image, "first.jpg", 0.9f);
+        File copy = writeJpeg(image, "copy.jpg", 0.7f);
+
+        try (DuplicateDetector album = new DuplicateDetector(DedupPolicy.KEEP_FIRST, DedupScope.ALBUM, 4, 1)) {
+            album.select(Arrays.asList(first));
+            assertEquals(Arrays.asList(copy), album.select(Arrays.asList(copy)).getUpload());
+        }
+        try (DuplicateDetector run = new DuplicateDetector(DedupPolicy.KEEP_FIRST, DedupScope.RUN, 4, 1)) {
+            run.select(Arrays.asList(first));
+            assertTrue(run.select(Arrays.asList(copy)).getUpload().isEmpty());
+        }
+        try (DuplicateDetector report = new DuplicateDetector(DedupPolicy.REPORT, DedupScope.ALBUM, 4, 1)) {
+            DuplicateDetector.Selection selection = report.select(Arrays.asList(first, copy));
+            assertEquals(Arrays.asList(first, copy), selection.getUpload());
+            assertEquals(1, selection.getDuplicates().size());
+            assertEquals(0, report.getReport().getBytesAvoided());
+        }
+    }
+
+    @Test
+    public void indexFindsTheSameNearestHashAsAFullScan() {
+        Random random = new Random(7);
+        HashIndex<Integer> index = new HashIndex<>();
+        List<Long> hashes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long hash = random.nextLong();
+            hashes.add(hash);
+            index.add(hash, i);
+        }
+        for (int q = 0; q < 200; q++) {
+            // 一半的查询是已有哈希翻转几位得到的
+            long query = q % 2 == 0 ? hashes.get(random.nextInt(hashes.size())) ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64))
+                    : random.nextLong();
+            int best = -1;
+            int bestDistance = 65;
+            for (int i = 0; i < hashes.size(); i++) {
+                int distance = PerceptualHash.distance(query, hashes.get(i));
+                if (distance < bestDistance) {
+                    best = i;
+                    bestDistance = distance;
+                }
+            }
+            HashIndex.Match<Integer> match = index.nearest(query, 4);
+            if (bestDistance > 4) {
+                assertNull(match);
+            } else {
+                assertNotNull(match);
+                assertEquals(bestDistance, match.distance);
+                assertEquals(best, (int) match.value);
+            }
+        }
+    }
+
+    /**
+     * 几个随机位置和颜色的色块，不同的种子得到明显不同的画面
+     */
+    private static BufferedImage scene(long seed, int width, int height) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(random.nextInt(0xFFFFFF)));
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(width), random.nextInt(height), width / 3, height / 3);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private File writeJpeg(BufferedImage image, String name, float quality) throws IOException {
+        File file = new File(temp.getRoot(), name);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+}
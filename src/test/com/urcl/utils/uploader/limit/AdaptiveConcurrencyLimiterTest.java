@@ -0,0 +1,115 @@
+package com.urcl.utils.uploader.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void stableLatencyGrowsTheLimitUpToTheMaximum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test.grow", 4, 2, 6);
+        acquire(limiter, 4);
+
+        long previous = limiter.getLimit();
+        for (int i = 0; i < 100; i++) {
+            limiter.onRequestComplete("uploadPart", 10 * MS, 0, true);
+            assertTrue(limiter.getLimit() >= previous);
+            assertTrue(limiter.getLimit() <= 6);
+            previous = limiter.getLimit();
+        }
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    public void limitDoesNotGrowWhileMostPermitsAreIdle() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test.idle", 8, 2, 32);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onRequestComplete("uploadPart", 10 * MS, 0, true);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void risingLatencyShrinksTheLimitWithinBounds() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test.shrink", 10, 3, 10);
+        acquire(limiter, 10);
+        for (int i = 0; i < 50; i++) {
+            limiter.onRequestComplete("uploadPart", 10 * MS, 0, true);
+        }
+        assertEquals(10, limiter.getLimit());
+
+        // 服务端开始排队：延迟升高到原来的10倍
+        long previous = limiter.getLimit();
+        for (int i = 0; i < 30; i++) {
+            limiter.onRequestComplete("uploadPart", 100 * MS, 0, true);
+            assertTrue(limiter.getLimit() <= previous);
+            assertTrue(limiter.getLimit() >= 3);
+            previous = limiter.getLimit();
+        }
+        assertTrue(limiter.getLimit() < 10);
+    }
+
+    @Test
+    public void uploadLatencyIsNormalisedBySize() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test.bytes", 10, 2, 10);
+        acquire(limiter, 10);
+        limiter.onRequestComplete("uploadPart", 10 * MS, 1024 * 1024, true);
+        // 4倍大小的文件耗时4倍，每MiB的延迟不变，不视为拥塞
+        for (int i = 0; i < 30; i++) {
+            limiter.onRequestComplete("uploadPart", 40 * MS, 4 * 1024 * 1024, true);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void failuresBackOffToTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test.failure", 20, 4, 32);
+
+        limiter.onRequestComplete("precreate", 10 * MS, 0, false);
+        assertTrue(limiter.getLimit() < 20);
+        for (int i = 0; i < 200; i++) {
+            limiter.onRequestComplete("precreate", 10 * MS, 0, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void acquireBlocksAtTheLimitUntilAPermitIsReleased() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test.block", 2, 1, 2);
+        acquire(limiter, 2);
+
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (waiter.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, waiter.getState());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release();
+        waiter.join(2000);
+        assertFalse(waiter.isAlive());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimiter limiter, int permits) throws InterruptedException {
+        for (int i = 0; i < permits; i++) {
+            limiter.acquire();
+        }
+    }
+}
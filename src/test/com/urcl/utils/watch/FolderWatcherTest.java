@@ -0,0 +1,122 @@
+package com.urcl.utils.watch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FolderWatcherTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void newFolderIsHandledOnceAfterWritesSettle() throws Exception {
+        File root = temp.newFolder("root");
+        BlockingQueue<String> handled = new LinkedBlockingQueue<>();
+        BlockingQueue<Long> handledAt = new LinkedBlockingQueue<>();
+        FolderWatcher watcher = new FolderWatcher(WatchOptions.builder().rootPath(root.getPath()).settleMillis(500).build(), folder -> {
+            handled.add(folder.getName());
+            handledAt.add(System.currentTimeMillis());
+            // 与上传器一样，处理完后把文件夹重命名为[Finished]
+            Files.move(folder.toPath(), new File(folder.getParentFile(), "[Finished] " + folder.getName()).toPath());
+        });
+        Thread runner = start(watcher);
+        // 等待根目录开始被监听
+        Thread.sleep(300);
+
+        File album = new File(root, "album");
+        assertTrue(album.mkdir());
+        Thread.sleep(200);
+        long lastWrite = 0;
+        for (int i = 0; i < 8; i++) {
+            Files.write(new File(album, i + ".jpg").toPath(), new byte[]{(byte) i});
+            lastWrite = System.currentTimeMillis();
+            Thread.sleep(100);
+        }
+
+        assertEquals("album", handled.poll(10, TimeUnit.SECONDS));
+        assertTrue("写入仍在进行时不应开始处理", handledAt.take() >= lastWrite + 500);
+        // 重命名后的[Finished]文件夹不会被再次处理
+        assertNull(handled.poll(1500, TimeUnit.MILLISECONDS));
+
+        watcher.close();
+        runner.join(10_000);
+    }
+
+    @Test
+    public void existingFoldersAreProcessedOnlyWhenRequested() throws Exception {
+        File root = temp.newFolder("root");
+        assertTrue(new File(root, "old").mkdir());
+        assertTrue(new File(root, "[Finished] done").mkdir());
+        BlockingQueue<String> handled = new LinkedBlockingQueue<>();
+
+        FolderWatcher watcher = new FolderWatcher(WatchOptions.builder().rootPath(root.getPath()).settleMillis(100)
+                .processExisting(true).build(), folder -> handled.add(folder.getName()));
+        Thread runner = start(watcher);
+
+        String first = handled.poll(10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertEquals("old", first);
+        assertNull(handled.poll(500, TimeUnit.MILLISECONDS));
+
+        watcher.close();
+        watcher.awaitTermination();
+        runner.join(10_000);
+    }
+
+    @Test
+    public void failedAndPreExistingFoldersAreNotProcessedAgainInTheSameRun() throws Exception {
+        File root = temp.newFolder("root");
+        File old = new File(root, "old");
+        assertTrue(old.mkdir());
+        BlockingQueue<String> handled = new LinkedBlockingQueue<>();
+        FolderWatcher watcher = new FolderWatcher(WatchOptions.builder().rootPath(root.getPath()).settleMillis(100).build(), folder -> {
+            handled.add(folder.getName());
+            // 处理失败，文件夹没有被重命名为[Finished]
+            throw new IllegalStateException("上传失败");
+        });
+        Thread runner = start(watcher);
+        Thread.sleep(300);
+
+        File album = new File(root, "album");
+        assertTrue(album.mkdir());
+        assertEquals("album", handled.poll(10, TimeUnit.SECONDS));
+
+        // 根目录中关于这两个文件夹的新事件不会让它们重新成为候选
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(album.toPath(), FileTime.fromMillis(now));
+        Files.setLastModifiedTime(old.toPath(), FileTime.fromMillis(now));
+        Files.write(new File(album, "1.jpg").toPath(), new byte[]{1});
+        Files.write(new File(old, "1.jpg").toPath(), new byte[]{1});
+        assertNull(handled.poll(1000, TimeUnit.MILLISECONDS));
+
+        watcher.close();
+        watcher.awaitTermination();
+        runner.join(10_000);
+    }
+
+    private static Thread start(FolderWatcher watcher) {
+        Thread runner = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "folder-watcher");
+        runner.setDaemon(true);
+        runner.start();
+        return runner;
+    }
+}